@@ -0,0 +1,93 @@
+package com.aljodomo.kontis.aggregation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+/**
+ * Compact binary snapshot of the counters.
+ * <p>
+ * Per key the raw decayed value, its time and the packed hourly slots are written.
+ * The file is replaced atomically, so a crash while saving keeps the previous snapshot.
+ */
+public class AggregateSnapshot {
+
+    private static final int MAGIC = 0x4B4F4E41;
+    private static final int VERSION = 1;
+
+    private AggregateSnapshot() {
+        // Enforce static usage
+    }
+
+    public static void write(Path file, Map<String, SightingCounts> byStopId, Map<String, SightingCounts> byRouteName)
+            throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            write(out, byStopId);
+            write(out, byRouteName);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restores the counters of the file into the maps. Keeps the maps as they are if there is no snapshot.
+     *
+     * @throws IOException If the file is no snapshot or is truncated.
+     */
+    public static void read(Path file, Map<String, SightingCounts> byStopId, Map<String, SightingCounts> byRouteName,
+                            double halfLifeSeconds, int hours) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown snapshot format: " + file);
+            }
+            read(in, byStopId, halfLifeSeconds, hours);
+            read(in, byRouteName, halfLifeSeconds, hours);
+        }
+    }
+
+    private static void write(DataOutputStream out, Map<String, SightingCounts> counts) throws IOException {
+        // Counters may be added while writing, so the number of entries is not known upfront
+        for (Map.Entry<String, SightingCounts> entry : counts.entrySet()) {
+            DecayedCounter recent = entry.getValue().getRecent();
+            long[] hourly = entry.getValue().getHourly().raw();
+
+            out.writeBoolean(true);
+            out.writeUTF(entry.getKey());
+            out.writeDouble(recent.rawValue());
+            out.writeLong(recent.epochSecond());
+            out.writeInt(hourly.length);
+            for (long slot : hourly) {
+                out.writeLong(slot);
+            }
+        }
+        out.writeBoolean(false);
+    }
+
+    private static void read(DataInputStream in, Map<String, SightingCounts> counts, double halfLifeSeconds, int hours)
+            throws IOException {
+        while (in.readBoolean()) {
+            String key = in.readUTF();
+            double value = in.readDouble();
+            long epochSecond = in.readLong();
+            long[] hourly = new long[in.readInt()];
+            for (int i = 0; i < hourly.length; i++) {
+                hourly[i] = in.readLong();
+            }
+
+            HourlyCounts hourlyCounts = new HourlyCounts(hours);
+            hourlyCounts.restore(hourly);
+            counts.put(key, new SightingCounts(new DecayedCounter(halfLifeSeconds, value, epochSecond), hourlyCounts));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.aljodomo.kontis.aggregation;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Settings of the {@link ReportAggregator}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties("aggregation")
+public class AggregationProps {
+
+    /**
+     * Count sightings per stop and route.
+     */
+    private boolean enabled = false;
+
+    /**
+     * A sighting counts half after this time.
+     */
+    private Duration halfLife = Duration.ofHours(1);
+
+    /**
+     * Number of hourly counts kept per stop and route.
+     */
+    private int hours = 7 * 24;
+
+    /**
+     * File the counters are saved to and restored from on startup.
+     */
+    private String snapshotFile = "aggregates.bin";
+
+    /**
+     * Counters are saved at least this often.
+     */
+    private Duration snapshotInterval = Duration.ofMinutes(5);
+}
@@ -0,0 +1,80 @@
+package com.aljodomo.kontis.aggregation;
+
+import lombok.Value;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Exponentially decayed count of events. Lock free.
+ * <p>
+ * The count is stored together with the time it is valid for and decayed on every update and read.
+ */
+public class DecayedCounter {
+
+    private final double halfLifeSeconds;
+    private final AtomicReference<State> state;
+
+    public DecayedCounter(double halfLifeSeconds) {
+        this(halfLifeSeconds, 0, Long.MIN_VALUE);
+    }
+
+    public DecayedCounter(double halfLifeSeconds, double value, long epochSecond) {
+        this.halfLifeSeconds = halfLifeSeconds;
+        this.state = new AtomicReference<>(new State(value, epochSecond));
+    }
+
+    /**
+     * Counts an event at the time. Events older than the last one are decayed accordingly.
+     */
+    public void increment(long epochSecond) {
+        State current;
+        State next;
+        do {
+            current = state.get();
+            if (current.getValue() == 0 || epochSecond >= current.getEpochSecond()) {
+                next = new State(decay(current, epochSecond) + 1, epochSecond);
+            } else {
+                next = new State(current.getValue() + factor(current.getEpochSecond() - epochSecond), current.getEpochSecond());
+            }
+        } while (!state.compareAndSet(current, next));
+    }
+
+    /**
+     * Decayed count at the time.
+     */
+    public double valueAt(long epochSecond) {
+        State current = state.get();
+        if (epochSecond <= current.getEpochSecond()) {
+            return current.getValue();
+        }
+        return decay(current, epochSecond);
+    }
+
+    /**
+     * Time the {@link #rawValue()} is valid for.
+     */
+    public long epochSecond() {
+        return state.get().getEpochSecond();
+    }
+
+    /**
+     * Count at the time of the last event.
+     */
+    public double rawValue() {
+        return state.get().getValue();
+    }
+
+    private double decay(State state, long epochSecond) {
+        return state.getValue() == 0 ? 0 : state.getValue() * factor(epochSecond - state.getEpochSecond());
+    }
+
+    private double factor(long seconds) {
+        return Math.pow(0.5, seconds / halfLifeSeconds);
+    }
+
+    @Value
+    private static class State {
+        double value;
+        long epochSecond;
+    }
+}
@@ -0,0 +1,123 @@
+package com.aljodomo.kontis.aggregation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Event counts per hour for a fixed number of hours. Lock free.
+ * <p>
+ * Each slot packs the hour since the epoch into the upper and the count into the lower bits of one long,
+ * so a slot is reused for a newer hour with a single compare and set.
+ */
+public class HourlyCounts {
+
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long EMPTY = -1;
+
+    private final AtomicLongArray slots;
+
+    public HourlyCounts(int hours) {
+        if (hours < 1) {
+            throw new IllegalArgumentException("At least one hour must be kept");
+        }
+        this.slots = new AtomicLongArray(hours);
+        for (int i = 0; i < hours; i++) {
+            slots.set(i, EMPTY);
+        }
+    }
+
+    public static long hourOf(long epochSecond) {
+        return Math.floorDiv(epochSecond, 3600L);
+    }
+
+    /**
+     * Counts an event at the time. Events older than the kept hours are ignored.
+     */
+    public void increment(long epochSecond) {
+        long hour = hourOf(epochSecond);
+        int slot = slot(hour);
+        while (true) {
+            long current = slots.get(slot);
+            long next;
+            if (current != EMPTY && hourOfPacked(current) == hour) {
+                if (countOf(current) == COUNT_MASK) {
+                    return;
+                }
+                next = current + 1;
+            } else if (current == EMPTY || hourOfPacked(current) < hour) {
+                next = pack(hour, 1);
+            } else {
+                return;
+            }
+            if (slots.compareAndSet(slot, current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Events within the hour. {@code 0} if the hour is not kept anymore.
+     */
+    public int count(long hour) {
+        long current = slots.get(slot(hour));
+        return current != EMPTY && hourOfPacked(current) == hour ? (int) countOf(current) : 0;
+    }
+
+    /**
+     * Events within {@code [fromHour, toHour]}.
+     */
+    public long sum(long fromHour, long toHour) {
+        long sum = 0;
+        for (long hour = Math.max(fromHour, toHour - slots.length() + 1); hour <= toHour; hour++) {
+            sum += count(hour);
+        }
+        return sum;
+    }
+
+    public int size() {
+        return slots.length();
+    }
+
+    /**
+     * Packed slot values for snapshots.
+     */
+    long[] raw() {
+        long[] raw = new long[slots.length()];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = slots.get(i);
+        }
+        return raw;
+    }
+
+    /**
+     * Restores packed slot values. Slots that do not fit anymore are skipped.
+     */
+    void restore(long[] raw) {
+        for (long value : raw) {
+            if (value == EMPTY) {
+                continue;
+            }
+            int slot = slot(hourOfPacked(value));
+            long current = slots.get(slot);
+            if (current == EMPTY || hourOfPacked(current) < hourOfPacked(value)) {
+                slots.set(slot, value);
+            }
+        }
+    }
+
+    private int slot(long hour) {
+        return (int) Math.floorMod(hour, (long) slots.length());
+    }
+
+    private static long pack(long hour, long count) {
+        return hour << COUNT_BITS | count;
+    }
+
+    private static long hourOfPacked(long packed) {
+        return packed >>> COUNT_BITS;
+    }
+
+    private static long countOf(long packed) {
+        return packed & COUNT_MASK;
+    }
+}
@@ -0,0 +1,112 @@
+package com.aljodomo.kontis.aggregation;
+
+import com.aljodomo.kontis.model.Report;
+import com.aljodomo.kontis.telegram.ReportListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts sightings per stop id and route name as they are reported.
+ * <p>
+ * Every stop and route has an exponentially decayed counter for "how many sightings recently" and
+ * hourly counts for a fixed number of hours. Queries are O(1) map lookups. The counters are saved
+ * periodically and restored on startup, so no history has to be reprocessed.
+ *
+ * @author Aljoscha Domonell
+ */
+@Service
+@ConditionalOnProperty(prefix = "aggregation", name = "enabled", havingValue = "true")
+@Slf4j
+public class ReportAggregator implements ReportListener {
+
+    private final double halfLifeSeconds;
+    private final int hours;
+    private final Path snapshotFile;
+
+    private final Map<String, SightingCounts> byStopId = new ConcurrentHashMap<>();
+    private final Map<String, SightingCounts> byRouteName = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReportAggregator(AggregationProps props) {
+        this.halfLifeSeconds = props.getHalfLife().getSeconds();
+        this.hours = props.getHours();
+        this.snapshotFile = Path.of(props.getSnapshotFile());
+
+        try {
+            AggregateSnapshot.read(snapshotFile, byStopId, byRouteName, halfLifeSeconds, hours);
+            log.info("Restored sighting counts of {} stops and {} routes", byStopId.size(), byRouteName.size());
+        } catch (IOException e) {
+            log.error("Sighting counts could not be restored from {}. Starting empty", snapshotFile, e);
+            byStopId.clear();
+            byRouteName.clear();
+        }
+    }
+
+    @Override
+    public void onReport(Report report) {
+        long epochSecond = report.getTime().toEpochSecond();
+        if (report.getStopId() != null) {
+            counts(byStopId, report.getStopId()).add(epochSecond);
+        }
+        if (report.getRouteName() != null) {
+            counts(byRouteName, report.getRouteName()).add(epochSecond);
+        }
+    }
+
+    /**
+     * Decayed number of sightings at the stop.
+     */
+    public double recentAtStop(String stopId, ZonedDateTime now) {
+        SightingCounts counts = byStopId.get(stopId);
+        return counts == null ? 0 : counts.getRecent().valueAt(now.toEpochSecond());
+    }
+
+    /**
+     * Decayed number of sightings on the route.
+     */
+    public double recentOnRoute(String routeName, ZonedDateTime now) {
+        SightingCounts counts = byRouteName.get(routeName);
+        return counts == null ? 0 : counts.getRecent().valueAt(now.toEpochSecond());
+    }
+
+    /**
+     * Sightings at the stop within the hour of the time.
+     */
+    public int hourlyAtStop(String stopId, ZonedDateTime time) {
+        SightingCounts counts = byStopId.get(stopId);
+        return counts == null ? 0 : counts.getHourly().count(HourlyCounts.hourOf(time.toEpochSecond()));
+    }
+
+    /**
+     * Sightings on the route within the hour of the time.
+     */
+    public int hourlyOnRoute(String routeName, ZonedDateTime time) {
+        SightingCounts counts = byRouteName.get(routeName);
+        return counts == null ? 0 : counts.getHourly().count(HourlyCounts.hourOf(time.toEpochSecond()));
+    }
+
+    @Scheduled(fixedDelayString = "${aggregation.snapshot-interval:PT5M}")
+    @PreDestroy
+    public void snapshot() {
+        try {
+            AggregateSnapshot.write(snapshotFile, byStopId, byRouteName);
+            log.debug("Saved sighting counts to {}", snapshotFile);
+        } catch (IOException e) {
+            log.error("Sighting counts could not be saved to {}", snapshotFile, e);
+        }
+    }
+
+    private SightingCounts counts(Map<String, SightingCounts> counts, String key) {
+        return counts.computeIfAbsent(key, k -> new SightingCounts(halfLifeSeconds, hours));
+    }
+}
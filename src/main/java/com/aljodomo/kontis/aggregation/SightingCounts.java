@@ -0,0 +1,32 @@
+package com.aljodomo.kontis.aggregation;
+
+/**
+ * Sightings of one stop or route.
+ */
+public class SightingCounts {
+
+    private final DecayedCounter recent;
+    private final HourlyCounts hourly;
+
+    public SightingCounts(double halfLifeSeconds, int hours) {
+        this(new DecayedCounter(halfLifeSeconds), new HourlyCounts(hours));
+    }
+
+    SightingCounts(DecayedCounter recent, HourlyCounts hourly) {
+        this.recent = recent;
+        this.hourly = hourly;
+    }
+
+    public void add(long epochSecond) {
+        recent.increment(epochSecond);
+        hourly.increment(epochSecond);
+    }
+
+    public DecayedCounter getRecent() {
+        return recent;
+    }
+
+    public HourlyCounts getHourly() {
+        return hourly;
+    }
+}
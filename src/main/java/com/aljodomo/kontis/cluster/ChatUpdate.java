@@ -0,0 +1,22 @@
+package com.aljodomo.kontis.cluster;
+
+import lombok.Value;
+
+/**
+ * A received message together with the chat it belongs to.
+ *
+ * @author Aljoscha Domonell
+ */
+@Value
+public class ChatUpdate {
+    String chatId;
+    /**
+     * Unique within the chat.
+     */
+    long messageId;
+    /**
+     * When the message was received by the ingesting node.
+     */
+    long epochMilli;
+    String text;
+}
@@ -0,0 +1,211 @@
+package com.aljodomo.kontis.cluster;
+
+import com.aljodomo.kontis.telegram.MessageHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * One node of a cluster that shares the ingestion of chats.
+ * <p>
+ * Every node owns the chats on its ranges of a {@link HashRing}. Updates of chats owned by other nodes are
+ * forwarded to their owner by the {@link ClusterTransport}. The owner handles the updates of a chat on
+ * one lane thread in the order they arrived and remembers their message ids to drop duplicates.
+ *
+ * @author Aljoscha Domonell
+ */
+@Service
+@ConditionalOnProperty(prefix = "cluster", name = "enabled", havingValue = "true")
+@Slf4j
+public class ClusterNode {
+
+    private final String nodeId;
+    private final HashRing ring;
+    private final ClusterTransport transport;
+    private final Consumer<ChatUpdate> handler;
+    private final Lane[] lanes;
+    private final Duration shutdownTimeout;
+
+    private final AtomicLong handledCount = new AtomicLong();
+    private final AtomicLong forwardedCount = new AtomicLong();
+    private final AtomicLong duplicateCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    @Autowired
+    public ClusterNode(ClusterProps props, MessageHandler messageHandler) {
+        this(props, update -> messageHandler.handleMessage(update.getText(),
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(update.getEpochMilli()), ZoneId.systemDefault()),
+                update.getChatId()));
+    }
+
+    ClusterNode(ClusterProps props, Consumer<ChatUpdate> handler) {
+        if (!props.getNodes().containsKey(props.getNodeId())) {
+            throw new IllegalArgumentException("Node [" + props.getNodeId() + "] is not one of the cluster nodes " + props.getNodes().keySet());
+        }
+        if (props.getSecret() == null || props.getSecret().isBlank()) {
+            throw new IllegalArgumentException("cluster.secret must be set");
+        }
+        this.nodeId = props.getNodeId();
+        this.ring = new HashRing(props.getNodes().keySet(), props.getVirtualNodes());
+        this.handler = handler;
+        this.transport = new ClusterTransport(props, this::receive);
+        this.shutdownTimeout = props.getShutdownTimeout();
+        this.lanes = new Lane[Math.max(1, props.getLanes())];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i, props.getDedupSize());
+        }
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        transport.start();
+    }
+
+    /**
+     * Handles the update if this node owns its chat, otherwise forwards it to the owner.
+     */
+    public void submit(ChatUpdate update) {
+        String owner = ring.ownerOf(update.getChatId());
+        if (owner.equals(nodeId)) {
+            handle(update);
+        } else if (transport.forward(owner, update)) {
+            forwardedCount.incrementAndGet();
+        }
+    }
+
+    public String ownerOf(String chatId) {
+        return ring.ownerOf(chatId);
+    }
+
+    /**
+     * Number of updates handled by this node.
+     */
+    public long getHandledCount() {
+        return handledCount.get();
+    }
+
+    /**
+     * Number of updates forwarded to other nodes.
+     */
+    public long getForwardedCount() {
+        return forwardedCount.get();
+    }
+
+    /**
+     * Number of updates dropped because they were already handled.
+     */
+    public long getDuplicateCount() {
+        return duplicateCount.get();
+    }
+
+    /**
+     * Number of updates dropped because the queue of their owner was full, the owner could not read them
+     * or this node closed before they were delivered or handled.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get() + transport.getDroppedCount();
+    }
+
+    /**
+     * Delivers the queued forwards and handles the accepted updates for up to {@link ClusterProps#getShutdownTimeout()}
+     * each. Updates left afterwards are dropped.
+     */
+    @PreDestroy
+    public void close() {
+        transport.close(shutdownTimeout);
+        for (Lane lane : lanes) {
+            lane.executor.shutdown();
+        }
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        for (Lane lane : lanes) {
+            try {
+                if (lane.executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            int dropped = lane.executor.shutdownNow().size();
+            if (dropped > 0) {
+                droppedCount.addAndGet(dropped);
+                log.error("Closing before {} updates were handled. Dropping them", dropped);
+            }
+        }
+    }
+
+    /**
+     * Forwarded updates are handled even if the ring of the sender differed, so they never bounce between nodes.
+     */
+    private void receive(List<ChatUpdate> updates) {
+        for (ChatUpdate update : updates) {
+            if (!ring.ownerOf(update.getChatId()).equals(nodeId)) {
+                log.warn("Received update of chat [{}] owned by another node. Are the cluster nodes configured alike?", update.getChatId());
+            }
+            handle(update);
+        }
+    }
+
+    private void handle(ChatUpdate update) {
+        Lane lane = lanes[(int) Math.floorMod(HashRing.hash(update.getChatId()), (long) lanes.length)];
+        try {
+            lane.executor.execute(() -> lane.handle(update));
+        } catch (RejectedExecutionException e) {
+            droppedCount.incrementAndGet();
+            log.warn("Node is closed. Dropping update of chat [{}]", update.getChatId());
+        }
+    }
+
+    private class Lane {
+        private final ExecutorService executor;
+        /**
+         * Only accessed by the lane thread.
+         */
+        private final Map<String, Boolean> handled;
+
+        Lane(int index, int dedupSize) {
+            this.executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cluster-lane-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.handled = new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > dedupSize;
+                }
+            };
+        }
+
+        private void handle(ChatUpdate update) {
+            if (handled.put(update.getChatId() + "#" + update.getMessageId(), Boolean.TRUE) != null) {
+                duplicateCount.incrementAndGet();
+                log.debug("Dropping duplicate message [{}] of chat [{}]", update.getMessageId(), update.getChatId());
+                return;
+            }
+            try {
+                handler.accept(update);
+                handledCount.incrementAndGet();
+            } catch (RuntimeException e) {
+                log.error("Update of chat [{}] could not be handled", update.getChatId(), e);
+            }
+        }
+    }
+}
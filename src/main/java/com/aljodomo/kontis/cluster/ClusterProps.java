@@ -0,0 +1,78 @@
+package com.aljodomo.kontis.cluster;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Settings of the {@link ClusterNode}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties("cluster")
+public class ClusterProps {
+
+    /**
+     * Share the chats with other nodes.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Id of this node. Must be a key of {@link #nodes}.
+     */
+    private String nodeId;
+
+    /**
+     * Node id to {@code host:port} of its cluster endpoint. Must be the same on every node.
+     */
+    private Map<String, String> nodes = new LinkedHashMap<>();
+
+    /**
+     * Shared by all nodes. Forwarded updates without it are refused.
+     */
+    private String secret;
+
+    /**
+     * Points per node on the hash ring. More points spread the chats more evenly.
+     */
+    private int virtualNodes = 128;
+
+    /**
+     * Receive Telegram updates on this node. A bot can only be polled by one node at a time.
+     */
+    private boolean ingest = true;
+
+    /**
+     * Threads that handle the owned chats. All messages of a chat are handled by the same thread in order.
+     */
+    private int lanes = 4;
+
+    /**
+     * Message ids remembered per lane to drop duplicate deliveries.
+     */
+    private int dedupSize = 10_000;
+
+    /**
+     * Updates waiting to be forwarded to one node. Further updates are dropped.
+     */
+    private int forwardQueueCapacity = 10_000;
+
+    /**
+     * Maximum number of updates forwarded at once.
+     */
+    private int forwardBatchSize = 100;
+
+    /**
+     * Wait time before a failed forward is tried again.
+     */
+    private Duration retryBackoff = Duration.ofSeconds(1);
+
+    /**
+     * How long closing waits for queued updates to be forwarded and for accepted updates to be handled.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+}
@@ -0,0 +1,273 @@
+package com.aljodomo.kontis.cluster;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Forwards {@link ChatUpdate updates} between nodes over HTTP on the local network.
+ * <p>
+ * Every peer has one queue and one sender thread, so updates arrive in the order they were forwarded.
+ * A failed batch is retried until it was accepted. Retries can deliver an update twice, the receiver drops duplicates.
+ * Only batches the receiver can not read are dropped. Requests without the {@link ClusterProps#getSecret() secret}
+ * of the cluster are refused.
+ *
+ * @author Aljoscha Domonell
+ */
+@Slf4j
+class ClusterTransport {
+
+    static final String PATH = "/cluster/updates";
+    static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    private final ClusterProps props;
+    private final Consumer<List<ChatUpdate>> receiver;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT).build();
+    private final byte[] secret;
+    private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private HttpServer server;
+    /**
+     * Set and checked under the lock of the transport, so no update is queued after {@link #close()} drained the queues.
+     */
+    private volatile boolean closed;
+
+    ClusterTransport(ClusterProps props, Consumer<List<ChatUpdate>> receiver) {
+        this.props = props;
+        this.receiver = receiver;
+        this.secret = props.getSecret().getBytes(StandardCharsets.UTF_8);
+    }
+
+    void start() throws IOException {
+        InetSocketAddress address = address(props.getNodes().get(props.getNodeId()));
+        server = HttpServer.create(new InetSocketAddress(address.getHostString(), address.getPort()), 0);
+        server.createContext(PATH, this::handle);
+        server.start();
+        log.info("Node [{}] accepts forwarded updates on {}:{}", props.getNodeId(), address.getHostString(), address.getPort());
+    }
+
+    /**
+     * @return {@code false} if the queue of the node is full or the transport is closed and the update was dropped.
+     */
+    boolean forward(String node, ChatUpdate update) {
+        boolean queued;
+        synchronized (this) {
+            queued = !closed && peers.computeIfAbsent(node, Peer::new).queue.offer(update);
+        }
+        if (!queued) {
+            droppedCount.incrementAndGet();
+            log.warn("Node [{}] can not keep up. Dropping update of chat [{}]", node, update.getChatId());
+        }
+        return queued;
+    }
+
+    /**
+     * Number of updates that were not delivered.
+     */
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Sends the queued updates for up to {@code timeout} and stops accepting forwarded updates.
+     * Updates still queued afterwards are dropped.
+     */
+    void close(Duration timeout) {
+        synchronized (this) {
+            closed = true;
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            for (Peer peer : peers.values()) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                peer.sender.join(Math.max(1, remaining));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Peer peer : peers.values()) {
+            // The sender drops what it did not deliver in time
+            peer.sender.interrupt();
+            try {
+                peer.sender.join(REQUEST_TIMEOUT.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (server != null) {
+            server.stop(1);
+        }
+    }
+
+    /**
+     * Runs on the single dispatcher thread of the server, so batches are handed over in the order they arrived.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String requestSecret = exchange.getRequestHeaders().getFirst(SECRET_HEADER);
+            if (requestSecret == null || !MessageDigest.isEqual(secret, requestSecret.getBytes(StandardCharsets.UTF_8))) {
+                log.warn("Refusing forwarded updates without the cluster secret from {}", exchange.getRemoteAddress());
+                exchange.sendResponseHeaders(401, -1);
+                return;
+            }
+            List<ChatUpdate> updates;
+            try (InputStream body = exchange.getRequestBody()) {
+                updates = decode(body.readAllBytes());
+            } catch (IOException e) {
+                log.warn("Unreadable batch of forwarded updates", e);
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            receiver.accept(updates);
+            exchange.sendResponseHeaders(204, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    static byte[] encode(List<ChatUpdate> updates) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(updates.size());
+            for (ChatUpdate update : updates) {
+                out.writeUTF(update.getChatId());
+                out.writeLong(update.getMessageId());
+                out.writeLong(update.getEpochMilli());
+                out.writeUTF(update.getText());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<ChatUpdate> decode(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            int count = in.readInt();
+            List<ChatUpdate> updates = new ArrayList<>(Math.min(count, 1_024));
+            for (int i = 0; i < count; i++) {
+                updates.add(new ChatUpdate(in.readUTF(), in.readLong(), in.readLong(), in.readUTF()));
+            }
+            return updates;
+        }
+    }
+
+    private static InetSocketAddress address(String hostAndPort) {
+        if (hostAndPort == null) {
+            throw new IllegalArgumentException("Unknown node");
+        }
+        int colon = hostAndPort.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Node address [" + hostAndPort + "] is not host:port");
+        }
+        return InetSocketAddress.createUnresolved(hostAndPort.substring(0, colon),
+                Integer.parseInt(hostAndPort.substring(colon + 1)));
+    }
+
+    private class Peer {
+        private final String node;
+        private final URI uri;
+        private final BlockingQueue<ChatUpdate> queue = new LinkedBlockingQueue<>(props.getForwardQueueCapacity());
+        private final Thread sender;
+
+        Peer(String node) {
+            InetSocketAddress address = address(props.getNodes().get(node));
+            this.node = node;
+            this.uri = URI.create("http://" + address.getHostString() + ":" + address.getPort() + PATH);
+            this.sender = new Thread(this::send, "cluster-forward-" + node);
+            this.sender.setDaemon(true);
+            this.sender.start();
+        }
+
+        /**
+         * Runs until the transport is closed and the queue is empty.
+         */
+        private void send() {
+            List<ChatUpdate> batch = new ArrayList<>();
+            try {
+                while (!closed || !queue.isEmpty()) {
+                    ChatUpdate first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, props.getForwardBatchSize() - 1);
+                    while (!post(batch)) {
+                        Thread.sleep(props.getRetryBackoff().toMillis());
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                // Closing timed out
+                int dropped = batch.size() + queue.size();
+                queue.clear();
+                if (dropped > 0) {
+                    droppedCount.addAndGet(dropped);
+                    log.error("Closing before node [{}] accepted {} forwarded updates. Dropping them", node, dropped);
+                }
+            }
+        }
+
+        private boolean post(List<ChatUpdate> batch) throws InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(REQUEST_TIMEOUT)
+                    .header(SECRET_HEADER, props.getSecret())
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(encode(batch)))
+                    .build();
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 204) {
+                    return true;
+                }
+                if (response.statusCode() == 400) {
+                    // Sending an unreadable batch again does not help
+                    droppedCount.addAndGet(batch.size());
+                    log.error("Node [{}] could not read {} forwarded updates. Dropping them: {}", node, batch.size(), batch);
+                    return true;
+                }
+                if (response.statusCode() == 401) {
+                    log.warn("Node [{}] refused {} forwarded updates. Is cluster.secret the same on every node? Retrying in {}",
+                            node, batch.size(), props.getRetryBackoff());
+                    return false;
+                }
+                log.warn("Node [{}] failed to accept {} forwarded updates with status {}. Retrying in {}",
+                        node, batch.size(), response.statusCode(), props.getRetryBackoff());
+            } catch (IOException e) {
+                log.warn("Forwarding {} updates to node [{}] failed. Retrying in {}", batch.size(), node, props.getRetryBackoff(), e);
+            }
+            return false;
+        }
+    }
+}
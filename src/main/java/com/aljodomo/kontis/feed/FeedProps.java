@@ -0,0 +1,68 @@
+package com.aljodomo.kontis.feed;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of the {@link FeedRouter}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties("feeds")
+public class FeedProps {
+
+    /**
+     * Load additional GTFS feeds and route messages to them by chat.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Name of the feed loaded by the {@link com.aljodomo.kontis.gtfs.GTFSService} bean.
+     * Messages of chats without a feed are analysed with it.
+     */
+    private String defaultName = "berlin";
+
+    /**
+     * Number of feeds loaded in parallel.
+     */
+    private int loadThreads = 2;
+
+    private List<Feed> shards = new ArrayList<>();
+
+    @Data
+    public static class Feed {
+
+        private String name;
+
+        /**
+         * Directory of the GTFS files.
+         */
+        private String location;
+
+        /**
+         * Chat ids whose messages are analysed with this feed.
+         */
+        private List<String> channels = new ArrayList<>();
+
+        /**
+         * Normalized synonym to normalized route name.
+         */
+        private Map<String, String> routeSynonyms = new HashMap<>();
+
+        /**
+         * Normalized synonym to all normalized route names it stands for.
+         */
+        private Map<String, List<String>> ambiguousRouteSynonyms = new HashMap<>();
+
+        /**
+         * Short names of routes without a direction.
+         */
+        private List<String> circleRoutes = new ArrayList<>();
+    }
+}
@@ -0,0 +1,227 @@
+package com.aljodomo.kontis.feed;
+
+import com.aljodomo.kontis.gtfs.AnalysisProps;
+import com.aljodomo.kontis.gtfs.DefaultReportService;
+import com.aljodomo.kontis.gtfs.GTFSFilterProps;
+import com.aljodomo.kontis.gtfs.GTFSService;
+import com.aljodomo.kontis.gtfs.PrefilterProps;
+import com.aljodomo.kontis.gtfs.ReportService;
+import com.aljodomo.kontis.gtfs.RouteSynonyms;
+import com.aljodomo.kontis.nlp.DirectionRemover;
+import com.aljodomo.kontis.nlp.MessageNormalizer;
+import com.aljodomo.kontis.nlp.ParallelScorer;
+import com.aljodomo.kontis.nlp.WordSimilarityService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Picks the GTFS feed a message is analysed with by the chat it was received in.
+ * <p>
+ * The feed of the {@link GTFSService} bean is the default. Further feeds are loaded in parallel on startup
+ * and can be reloaded while the previous version keeps serving. Chats of a feed that failed to load use the
+ * default feed until it loads.
+ * <p>
+ * Only the report services are routed. Components bound to the {@link GTFSService} bean keep using the default
+ * feed: {@link com.aljodomo.kontis.telegram.ReportListener#isDefaultFeedOnly() default feed only listeners}
+ * like the heatmap are not notified about reports of other feeds, and the in memory store keeps ids that are
+ * not in the dictionary of the default feed as plain strings.
+ *
+ * @author Aljoscha Domonell
+ */
+@Component
+@ConditionalOnProperty(prefix = "feeds", name = "enabled", havingValue = "true")
+@Slf4j
+public class FeedRouter {
+
+    /**
+     * Loads one configured feed.
+     */
+    @FunctionalInterface
+    public interface FeedLoader {
+        FeedShard load(FeedProps.Feed feed) throws IOException;
+    }
+
+    private final FeedProps props;
+    private final FeedLoader loader;
+    private final FeedShard defaultShard;
+    private final ExecutorService loadPool;
+
+    private final Map<String, FeedShard> shards = new ConcurrentHashMap<>();
+    private volatile Map<String, FeedShard> shardsByChannel = Map.of();
+
+    @Autowired
+    public FeedRouter(FeedProps props, GTFSService gtfsService, ReportService reportService, GTFSFilterProps filterProps,
+                      MessageNormalizer messageNormalizer, DirectionRemover directionRemover,
+                      WordSimilarityService similarityService, ParallelScorer parallelScorer, PrefilterProps prefilterProps,
+                      AnalysisProps analysisProps) {
+        this(props, new FeedShard(props.getDefaultName(), gtfsService, reportService, gtfsService.estimatedBytes()), feed -> {
+            GTFSService feedGtfsService = new GTFSService(new File(feed.getLocation()), filterProps, messageNormalizer, similarityService);
+            RouteSynonyms synonyms = new RouteSynonyms(Map.copyOf(feed.getRouteSynonyms()),
+                    Map.copyOf(feed.getAmbiguousRouteSynonyms()), Set.copyOf(feed.getCircleRoutes()));
+            return new FeedShard(feed.getName(), feedGtfsService,
+                    new DefaultReportService(messageNormalizer, directionRemover, feedGtfsService, parallelScorer, synonyms, prefilterProps, analysisProps),
+                    feedGtfsService.estimatedBytes());
+        });
+    }
+
+    FeedRouter(FeedProps props, FeedShard defaultShard, FeedLoader loader) {
+        this.props = props;
+        this.loader = loader;
+        this.defaultShard = defaultShard;
+        this.loadPool = Executors.newFixedThreadPool(Math.max(1, props.getLoadThreads()), r -> {
+            Thread thread = new Thread(r, "feed-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        log.info("Feed [{}] uses ~{} MB", defaultShard.getName(), toMegaBytes(defaultShard.getEstimatedBytes()));
+        try {
+            load(props.getShards()).join();
+        } catch (CompletionException e) {
+            // Every failed feed was logged. Its chats use the default feed
+            log.warn("Not all feeds could be loaded. Starting without them");
+        }
+    }
+
+    /**
+     * Feed of the chat.
+     *
+     * @param channel Chat id. The default feed is used for {@code null} and unknown chats.
+     */
+    public FeedShard shardFor(@Nullable String channel) {
+        if (channel == null) {
+            return defaultShard;
+        }
+        return shardsByChannel.getOrDefault(channel, defaultShard);
+    }
+
+    public boolean isDefault(FeedShard shard) {
+        return shard == defaultShard;
+    }
+
+    /**
+     * The default feed followed by the configured ones.
+     */
+    public List<FeedShard> getShards() {
+        List<FeedShard> all = new ArrayList<>();
+        all.add(defaultShard);
+        for (FeedProps.Feed feed : props.getShards()) {
+            FeedShard shard = shards.get(feed.getName());
+            if (shard != null) {
+                all.add(shard);
+            }
+        }
+        return all;
+    }
+
+    public long estimatedBytes() {
+        return getShards().stream().mapToLong(FeedShard::getEstimatedBytes).sum();
+    }
+
+    /**
+     * Loads the configured feeds again in parallel. Every feed is swapped in once it is loaded.
+     * The default feed is managed by its bean and not reloaded.
+     */
+    public CompletableFuture<Void> reload() {
+        return load(props.getShards());
+    }
+
+    /**
+     * Disabled unless {@code feeds.reload-cron} is set, e.g. after the feeds are updated on disk every night.
+     */
+    @Scheduled(cron = "${feeds.reload-cron:-}", zone = "Europe/Berlin")
+    public void reloadScheduled() {
+        log.info("Reloading {} feeds", props.getShards().size());
+        reload().exceptionally(e -> {
+            log.warn("Not all feeds could be reloaded. Keeping their previous version");
+            return null;
+        });
+    }
+
+    /**
+     * The {@link GTFSService#materializeUpcomingDay() scheduled materialization} of the default feed only
+     * covers its bean.
+     */
+    @Scheduled(cron = "${gtfs.active-trips-cron:0 50 23 * * *}", zone = "Europe/Berlin")
+    public void materializeUpcomingDay() {
+        for (FeedShard shard : shards.values()) {
+            shard.getGtfsService().materializeUpcomingDay();
+        }
+    }
+
+    /**
+     * The {@link DefaultReportService#logRelevanceStats() relevance stats} of the default feed are logged by its bean.
+     */
+    @Scheduled(fixedDelayString = "${prefilter.stats-interval:PT1H}", initialDelayString = "${prefilter.stats-interval:PT1H}")
+    public void logRelevanceStats() {
+        for (FeedShard shard : shards.values()) {
+            if (shard.getReportService() instanceof DefaultReportService) {
+                DefaultReportService.logRelevanceStats(
+                        ((DefaultReportService) shard.getReportService()).getRelevanceStats(), shard.getName());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        loadPool.shutdownNow();
+        logRelevanceStats();
+    }
+
+    private CompletableFuture<Void> load(Collection<FeedProps.Feed> feeds) {
+        CompletableFuture<?>[] loads = feeds.stream()
+                .map(feed -> CompletableFuture.runAsync(() -> swapIn(feed, loadShard(feed)), loadPool))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(loads);
+    }
+
+    private FeedShard loadShard(FeedProps.Feed feed) {
+        long start = System.nanoTime();
+        try {
+            FeedShard shard = loader.load(feed);
+            log.info("Loaded feed [{}] from [{}] in {} ms. It uses ~{} MB", feed.getName(), feed.getLocation(),
+                    (System.nanoTime() - start) / 1_000_000, toMegaBytes(shard.getEstimatedBytes()));
+            return shard;
+        } catch (IOException e) {
+            log.error("Feed [{}] could not be loaded from [{}]", feed.getName(), feed.getLocation(), e);
+            throw new CompletionException(new UncheckedIOException(e));
+        }
+    }
+
+    private synchronized void swapIn(FeedProps.Feed feed, FeedShard shard) {
+        shards.put(feed.getName(), shard);
+
+        Map<String, FeedShard> byChannel = new HashMap<>();
+        for (FeedProps.Feed configured : props.getShards()) {
+            FeedShard loaded = shards.get(configured.getName());
+            if (loaded != null) {
+                configured.getChannels().forEach(channel -> byChannel.put(channel, loaded));
+            }
+        }
+        shardsByChannel = Map.copyOf(byChannel);
+    }
+
+    private static long toMegaBytes(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+}
@@ -0,0 +1,22 @@
+package com.aljodomo.kontis.feed;
+
+import com.aljodomo.kontis.gtfs.GTFSService;
+import com.aljodomo.kontis.gtfs.ReportService;
+import lombok.Value;
+
+/**
+ * One independently loaded GTFS feed with the report service analysing messages against it.
+ *
+ * @author Aljoscha Domonell
+ */
+@Value
+public class FeedShard {
+    String name;
+    GTFSService gtfsService;
+    ReportService reportService;
+
+    /**
+     * {@link GTFSService#estimatedBytes() Estimated} heap used by the feed.
+     */
+    long estimatedBytes;
+}
@@ -0,0 +1,141 @@
+package com.aljodomo.kontis.gtfs;
+
+import lombok.Getter;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Trip;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * Trips that run on one calendar day, grouped by {@link TripPattern}.
+ * <p>
+ * Contains the trips of the service day itself and the trips of the previous service day
+ * that run past 24:00. Times of the latter are shifted by one day, so all times are seconds of this calendar day.
+ *
+ * @author Aljoscha Domonell
+ */
+@Getter
+public class ActiveTripDay {
+
+    static final int DAY = 24 * 60 * 60;
+
+    private static final Trips NONE = new Trips(new PatternTrip[0], new int[0]);
+
+    private final LocalDate date;
+    private final Map<TripPattern, Trips> trips;
+    private final int tripCount;
+
+    private ActiveTripDay(LocalDate date, Map<TripPattern, Trips> trips, int tripCount) {
+        this.date = date;
+        this.trips = trips;
+        this.tripCount = tripCount;
+    }
+
+    /**
+     * @param isActiveAt Whether the trip runs on the service day.
+     */
+    public static ActiveTripDay of(LocalDate date, TripPatternIndex index, BiPredicate<Trip, LocalDate> isActiveAt) {
+        LocalDate previous = date.minusDays(1);
+        Map<AgencyAndId, Boolean> activeToday = new HashMap<>();
+        Map<AgencyAndId, Boolean> activeBefore = new HashMap<>();
+
+        Map<TripPattern, Trips> trips = new IdentityHashMap<>();
+        int tripCount = 0;
+        for (TripPattern pattern : index.getPatterns()) {
+            List<PatternTrip> active = new ArrayList<>();
+            List<Integer> shifts = new ArrayList<>();
+            for (PatternTrip trip : pattern.getTrips()) {
+                AgencyAndId serviceId = trip.getTrip().getServiceId();
+                if (activeToday.computeIfAbsent(serviceId, id -> isActiveAt.test(trip.getTrip(), date))) {
+                    active.add(trip);
+                    shifts.add(0);
+                }
+                if (trip.arrival(trip.stopCount() - 1) >= DAY
+                        && activeBefore.computeIfAbsent(serviceId, id -> isActiveAt.test(trip.getTrip(), previous))) {
+                    active.add(trip);
+                    shifts.add(-DAY);
+                }
+            }
+            if (!active.isEmpty()) {
+                trips.put(pattern, Trips.sorted(active, shifts));
+                tripCount += active.size();
+            }
+        }
+        return new ActiveTripDay(date, trips, tripCount);
+    }
+
+    /**
+     * Active trips of the pattern ordered by their first arrival.
+     */
+    public Trips tripsOf(TripPattern pattern) {
+        return trips.getOrDefault(pattern, NONE);
+    }
+
+    /**
+     * Trips of one pattern with the shift of their times onto the calendar day.
+     */
+    public static class Trips {
+
+        private final PatternTrip[] trips;
+        private final int[] shifts;
+
+        private Trips(PatternTrip[] trips, int[] shifts) {
+            this.trips = trips;
+            this.shifts = shifts;
+        }
+
+        private static Trips sorted(List<PatternTrip> trips, List<Integer> shifts) {
+            Integer[] order = new Integer[trips.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingInt(i -> trips.get(i).arrival(0) + shifts.get(i)));
+
+            PatternTrip[] sortedTrips = new PatternTrip[order.length];
+            int[] sortedShifts = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedTrips[i] = trips.get(order[i]);
+                sortedShifts[i] = shifts.get(order[i]);
+            }
+            return new Trips(sortedTrips, sortedShifts);
+        }
+
+        public int size() {
+            return trips.length;
+        }
+
+        public PatternTrip trip(int i) {
+            return trips[i];
+        }
+
+        /**
+         * Seconds added to the GTFS times of the trip. {@code 0} or minus one day.
+         */
+        public int shift(int i) {
+            return shifts[i];
+        }
+
+        /**
+         * Arrival of the trip at the position within the pattern in seconds of the calendar day.
+         */
+        public int arrival(int i, int index) {
+            return trips[i].arrival(index) + shifts[i];
+        }
+
+        public int firstArrival(int i) {
+            return arrival(i, 0);
+        }
+
+        public int lastArrival(int i) {
+            return arrival(i, trips[i].stopCount() - 1);
+        }
+    }
+}
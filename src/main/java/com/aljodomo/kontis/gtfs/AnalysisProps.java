@@ -0,0 +1,22 @@
+package com.aljodomo.kontis.gtfs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Settings of the {@link DefaultReportService}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties("analysis")
+public class AnalysisProps {
+
+    /**
+     * Time budget of one message. Once it is used up, fallbacks are skipped and the best partial report is returned.
+     * {@code 0} disables the budget.
+     */
+    private Duration budget = Duration.ZERO;
+}
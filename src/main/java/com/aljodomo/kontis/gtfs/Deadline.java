@@ -0,0 +1,39 @@
+package com.aljodomo.kontis.gtfs;
+
+import java.time.Duration;
+
+/**
+ * Point in time by which an analysis should be finished. Checked cooperatively between stages.
+ *
+ * @author Aljoscha Domonell
+ */
+public final class Deadline {
+
+    /**
+     * Never expires.
+     */
+    public static final Deadline NONE = new Deadline(0);
+
+    /**
+     * {@link System#nanoTime()} of the deadline.
+     */
+    private final long nanos;
+
+    private Deadline(long nanos) {
+        this.nanos = nanos;
+    }
+
+    /**
+     * @param budget Time from now. Zero or negative budgets never expire.
+     */
+    public static Deadline in(Duration budget) {
+        if (budget.isZero() || budget.isNegative()) {
+            return NONE;
+        }
+        return new Deadline(System.nanoTime() + budget.toNanos());
+    }
+
+    public boolean isExpired() {
+        return this != NONE && System.nanoTime() - nanos >= 0;
+    }
+}
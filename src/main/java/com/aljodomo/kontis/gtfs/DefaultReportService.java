@@ -1,21 +1,25 @@
 package com.aljodomo.kontis.gtfs;
 
-import com.aljodomo.kontis.model.Coordinates;
 import com.aljodomo.kontis.model.Report;
 import com.aljodomo.kontis.nlp.DirectionRemover;
 import com.aljodomo.kontis.nlp.MessageNormalizer;
+import com.aljodomo.kontis.nlp.ParallelScorer;
 import com.aljodomo.kontis.nlp.Precision;
 import lombok.extern.slf4j.Slf4j;
 import net.ricecode.similarity.SimilarityScore;
-import net.ricecode.similarity.StringSimilarityService;
 import org.onebusaway.gtfs.model.Route;
 import org.onebusaway.gtfs.model.Stop;
 import org.onebusaway.gtfs.model.StopTime;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -28,29 +32,127 @@ import static com.aljodomo.kontis.utils.StringUtils.concat;
 @Slf4j
 public class DefaultReportService implements ReportService {
 
+    /**
+     * Words that name a transport mode. Used if a message names no route.
+     */
+    private static final Map<String, RouteType> MODE_HINTS = Map.of(
+            "s", RouteType.SuburbanRailwayService,
+            "u", RouteType.UrbanRailwayService,
+            "tram", RouteType.TramService,
+            "strab", RouteType.TramService,
+            "strassenbahn", RouteType.TramService,
+            "bus", RouteType.BusService);
+
     private final MessageNormalizer messageNormalizer;
     private final DirectionRemover directionRemover;
     private final GTFSService gtfsService;
-    private final StringSimilarityService similarityService;
-    private final Map<String, String> routeSynonyms = Map.of(
-            "41", "s41",
-            "42", "s42"
-    );
-    private final Map<String, List<String>> ambiguousRouteSynonyms = Map.of(
-            "ring", List.of("s41", "s42"),
-            "ringbahn", List.of("s41", "s42")
-    );
+    private final ParallelScorer parallelScorer;
+    private final Map<String, String> routeSynonyms;
+    private final Map<String, List<String>> ambiguousRouteSynonyms;
+    private final Set<String> circleRoutes;
+    @Nullable
+    private final RelevanceFilter relevanceFilter;
+    private final Duration budget;
+    private final AtomicLong degradedCount = new AtomicLong();
 
     @Autowired
-    public DefaultReportService(MessageNormalizer messageNormalizer, DirectionRemover directionRemover, GTFSService gtfsService, StringSimilarityService similarityService) {
+    public DefaultReportService(MessageNormalizer messageNormalizer, DirectionRemover directionRemover, GTFSService gtfsService,
+                                ParallelScorer parallelScorer, PrefilterProps prefilterProps, AnalysisProps analysisProps) {
+        this(messageNormalizer, directionRemover, gtfsService, parallelScorer, RouteSynonyms.BERLIN, prefilterProps, analysisProps);
+    }
+
+    public DefaultReportService(MessageNormalizer messageNormalizer, DirectionRemover directionRemover, GTFSService gtfsService,
+                                ParallelScorer parallelScorer, RouteSynonyms synonyms, PrefilterProps prefilterProps,
+                                AnalysisProps analysisProps) {
         this.messageNormalizer = messageNormalizer;
         this.directionRemover = directionRemover;
         this.gtfsService = gtfsService;
-        this.similarityService = similarityService;
+        this.parallelScorer = parallelScorer;
+        this.routeSynonyms = synonyms.getRoutes();
+        this.ambiguousRouteSynonyms = synonyms.getAmbiguousRoutes();
+        this.circleRoutes = synonyms.getCircleRoutes();
+        this.relevanceFilter = prefilterProps.isEnabled() ? new RelevanceFilter(vocabulary(), prefilterProps) : null;
+        this.budget = analysisProps.getBudget();
+    }
+
+    /**
+     * Every word that can identify a route, stop or direction.
+     */
+    private Set<String> vocabulary() {
+        Set<String> vocabulary = new HashSet<>();
+        vocabulary.addAll(gtfsService.getRoutes().keySet());
+        vocabulary.addAll(gtfsService.getStops().keySet());
+        vocabulary.addAll(gtfsService.getTrips().keySet());
+        vocabulary.addAll(routeSynonyms.keySet());
+        vocabulary.addAll(ambiguousRouteSynonyms.keySet());
+        vocabulary.addAll(MODE_HINTS.keySet());
+        return vocabulary;
+    }
+
+    @Nullable
+    public RelevanceFilter.Stats getRelevanceStats() {
+        return relevanceFilter == null ? null : relevanceFilter.getStats();
+    }
+
+    /**
+     * Logs the counts of the relevance filter, so its {@link PrefilterProps#isShadow() shadow} mode can be evaluated.
+     */
+    @Scheduled(fixedDelayString = "${prefilter.stats-interval:PT1H}", initialDelayString = "${prefilter.stats-interval:PT1H}")
+    @PreDestroy
+    public void logRelevanceStats() {
+        logRelevanceStats(getRelevanceStats(), null);
+    }
+
+    /**
+     * @param feed Name of the feed, {@code null} for the default feed.
+     */
+    public static void logRelevanceStats(@Nullable RelevanceFilter.Stats stats, @Nullable String feed) {
+        if (stats == null) {
+            return;
+        }
+        log.info("Relevance filter{} checked {} messages and rejected {}. {} rejected messages were reports",
+                feed == null ? "" : " of feed [" + feed + "]", stats.getChecked(), stats.getRejected(), stats.getMissed());
     }
 
     @Override
     public Optional<Report> analyse(String message, ZonedDateTime time) {
+        return analyse(message, time, Deadline.in(budget));
+    }
+
+    /**
+     * Direction fallbacks and the scan of all stops are skipped once the deadline passed.
+     */
+    @Override
+    public Optional<Report> analyse(String message, ZonedDateTime time, Deadline deadline) {
+        return recognise(message, time, deadline)
+                .map(recognition -> enrich(recognition).orElse(recognition.getReport()));
+    }
+
+    /**
+     * Only route and stop recognition count against the {@link AnalysisProps#getBudget() budget}.
+     */
+    @Override
+    public Optional<Recognition> recognise(String message, ZonedDateTime time) {
+        return recognise(message, time, Deadline.in(budget));
+    }
+
+    /**
+     * Resolves the stop time without deadline. The complete report keeps the id of the partial report.
+     */
+    @Override
+    public Optional<Report> enrich(Recognition recognition) {
+        if (!recognition.isPending()) {
+            return Optional.empty();
+        }
+        Report partialReport = recognition.getReport();
+        Optional<Report> report = findStopTime(partialReport.getTime(), recognition.routes, recognition.stops, recognition.direction)
+                .flatMap(stopTime -> buildCompleteReport(partialReport.getId(), partialReport.getOriginalMessage(),
+                        partialReport.getTime(), stopTime));
+        report.ifPresent(r -> r.setDegraded(partialReport.isDegraded()));
+        return report;
+    }
+
+    private Optional<Recognition> recognise(String message, ZonedDateTime time, Deadline deadline) {
 
         log.debug("Message [{}]", message);
 
@@ -62,50 +164,85 @@ public class DefaultReportService implements ReportService {
         // 1. Preparation
         String normalizedMessage = messageNormalizer.normalize(message);
         log.debug("Normalized message [{}]", normalizedMessage);
+
+        boolean relevant = relevanceFilter == null || relevanceFilter.isRelevant(normalizedMessage);
+        if (!relevant && !relevanceFilter.isShadow()) {
+            log.debug("Message [{}] mentions no known route, stop or direction", message);
+            return Optional.empty();
+        }
+
+        Budget stageBudget = new Budget(deadline);
+        Optional<Recognition> recognition = recognise(message, normalizedMessage, time, stageBudget);
+        if (!relevant && recognition.isPresent()) {
+            relevanceFilter.recordMiss();
+            log.warn("Message [{}] was rejected by the relevance filter but is a report", message);
+        }
+        if (stageBudget.degraded) {
+            degradedCount.incrementAndGet();
+            recognition.ifPresent(r -> r.getReport().setDegraded(true));
+        }
+        return recognition;
+    }
+
+    /**
+     * Number of analyses that skipped stages because their deadline passed.
+     */
+    public long getDegradedCount() {
+        return degradedCount.get();
+    }
+
+    private Optional<Recognition> recognise(String message, String normalizedMessage, ZonedDateTime time, Budget budget) {
         List<String> messageWords = new ArrayList<>(List.of(normalizedMessage.split(" ")));
 
         // 2. Identify Route
         List<Route> routes = parseRoute(messageWords);
+        Set<RouteType> modes = routes.isEmpty() ? parseModes(messageWords, routes) : Set.of();
         log.debug("Identified routes [{}]", joinDistinct(routes, Route::getShortName));
 
         // 3. Identify direction
-        Optional<String> direction = parseAndCutDirection(messageWords, routes);
+        Optional<String> direction = parseAndCutDirection(messageWords, routes, budget);
         direction.ifPresent(s -> log.debug("Identified direction [{}]", s));
 
         // 4. Identify Stops - Must be done AFTER direction is removed from message
-        List<Stop> stops = parseStops(messageWords, routes);
+        List<Stop> stops = parseStops(messageWords, routes, modes, budget);
         log.debug("Identified stops [{}]", joinDistinct(stops, Stop::getName));
 
         // 5. Filter routes with identified stops
         routes = filterRoutes(routes, stops);
         log.debug("Filtered routes [{}]", joinDistinct(routes, Route::getShortName));
 
-        // 6. Identify stopTime
-        Optional<StopTime> stopTimeOp = Optional.empty();
-        if (isCircleRoute(routes)) {
-            // 6.1 Handle circle route
-            stopTimeOp = gtfsService.findStopTimes(routes, stops, time).stream().findFirst();
-        } else {
-            // 6.2 Handle normal route
-            if (direction.isPresent()) {
-                stopTimeOp = gtfsService.findStopTime(time, routes, direction.get(), stops);
-            }
+        // 6. Build partial report. The stop time is resolved later if it can be
+        boolean resolvable = isCircleRoute(routes) || direction.isPresent();
+        Optional<Report> partialReport = buildPartialReport(message, time, routes, stops);
+        if (!resolvable) {
+            return partialReport.map(Recognition::done);
+        }
+        if (partialReport.isPresent()) {
+            return Optional.of(Recognition.pending(partialReport.get(), routes, stops, direction.orElse(null)));
         }
 
-        // 7. Build report
-        if(stopTimeOp.isPresent()) {
-            return buildCompleteReport(message, time, stopTimeOp.get());
+        // 7. Nothing to show in the meantime. Resolve the stop time right away
+        return findStopTime(time, routes, stops, direction.orElse(null))
+                .flatMap(stopTime -> buildCompleteReport(UUID.randomUUID(), message, time, stopTime))
+                .map(Recognition::done);
+    }
+
+    private Optional<StopTime> findStopTime(ZonedDateTime time, List<Route> routes, List<Stop> stops, @Nullable String direction) {
+        if (isCircleRoute(routes)) {
+            // Handle circle route
+            return gtfsService.findStopTimes(routes, stops, time).stream().findFirst();
         }
-        return buildPartialReport(message, time, routes, stops);
+        // Handle normal route
+        return direction == null ? Optional.empty() : gtfsService.findStopTime(time, routes, direction, stops);
     }
 
-    private static Optional<Report> buildCompleteReport(String message, ZonedDateTime time, StopTime stopTime) {
+    private static Optional<Report> buildCompleteReport(UUID id, String message, ZonedDateTime time, StopTime stopTime) {
         log.info("Building complete report. StopTimeId[{}] Route[{}] Stop[{}]",
                 stopTime.getId(),
                 stopTime.getTrip().getRoute().getShortName(),
                 stopTime.getStop().getName()
         );
-        return Optional.of(new Report(message, time, stopTime));
+        return Optional.of(new Report(id, message, time, stopTime));
     }
 
     private boolean isCircleRoute(List<Route> routes) {
@@ -114,7 +251,7 @@ public class DefaultReportService implements ReportService {
     }
 
     private boolean isCircleRoute(String shortName) {
-        return shortName.equals("S41") || shortName.equals("S42");
+        return circleRoutes.contains(shortName);
     }
 
     private Optional<Report> buildPartialReport(String message, ZonedDateTime time, List<Route> routes, List<Stop> stops) {
@@ -128,16 +265,14 @@ public class DefaultReportService implements ReportService {
                     distinctRouteName.get(),
                     someStop.getName()
             );
-            Coordinates coords = new Coordinates(someStop.getLat(), someStop.getLon());
-            return Optional.of(new Report(message, time, coords, someStop.getName(), distinctRouteName.get()));
+            return Optional.of(new Report(message, time, someStop, distinctRouteName.get()));
         }
 
         if (distinctStop.isPresent()) {
             Stop someStop = distinctStop.get();
             log.info("Building partial report. StopTimeId[] Route[] Stop[{}]",
                     someStop.getName());
-            Coordinates coords = new Coordinates(someStop.getLat(), someStop.getLon());
-            return Optional.of(new Report(message, time, coords, someStop.getName()));
+            return Optional.of(new Report(message, time, someStop));
         }
 
 
@@ -181,20 +316,27 @@ public class DefaultReportService implements ReportService {
                 .collect(Collectors.toList());
     }
 
-    private List<Stop> parseStops(List<String> messageWords, List<Route> routes) {
+    /**
+     * @param modes Transport modes named instead of a route. Only their stops are searched.
+     */
+    private List<Stop> parseStops(List<String> messageWords, List<Route> routes, Set<RouteType> modes, Budget budget) {
         String cleanedMessage = concat(messageWords);
         List<Stop> stops;
         List<String> stopNames;
-        if (!routes.isEmpty()) {
+        if (!modes.isEmpty()) {
+            stopNames = gtfsService.findStopNames(modes);
+        } else if (!routes.isEmpty()) {
             stopNames = gtfsService.findStopNames(routes);
-        } else {
+        } else if (budget.allows("all stops")) {
             stopNames = new ArrayList<>(gtfsService.getStops().keySet());
+        } else {
+            return List.of();
         }
         stops = parseStops(cleanedMessage, stopNames);
         return stops;
     }
 
-    private Optional<String> parseAndCutDirection(List<String> messageWords, List<Route> routes) {
+    private Optional<String> parseAndCutDirection(List<String> messageWords, List<Route> routes, Budget budget) {
         List<String> possibleDirections;
         Optional<String> direction;
 
@@ -203,14 +345,14 @@ public class DefaultReportService implements ReportService {
         direction = cutDirection(messageWords, possibleDirections);
 
         // All headsigns
-        if(direction.isEmpty()) {
+        if(direction.isEmpty() && budget.allows("all head signs")) {
             log.debug("Using head signs of all available trips as possible directions");
             possibleDirections = new ArrayList<>(gtfsService.getTrips().keySet());
             direction = cutDirection(messageWords, possibleDirections);
         }
 
         // All Route Stops
-        if(direction.isEmpty()) {
+        if(direction.isEmpty() && budget.allows("all route stops")) {
             log.debug("Using names of of all stops of found routes as possible directions");
             possibleDirections = gtfsService.findStopNames(routes);
             direction = cutDirection(messageWords, possibleDirections);
@@ -232,10 +374,9 @@ public class DefaultReportService implements ReportService {
     }
 
     private List<Stop> parseStops(String cleanedMessage, List<String> stopNames) {
-        List<SimilarityScore> scores = similarityService.scoreAll(stopNames, cleanedMessage);
+        List<SimilarityScore> scores = parallelScorer.scoreAbove(stopNames, cleanedMessage, Precision.HIGH);
 
         return scores.stream()
-                .filter(similarityScore -> similarityScore.getScore() > Precision.HIGH)
                 .map(similarityScore -> gtfsService.getStops().get(similarityScore.getKey()))
                 .flatMap(Set::stream)
                 .collect(Collectors.toList());
@@ -247,44 +388,37 @@ public class DefaultReportService implements ReportService {
                 .filter(word -> gtfsService.getRoutes().containsKey(word))
                 .map(s -> gtfsService.getRoutes().get(s))
                 .flatMap(Set::stream)
-                .collect(Collectors.toList());
+                .collect(Collectors.toCollection(ArrayList::new));
 
         if (routes.isEmpty()) {
             parseRouteSynonyms(words, routes);
         }
 
-        if (routes.isEmpty()) {
-            parseAmbiguousRouteLetters(words, routes);
-        }
-
         return routes;
     }
 
-    private void parseAmbiguousRouteLetters(List<String> words, List<Route> routes) {
-        if (words.contains("s")) {
-            log.info("Message did not contain a known route name but a single 's'. Using all S-Bahn routes");
-            gtfsService.getRoutes()
-                    .keySet().stream()
-                    .filter(routeKey -> routeKey.startsWith("s"))
-                    .forEach(routeKey -> routes.addAll(gtfsService.getRoutes().get(routeKey)));
-        }
-
-        if (words.contains("u")) {
-            log.info("Message did not contain a known route name but a single 'u'. Using all U-Bahn routes.");
-            gtfsService.getRoutes()
-                    .keySet().stream()
-                    .filter(routeKey -> routeKey.startsWith("u"))
-                    .forEach(routeKey -> routes.addAll(gtfsService.getRoutes().get(routeKey)));
+    /**
+     * Adds all routes of the transport modes named in the message, e.g. a single 's' for all S-Bahn routes.
+     * Modes without routes in the feed are ignored.
+     */
+    private Set<RouteType> parseModes(List<String> words, List<Route> routes) {
+        Set<RouteType> modes = EnumSet.noneOf(RouteType.class);
+        for (String word : words) {
+            RouteType mode = MODE_HINTS.get(word);
+            if (mode != null && !gtfsService.findRoutes(mode).isEmpty() && modes.add(mode)) {
+                log.info("Message did not contain a known route name but [{}]. Using all {} routes", word, mode);
+                routes.addAll(gtfsService.findRoutes(mode));
+            }
         }
+        return modes;
     }
 
-
     private void parseRouteSynonyms(List<String> words, List<Route> routes) {
 
         for (String word : words) {
             if (routeSynonyms.containsKey(word)) {
-                log.info("Identified known synonym [{}]. Using [{}] routes", word, ambiguousRouteSynonyms.get(word));
-                routes.addAll(gtfsService.getRoutes().get(routeSynonyms.get(word)));
+                log.info("Identified known synonym [{}]. Using [{}] routes", word, routeSynonyms.get(word));
+                routes.addAll(gtfsService.getRoutes().getOrDefault(routeSynonyms.get(word), Set.of()));
             }
         }
 
@@ -296,8 +430,29 @@ public class DefaultReportService implements ReportService {
             if (ambiguousRouteSynonyms.containsKey(word)) {
                 log.info("Identified known synonym [{}]. Using [{}] routes", word, ambiguousRouteSynonyms.get(word));
                 ambiguousRouteSynonyms.get(word)
-                        .forEach(synonym -> routes.addAll(gtfsService.getRoutes().get(synonym)));
+                        .forEach(synonym -> routes.addAll(gtfsService.getRoutes().getOrDefault(synonym, Set.of())));
+            }
+        }
+    }
+
+    /**
+     * Deadline of one analysis. Remembers whether a stage was skipped.
+     */
+    private static class Budget {
+        private final Deadline deadline;
+        private boolean degraded;
+
+        Budget(Deadline deadline) {
+            this.deadline = deadline;
+        }
+
+        boolean allows(String stage) {
+            if (deadline.isExpired()) {
+                log.debug("Deadline passed. Skipping [{}]", stage);
+                degraded = true;
+                return false;
             }
+            return true;
         }
     }
 }
@@ -0,0 +1,108 @@
+package com.aljodomo.kontis.gtfs;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Realtime delays on top of the static timetable. Every delay of a trip applies from its stop sequence on
+ * until the stop sequence of the next one.
+ * <p>
+ * Updates replace the delays of a trip in place. Readers never lock and see either the old or the new delays.
+ *
+ * @author Aljoscha Domonell
+ */
+public class DelayOverlay {
+
+    private static final int[] ON_SCHEDULE = new int[0];
+
+    /**
+     * Pairs of stop sequence and delay in seconds per dense trip id, ordered by stop sequence.
+     * {@code null} is no delay.
+     */
+    private final AtomicReferenceArray<int[]> delays;
+
+    /**
+     * Largest number of seconds any trip runs ahead of its schedule.
+     */
+    private final AtomicInteger maxEarliness = new AtomicInteger();
+
+    public DelayOverlay(int tripCount) {
+        this.delays = new AtomicReferenceArray<>(tripCount);
+    }
+
+    /**
+     * @param trip              Dense trip id.
+     * @param fromStopSequence  First stop sequence of the trip the delay applies to.
+     * @param delaySeconds      Negative if the trip runs ahead of its schedule.
+     */
+    public void update(int trip, int fromStopSequence, int delaySeconds) {
+        update(trip, new int[]{fromStopSequence}, new int[]{delaySeconds});
+    }
+
+    /**
+     * Replaces all delays of the trip.
+     *
+     * @param fromStopSequences Ascending stop sequences the delays apply from.
+     * @param delaySeconds      Delay per stop sequence. Negative if the trip runs ahead of its schedule.
+     */
+    public void update(int trip, int[] fromStopSequences, int[] delaySeconds) {
+        if (trip == GtfsDictionary.NONE) {
+            return;
+        }
+        if (fromStopSequences.length != delaySeconds.length) {
+            throw new IllegalArgumentException("Every stop sequence needs one delay");
+        }
+        int[] packed = fromStopSequences.length == 0 ? ON_SCHEDULE : new int[2 * fromStopSequences.length];
+        for (int i = 0; i < fromStopSequences.length; i++) {
+            if (i > 0 && fromStopSequences[i] <= fromStopSequences[i - 1]) {
+                throw new IllegalArgumentException("Stop sequences must be ascending");
+            }
+            packed[2 * i] = fromStopSequences[i];
+            packed[2 * i + 1] = delaySeconds[i];
+            if (delaySeconds[i] < 0) {
+                maxEarliness.accumulateAndGet(-delaySeconds[i], Math::max);
+            }
+        }
+        delays.set(trip, packed);
+    }
+
+    public void clear(int trip) {
+        if (trip != GtfsDictionary.NONE) {
+            delays.set(trip, null);
+        }
+    }
+
+    /**
+     * Delay in seconds of the trip at the stop sequence.
+     */
+    public int delayAt(int trip, int stopSequence) {
+        if (trip == GtfsDictionary.NONE) {
+            return 0;
+        }
+        int[] packed = delays.get(trip);
+        if (packed == null) {
+            return 0;
+        }
+        // Usually one or a few delays per trip
+        for (int i = packed.length - 2; i >= 0; i -= 2) {
+            if (stopSequence >= packed[i]) {
+                return packed[i + 1];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Delay of the trip at the position within its pattern.
+     */
+    public int delayAt(PatternTrip trip, int index) {
+        return delayAt(trip.getTripId(), trip.getPattern().getStopSequences()[index]);
+    }
+
+    /**
+     * No trip arrives more than this many seconds before its scheduled time.
+     */
+    public int maxEarliness() {
+        return maxEarliness.get();
+    }
+}
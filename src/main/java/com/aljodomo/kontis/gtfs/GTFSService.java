@@ -2,14 +2,15 @@ package com.aljodomo.kontis.gtfs;
 
 import com.aljodomo.kontis.nlp.MessageNormalizer;
 import com.aljodomo.kontis.nlp.Precision;
+import com.aljodomo.kontis.nlp.WordSimilarityService;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import net.ricecode.similarity.SimilarityScore;
-import net.ricecode.similarity.StringSimilarityService;
 import org.onebusaway.gtfs.impl.GtfsDaoImpl;
 import org.onebusaway.gtfs.model.*;
 import org.onebusaway.gtfs.serialization.GtfsReader;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Nullable;
@@ -19,6 +20,7 @@ import java.time.*;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAmount;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -33,38 +35,106 @@ import java.util.stream.Stream;
 @Getter
 public class GTFSService {
 
+    /**
+     * Estimated heap sizes of the GTFS entities including their strings and dictionary entries.
+     */
+    private static final int STOP_BYTES = 400;
+    private static final int ROUTE_BYTES = 300;
+    private static final int TRIP_BYTES = 250;
+    private static final int KEY_BYTES = 150;
+
+    /**
+     * Zone the timetable and the messages are interpreted in. Not the JVM default, which is only set once the
+     * application started.
+     */
+    public static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+
     private final MessageNormalizer messageNormalizer;
-    private final StringSimilarityService similarityService;
+    private final WordSimilarityService similarityService;
 
     private final Map<String, Set<Route>> routes = new HashMap<>();
+    /**
+     * One representative stop per station. Platforms of a station are resolved via the {@link StationIndex}.
+     */
     private final Map<String, Set<Stop>> stops = new HashMap<>();
     private final Map<String, Set<Trip>> trips = new HashMap<>();
 
     private final Map<Route, Set<String>> routeStops = new HashMap<>();
+    private final Map<Route, BitSet> routeStations = new HashMap<>();
     private final Map<Route, Set<String>> routeTrips = new HashMap<>();
-    private final Map<Stop, Set<StopTime>> stopStopTimes = new HashMap<>();
-    private final Map<Trip, Set<StopTime>> tripStopTimes = new HashMap<>();
-    private final List<ServiceCalendar> calendars = new ArrayList<>();
 
-    private final Set<StopTime> stopTimes = new LinkedHashSet<>();
+    /**
+     * Candidates of every {@link RouteType transport mode}, for messages that only name the mode.
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<RouteType, List<Route>> routesByType = new EnumMap<>(RouteType.class);
+    @Getter(AccessLevel.NONE)
+    private final Map<RouteType, List<String>> stopNamesByType = new EnumMap<>(RouteType.class);
+    private final List<ServiceCalendar> calendars = new ArrayList<>();
 
     private final GTFSFilterProps props;
 
+    private final GtfsDictionary dictionary;
+    private final StationIndex stationIndex;
+    private final TripPatternIndex patternIndex;
+    private final HeadsignIndex headsignIndex;
+
+    /**
+     * Realtime delays applied on top of the scheduled times.
+     */
+    private final DelayOverlay delays;
+
+    /**
+     * Materialized {@link ActiveTripDay days} around the current date. Replaced as a whole.
+     */
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<Map<LocalDate, ActiveTripDay>> activeTripDays = new AtomicReference<>(Map.of());
+
+    /**
+     * Days outside of {@link #activeTripDays} that were requested, e.g. by replayed messages.
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<LocalDate, ActiveTripDay> otherActiveTripDays = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<LocalDate, ActiveTripDay> eldest) {
+                    return size() > 4;
+                }
+            });
+
     @Autowired
-    public GTFSService(GTFSFilterProps props, MessageNormalizer messageNormalizer, StringSimilarityService similarityService) throws IOException {
+    public GTFSService(GTFSFilterProps props, MessageNormalizer messageNormalizer, WordSimilarityService similarityService) throws IOException {
+        this(new File("src/main/resources/GTFS_FILTERED"), props, messageNormalizer, similarityService);
+    }
+
+    /**
+     * Loads the GTFS feed of the given directory.
+     */
+    public GTFSService(File location, GTFSFilterProps props, MessageNormalizer messageNormalizer, WordSimilarityService similarityService) throws IOException {
         this.props = props;
         this.messageNormalizer = messageNormalizer;
         this.similarityService = similarityService;
 
         GtfsDaoImpl store = new GtfsDaoImpl();        
         GtfsReader reader = new GtfsReader();
-        reader.setInputLocation(new File("src/main/resources/GTFS_FILTERED"));
+        reader.setInputLocation(location);
         reader.setEntityStore(store);
         reader.run();
-        
+
+        this.dictionary = new GtfsDictionary(store.getAllStops(), store.getAllRoutes(), store.getAllTrips());
+        this.stationIndex = new StationIndex(dictionary);
+        this.delays = new DelayOverlay(dictionary.tripCount());
+
+        log.debug("Start loading trip patterns");
+        this.patternIndex = new TripPatternIndex(store.getAllStopTimes(), dictionary, stationIndex);
+
+        this.headsignIndex = new HeadsignIndex(store.getAllTrips(), messageNormalizer::normalize, similarityService::profile);
+
         ini(store);
 
         logDetails(store);
+
+        materializeActiveTrips(LocalDate.now(ZONE));
     }
 
     /**
@@ -106,49 +176,154 @@ public class GTFSService {
      * @return
      */
     public List<StopTime> findReachable(StopTime origin, ZonedDateTime time, TemporalAmount lookAhead) {
+        return findReachable(origin.getStop(), time, lookAhead);
+    }
 
-        Set<Stop> originStops = stops.get(getKeys(origin.getStop()).get(0));
+    /**
+     * Find all future stoptimes that can be reached from the stop or one with the same name.
+     *
+     * @see #findReachable(StopTime, ZonedDateTime, TemporalAmount)
+     */
+    public List<StopTime> findReachable(Stop origin, ZonedDateTime time, TemporalAmount lookAhead) {
+
+        boolean[] originStations = new boolean[stationIndex.stationCount()];
+        Set<TripPattern> patterns = new LinkedHashSet<>();
+        for (Stop stop : stops.get(getKeys(origin).get(0))) {
+            int station = stationOf(stop);
+            if (station != GtfsDictionary.NONE) {
+                originStations[station] = true;
+                for (TripPatternIndex.PatternStop occurrence : patternIndex.patternsAt(station)) {
+                    patterns.add(occurrence.getPattern());
+                }
+            }
+        }
 
-        Stream<Trip> reachableTrips = trips.values().parallelStream()
-                .flatMap(Collection::parallelStream)
-                .filter(trip -> isActiveAt(trip, LocalDate.from(time)))
-                .filter(trip -> tripStopTimes.get(trip).stream()
-                        .anyMatch(stopTime -> originStops.contains(stopTime.getStop()) && isCloseToGivenTime(stopTime, time, lookAhead)));
+        ActiveTripDay day = activeTripsOn(LocalDate.from(time));
+        LocalDate date = day.getDate();
+        long min = nanosSince(date, time.toLocalDateTime().minus(1, ChronoUnit.MINUTES));
+        long max = nanosSince(date, time.toLocalDateTime().plus(lookAhead));
+
+        List<StopTime> reachable = new ArrayList<>();
+        for (TripPattern pattern : patterns) {
+            int first = firstIndexOf(originStations, pattern);
+            ActiveTripDay.Trips trips = day.tripsOf(pattern);
+            for (int t = 0; t < trips.size(); t++) {
+                if (toNanos(trips.firstArrival(t) - delays.maxEarliness()) >= max) {
+                    // Ordered by scheduled first arrival
+                    break;
+                }
+                PatternTrip trip = trips.trip(t);
+                if (trip.getTrip().getTripHeadsign() == null
+                        || toNanos(effectiveArrival(trips, t, trip.stopCount() - 1)) <= min
+                        || !isCloseToGivenTime(originStations, trips, t, min, max)) {
+                    continue;
+                }
+                for (int i = first; i < trip.stopCount(); i++) {
+                    if (toNanos(effectiveArrival(trips, t, i)) < max) {
+                        reachable.add(patternIndex.stopTime(trip, i, trips.shift(t) + delays.delayAt(trip, i)));
+                    }
+                }
+            }
+        }
+        return reachable;
+    }
 
-        Stream<Stream<StopTime>> reachableStopTimes = reachableTrips
-                .map(trip -> {
-                    int sequence = getSequence(originStops, trip);
-                    return tripStopTimes.get(trip).stream()
-                            .filter(stopTime -> stopTime.getStopSequence() >= sequence)
-                            .filter(stopTime -> arrivesBefore(stopTime, time.plus(lookAhead)));
-                });
+    /**
+     * Rough estimate of the heap used by the loaded data in bytes.
+     */
+    public long estimatedBytes() {
+        long entities = (long) dictionary.stopCount() * STOP_BYTES
+                + (long) dictionary.routeCount() * ROUTE_BYTES
+                + (long) dictionary.tripCount() * TRIP_BYTES;
+        long keys = (long) (stops.size() + trips.size() + routes.size()) * KEY_BYTES;
+        return entities + keys + patternIndex.estimatedBytes();
+    }
 
-        return reachableStopTimes.flatMap(Stream::distinct).collect(Collectors.toList());
+    /**
+     * Arrival including the realtime delay in seconds of the calendar day.
+     */
+    private int effectiveArrival(ActiveTripDay.Trips trips, int t, int index) {
+        return trips.arrival(t, index) + delays.delayAt(trips.trip(t), index);
     }
 
-    private boolean arrivesBefore(StopTime stopTime, ZonedDateTime time) {
-        return toLDT(time.toLocalDate(), stopTime.getArrivalTime()).isBefore(time.toLocalDateTime());
+    private int firstIndexOf(boolean[] originStations, TripPattern pattern) {
+        for (int i = 0; i < pattern.stopCount(); i++) {
+            int station = pattern.getStations()[i];
+            if (station != GtfsDictionary.NONE && originStations[station]) {
+                return i;
+            }
+        }
+        return 0;
     }
 
-    private Integer getSequence(Set<Stop> originStops, Trip trip) {
-        return tripStopTimes.get(trip).stream()
-                .filter(stopTime -> originStops.contains(stopTime.getStop()))
-                .findFirst()
-                .map(StopTime::getStopSequence)
-                .orElse(0);
+    /**
+     * Trip arrives at one of the origin stations within {@code (min, max)}.
+     */
+    private boolean isCloseToGivenTime(boolean[] originStations, ActiveTripDay.Trips trips, int t, long min, long max) {
+        PatternTrip trip = trips.trip(t);
+        for (int i = 0; i < trip.stopCount(); i++) {
+            int station = trip.station(i);
+            if (station != GtfsDictionary.NONE && originStations[station]) {
+                long arrival = toNanos(effectiveArrival(trips, t, i));
+                if (arrival > min && arrival < max) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
-    private boolean isCloseToGivenTime(StopTime stopTime, ZonedDateTime time, TemporalAmount lookAhead) {
-        LocalDateTime arrivalTime = toLDT(time.toLocalDate(), stopTime.getArrivalTime());
+    private static long nanosSince(LocalDate date, LocalDateTime time) {
+        return Duration.between(date.atStartOfDay(), time).toNanos();
+    }
 
-        LocalDateTime max = time.toLocalDateTime().plus(lookAhead);
-        LocalDateTime min = time.toLocalDateTime().minus(1, ChronoUnit.MINUTES);
+    private static long toNanos(int gtfsSecondsOfDay) {
+        return gtfsSecondsOfDay * 1_000_000_000L;
+    }
 
-        return arrivalTime.isAfter(min) && arrivalTime.isBefore(max);
+    /**
+     * Materialized trips that run on the calendar day.
+     */
+    public ActiveTripDay activeTripsOn(LocalDate date) {
+        ActiveTripDay day = activeTripDays.get().get(date);
+        if (day != null) {
+            return day;
+        }
+        day = otherActiveTripDays.get(date);
+        if (day != null) {
+            return day;
+        }
+        // Built outside the lock of the map. Concurrent lookups of the same day may build it twice
+        ActiveTripDay built = ActiveTripDay.of(date, patternIndex, this::isActiveAt);
+        ActiveTripDay raced = otherActiveTripDays.putIfAbsent(date, built);
+        return raced != null ? raced : built;
     }
 
-    private LocalDateTime toLDT(LocalDate time, int gtfsSecondsOfDay){
-        return time.atStartOfDay().plus(gtfsSecondsOfDay, ChronoUnit.SECONDS);
+    /**
+     * Materializes the upcoming day shortly before midnight, so lookups never see a day that is not materialized.
+     */
+    @Scheduled(cron = "${gtfs.active-trips-cron:0 50 23 * * *}", zone = "Europe/Berlin")
+    public void materializeUpcomingDay() {
+        materializeActiveTrips(LocalDate.now(ZONE).plusDays(1));
+    }
+
+    /**
+     * Swaps in the days before, at and after {@code today}. Already materialized days are reused.
+     */
+    void materializeActiveTrips(LocalDate today) {
+        Map<LocalDate, ActiveTripDay> current = activeTripDays.get();
+        Map<LocalDate, ActiveTripDay> next = new HashMap<>();
+        for (LocalDate date : List.of(today.minusDays(1), today, today.plusDays(1))) {
+            ActiveTripDay day = current.get(date);
+            if (day == null && !date.isBefore(today)) {
+                day = ActiveTripDay.of(date, patternIndex, this::isActiveAt);
+                log.info("Materialized {} active trips for {}", day.getTripCount(), date);
+            }
+            if (day != null) {
+                next.put(date, day);
+            }
+        }
+        activeTripDays.set(Map.copyOf(next));
     }
 
     /**
@@ -196,25 +371,29 @@ public class GTFSService {
             log.warn("More then two stopTimes were supplied [{}]", join(stopTimes, st -> st.getId().toString()));
         }
 
-        Map<String, StopTime> map = stopTimes.stream()
-                .collect(Collectors.toMap(stopTime ->
-                        messageNormalizer.normalize(stopTime.getTrip().getTripHeadsign()), Function.identity()));
-
-        if (map.size() != stopTimes.size()) {
-            log.warn("StopTimes were lost while grouping them by their normalized trip head sign [{}] != [{}]",
-                    join(stopTimes, st -> st.getId().toString()),
-                    join(map.values(), st -> st.getId().toString()));
+        List<String> directionWords = similarityService.words(direction);
+        StopTime top = null;
+        int topHeadsign = GtfsDictionary.NONE;
+        double topScore = -1;
+        for (StopTime stopTime : stopTimes) {
+            int headsign = headsignIndex.headsignOf(stopTime.getTrip());
+            if (headsign == GtfsDictionary.NONE) {
+                continue;
+            }
+            double score = similarityService.score(headsignIndex.profile(headsign), directionWords);
+            if (score > topScore) {
+                top = stopTime;
+                topHeadsign = headsign;
+                topScore = score;
+            }
         }
 
-        SimilarityScore similarityScore = similarityService
-                .findTop(List.of(map.keySet().toArray(new String[0])), direction);
-
-        if (similarityScore.getScore() < Precision.HIGH) {
+        if (top != null && topScore < Precision.HIGH) {
             log.warn("Highest similarity score from [{}] to any known stop is lower then precision threshold [{} < {}]",
-                    similarityScore.getKey(), similarityScore.getScore(), Precision.HIGH);
+                    headsignIndex.key(topHeadsign), topScore, Precision.HIGH);
         }
 
-        return Optional.ofNullable(map.get(similarityScore.getKey()));
+        return Optional.ofNullable(top);
     }
 
     /**
@@ -222,28 +401,56 @@ public class GTFSService {
      *
      * @param routes         Routes to search in.
      * @param stopCandidates Stops to filter by.
-     * @param time           Time to compare to the stopsTimes time.
+     * @param time           Time to compare to the arrival of the stopTimes including realtime delays.
      * @return Possibles stopTimes.
      */
     public List<StopTime> findStopTimes(List<Route> routes, List<Stop> stopCandidates, ZonedDateTime time) {
-        // True is one direction and false the other
-        Map<Boolean, List<StopTime>> directionalStopTimes = this.stopTimes.stream()
-                .filter(stopTime -> routes.contains(stopTime.getTrip().getRoute()))
-                .filter(stopTime -> stopCandidates.contains(stopTime.getStop()))
-                .filter(stopTime -> isActiveAt(stopTime.getTrip(), LocalDate.from(time)))
-                .collect(Collectors.partitioningBy(o -> o.getTrip().getDirectionId().equals("1")));
-
-        List<StopTime> candidates = new ArrayList<>();
-
-        directionalStopTimes.get(true)
-                .stream().min((o1, o2) -> compareToNow(time, o1, o2))
-                .ifPresent(candidates::add);
-
-        directionalStopTimes.get(false).stream()
-                .min((o1, o2) -> compareToNow(time, o1, o2))
-                .ifPresent(candidates::add);
+        ActiveTripDay day = activeTripsOn(LocalDate.from(time));
+        int now = time.toLocalTime().toSecondOfDay();
+
+        // Index 0 is one direction and 1 the other
+        PatternTrip[] closest = new PatternTrip[2];
+        int[] closestShift = new int[2];
+        int[] closestIndex = new int[2];
+        int[] closestDistance = {Integer.MAX_VALUE, Integer.MAX_VALUE};
+
+        Set<Integer> candidates = new LinkedHashSet<>();
+        stopCandidates.forEach(stop -> candidates.add(stationOf(stop)));
+
+        // Only the patterns of the modes of the routes are searched
+        Set<Route> routeSet = new HashSet<>(routes);
+        Set<RouteType> routeTypes = EnumSet.noneOf(RouteType.class);
+        routes.forEach(route -> routeTypes.add(routeTypeOf(route)));
+
+        for (int station : candidates) {
+            for (RouteType routeType : routeTypes) {
+                for (TripPatternIndex.PatternStop occurrence : patternIndex.patternsAt(station, routeType)) {
+                    TripPattern pattern = occurrence.getPattern();
+                    if (!routeSet.contains(pattern.getRoute())) {
+                        continue;
+                    }
+                    int direction = "1".equals(pattern.getDirectionId()) ? 0 : 1;
+                    ActiveTripDay.Trips trips = day.tripsOf(pattern);
+                    for (int t = 0; t < trips.size(); t++) {
+                        int distance = Math.abs(now - effectiveArrival(trips, t, occurrence.getIndex()));
+                        if (distance < closestDistance[direction]) {
+                            closest[direction] = trips.trip(t);
+                            closestShift[direction] = trips.shift(t) + delays.delayAt(trips.trip(t), occurrence.getIndex());
+                            closestIndex[direction] = occurrence.getIndex();
+                            closestDistance[direction] = distance;
+                        }
+                    }
+                }
+            }
+        }
 
-        return candidates;
+        List<StopTime> stopTimes = new ArrayList<>();
+        for (int direction = 0; direction < 2; direction++) {
+            if (closest[direction] != null) {
+                stopTimes.add(patternIndex.stopTime(closest[direction], closestIndex[direction], closestShift[direction]));
+            }
+        }
+        return stopTimes;
     }
 
     /**
@@ -256,6 +463,29 @@ public class GTFSService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Distinct names of all stops served by routes of the transport modes.
+     */
+    public List<String> findStopNames(Set<RouteType> routeTypes) {
+        if (routeTypes.size() == 1) {
+            return stopNamesByType.getOrDefault(routeTypes.iterator().next(), List.of());
+        }
+        Set<String> names = new LinkedHashSet<>();
+        routeTypes.forEach(routeType -> names.addAll(stopNamesByType.getOrDefault(routeType, List.of())));
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * All routes of the transport mode.
+     */
+    public List<Route> findRoutes(RouteType routeType) {
+        return routesByType.getOrDefault(routeType, List.of());
+    }
+
+    public RouteType routeTypeOf(Route route) {
+        return RouteType.fromType(route.getType());
+    }
+
     /**
      * Get a list of all displayed head signs of the given routes.
      * There are at least two head signs per route.
@@ -269,22 +499,19 @@ public class GTFSService {
     }
 
     /**
-     * Check if the stop is part of the given route.
+     * Check if the station of the stop is part of the given route.
      */
     public boolean isPartOf(Route route, Stop stop) {
-        return routeStops.get(route).stream().anyMatch(s -> stops.get(s).contains(stop));
+        BitSet stations = routeStations.get(route);
+        int station = stationOf(stop);
+        return stations != null && station != GtfsDictionary.NONE && stations.get(station);
     }
 
-    private int getNormalizedSecondOfDay(StopTime o1) {
-        return o1.getArrivalTime() % 86399;
-    }
-
-    private int compareToNow(ZonedDateTime now, StopTime o1, StopTime o2) {
-        // TODO arrival times are sometimes more then 24 houres. in this case the next day started
-        LocalTime time = LocalTime.ofSecondOfDay(getNormalizedSecondOfDay(o1));
-        LocalTime time2 = LocalTime.ofSecondOfDay(getNormalizedSecondOfDay(o2));
-        return Math.abs(now.toLocalTime().toSecondOfDay() - time.toSecondOfDay()) -
-                Math.abs(now.toLocalTime().toSecondOfDay() - time2.toSecondOfDay());
+    /**
+     * Dense {@link StationIndex station} id of the stop.
+     */
+    public int stationOf(Stop stop) {
+        return stationIndex.stationOf(dictionary.stopId(stop.getId().toString()));
     }
 
     private void ini(GtfsDaoImpl store) {
@@ -294,9 +521,6 @@ public class GTFSService {
         log.debug("Start loading trips");
         iniTrips(store);
 
-        log.debug("Start loading stopTimes");
-        stopTimes.addAll(store.getAllStopTimes());
-
         log.debug("Start loading stops");
         iniStops();
 
@@ -311,7 +535,9 @@ public class GTFSService {
                 .forEach(route -> {
                     String name = getKey(route);
                     add(routes, name, route);
+                    routesByType.computeIfAbsent(routeTypeOf(route), t -> new ArrayList<>()).add(route);
                 });
+        routesByType.replaceAll((routeType, routesOfType) -> List.copyOf(routesOfType));
     }
 
     private void iniTrips(GtfsDaoImpl store) {
@@ -329,21 +555,28 @@ public class GTFSService {
     }
 
     private void iniStops() {
-        stopTimes.forEach(stopTime -> {
-            getKeys(stopTime.getStop())
-                    .stream()
-                    .map(messageNormalizer::normalize)
-                    .forEach(alias -> {
-                        Stop stop = stopTime.getStop();
-                        add(stops, alias, stop);
-
-                        add(stopStopTimes, stop, stopTime);
-
-                        add(routeStops, stopTime.getTrip().getRoute(), alias);
-
-                        add(tripStopTimes, stopTime.getTrip(), stopTime);
-                    });
+        Map<RouteType, Set<String>> stopNamesOfType = new EnumMap<>(RouteType.class);
+        patternIndex.getPatterns().forEach(pattern -> {
+            Set<String> modeStopNames = stopNamesOfType.computeIfAbsent(pattern.getRouteType(), t -> new LinkedHashSet<>());
+            for (int station : pattern.getStations()) {
+                if (station == GtfsDictionary.NONE) {
+                    continue;
+                }
+                routeStations.computeIfAbsent(pattern.getRoute(), r -> new BitSet(stationIndex.stationCount())).set(station);
+
+                Stop stop = dictionary.stop(stationIndex.representativeStop(station));
+                getKeys(stop)
+                        .stream()
+                        .map(messageNormalizer::normalize)
+                        .forEach(alias -> {
+                            add(stops, alias, stop);
+
+                            add(routeStops, pattern.getRoute(), alias);
+                            modeStopNames.add(alias);
+                        });
+            }
         });
+        stopNamesOfType.forEach((routeType, names) -> stopNamesByType.put(routeType, List.copyOf(names)));
     }
 
     private void logDetails(GtfsDaoImpl store) {
@@ -356,11 +589,13 @@ public class GTFSService {
         int sCnt = stops.values().stream().map(Set::size).reduce(Integer::sum).orElse(0);
         int sCntO = store.getAllStops().size();
 
-        int stCnt = stopTimes.size();
+        int stCnt = patternIndex.stopTimeCount();
         int stCntO = store.getAllStopTimes().size();
 
         log.info("Successfully loaded {} of {} routes, {} of {} trips, {} of {} stops and {} of {} stopTimes",
                 rCnt, rCntO, tCnt, tCntO, sCnt, sCntO, stCnt, stCntO);
+        log.info("Grouped {} trips into {} trip patterns and {} stops into {} stations",
+                patternIndex.getTrips().size(), patternIndex.getPatterns().size(), sCntO, stationIndex.stationCount());
     }
 
     private <K, V> void add(Map<K, Set<V>> map, K key, V value) {
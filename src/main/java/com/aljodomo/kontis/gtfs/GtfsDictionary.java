@@ -0,0 +1,127 @@
+package com.aljodomo.kontis.gtfs;
+
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.Trip;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dense ids for the stops, routes, trips and route names of the loaded GTFS data.
+ * Ids are only valid within one loaded data set and must never be persisted.
+ *
+ * @author Aljoscha Domonell
+ */
+public class GtfsDictionary {
+
+    /**
+     * Id of values that are not part of the dictionary.
+     */
+    public static final int NONE = -1;
+
+    private final Stop[] stops;
+    private final Route[] routes;
+    private final Trip[] trips;
+    private final String[] routeNames;
+    /**
+     * {@link RouteType#code() Route type} of every route.
+     */
+    private final byte[] routeTypes;
+
+    private final Map<String, Integer> stopIds = new HashMap<>();
+    private final Map<String, Integer> routeIds = new HashMap<>();
+    private final Map<String, Integer> tripIds = new HashMap<>();
+    private final Map<String, Integer> routeNameIds = new HashMap<>();
+
+    public GtfsDictionary(Collection<Stop> stops, Collection<Route> routes, Collection<Trip> trips) {
+        this.stops = stops.toArray(new Stop[0]);
+        this.routes = routes.toArray(new Route[0]);
+        this.trips = trips.toArray(new Trip[0]);
+        this.routeTypes = new byte[this.routes.length];
+
+        for (int i = 0; i < this.stops.length; i++) {
+            stopIds.put(this.stops[i].getId().toString(), i);
+        }
+        for (int i = 0; i < this.routes.length; i++) {
+            routeIds.put(this.routes[i].getId().toString(), i);
+            routeNameIds.putIfAbsent(this.routes[i].getShortName(), routeNameIds.size());
+            routeTypes[i] = RouteType.fromType(this.routes[i].getType()).code();
+        }
+        for (int i = 0; i < this.trips.length; i++) {
+            tripIds.put(this.trips[i].getId().toString(), i);
+        }
+
+        this.routeNames = new String[routeNameIds.size()];
+        routeNameIds.forEach((name, id) -> routeNames[id] = name);
+    }
+
+    /**
+     * Dictionary without entries. Every value is unknown.
+     */
+    public static GtfsDictionary empty() {
+        return new GtfsDictionary(List.of(), List.of(), List.of());
+    }
+
+    public int stopId(@Nullable String gtfsStopId) {
+        return find(stopIds, gtfsStopId);
+    }
+
+    public int routeId(@Nullable String gtfsRouteId) {
+        return find(routeIds, gtfsRouteId);
+    }
+
+    public int tripId(@Nullable String gtfsTripId) {
+        return find(tripIds, gtfsTripId);
+    }
+
+    public int routeNameId(@Nullable String routeShortName) {
+        return find(routeNameIds, routeShortName);
+    }
+
+    @Nullable
+    public Stop stop(int id) {
+        return id == NONE ? null : stops[id];
+    }
+
+    @Nullable
+    public Route route(int id) {
+        return id == NONE ? null : routes[id];
+    }
+
+    @Nullable
+    public Trip trip(int id) {
+        return id == NONE ? null : trips[id];
+    }
+
+    @Nullable
+    public String routeName(int id) {
+        return id == NONE ? null : routeNames[id];
+    }
+
+    public RouteType routeType(int routeId) {
+        return routeId == NONE ? RouteType.UNKNOWN : RouteType.fromCode(routeTypes[routeId]);
+    }
+
+    public int stopCount() {
+        return stops.length;
+    }
+
+    public int routeCount() {
+        return routes.length;
+    }
+
+    public int tripCount() {
+        return trips.length;
+    }
+
+    private static int find(Map<String, Integer> ids, @Nullable String key) {
+        if (key == null) {
+            return NONE;
+        }
+        return ids.getOrDefault(key, NONE);
+    }
+}
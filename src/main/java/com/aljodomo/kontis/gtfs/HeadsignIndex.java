@@ -0,0 +1,64 @@
+package com.aljodomo.kontis.gtfs;
+
+import com.aljodomo.kontis.nlp.WordSimilarityService;
+import org.onebusaway.gtfs.model.Trip;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Dense ids for the normalized head signs of the trips. Every head sign is normalized and
+ * {@link WordSimilarityService#profile(String) profiled} once at load time.
+ *
+ * @author Aljoscha Domonell
+ */
+public class HeadsignIndex {
+
+    private final Map<Trip, Integer> headsignOfTrip = new HashMap<>();
+    private final WordSimilarityService.Profile[] profiles;
+
+    public HeadsignIndex(Collection<Trip> trips, UnaryOperator<String> normalizer,
+                         Function<String, WordSimilarityService.Profile> profiler) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<WordSimilarityService.Profile> profiles = new ArrayList<>();
+        for (Trip trip : trips) {
+            if (trip.getTripHeadsign() == null) {
+                continue;
+            }
+            String key = normalizer.apply(trip.getTripHeadsign());
+            Integer id = ids.computeIfAbsent(key, k -> {
+                profiles.add(profiler.apply(k));
+                return profiles.size() - 1;
+            });
+            headsignOfTrip.put(trip, id);
+        }
+        this.profiles = profiles.toArray(new WordSimilarityService.Profile[0]);
+    }
+
+    /**
+     * Dense head sign id of the trip or {@link GtfsDictionary#NONE} if it has no head sign.
+     */
+    public int headsignOf(Trip trip) {
+        return headsignOfTrip.getOrDefault(trip, GtfsDictionary.NONE);
+    }
+
+    public WordSimilarityService.Profile profile(int headsign) {
+        return profiles[headsign];
+    }
+
+    /**
+     * Normalized head sign.
+     */
+    public String key(int headsign) {
+        return profiles[headsign].getFeature();
+    }
+
+    public int headsignCount() {
+        return profiles.length;
+    }
+}
@@ -0,0 +1,82 @@
+package com.aljodomo.kontis.gtfs;
+
+import lombok.Getter;
+import org.onebusaway.gtfs.model.Trip;
+
+import javax.annotation.Nullable;
+
+/**
+ * A trip of a {@link TripPattern}. Stores its start time and offsets from it per stop of the pattern.
+ * Trips with the same timing share the same offset arrays.
+ * <p>
+ * Times are GTFS seconds of the service day and may exceed 24:00.
+ *
+ * @author Aljoscha Domonell
+ */
+@Getter
+public class PatternTrip {
+
+    private final Trip trip;
+
+    /**
+     * Dense trip id of the {@link GtfsDictionary}.
+     */
+    private final int tripId;
+    private final TripPattern pattern;
+    private final int startTime;
+
+    private final int[] arrivalOffsets;
+    private final int[] departureOffsets;
+
+    /**
+     * Ids of the GTFS stop times. {@code null} if they are consecutive from {@link #firstStopTimeId}.
+     */
+    @Nullable
+    private final int[] stopTimeIds;
+    private final int firstStopTimeId;
+
+    PatternTrip(Trip trip, int tripId, TripPattern pattern, int startTime, int[] arrivalOffsets, int[] departureOffsets,
+                @Nullable int[] stopTimeIds, int firstStopTimeId) {
+        this.trip = trip;
+        this.tripId = tripId;
+        this.pattern = pattern;
+        this.startTime = startTime;
+        this.arrivalOffsets = arrivalOffsets;
+        this.departureOffsets = departureOffsets;
+        this.stopTimeIds = stopTimeIds;
+        this.firstStopTimeId = firstStopTimeId;
+    }
+
+    /**
+     * @param index Position within the pattern.
+     */
+    public int arrival(int index) {
+        return startTime + arrivalOffsets[index];
+    }
+
+    public int departure(int index) {
+        return startTime + departureOffsets[index];
+    }
+
+    public int stopTimeId(int index) {
+        return stopTimeIds == null ? firstStopTimeId + index : stopTimeIds[index];
+    }
+
+    /**
+     * Dense stop id at the position within the pattern.
+     */
+    public int stop(int index) {
+        return pattern.getStops()[index];
+    }
+
+    /**
+     * Dense station id at the position within the pattern.
+     */
+    public int station(int index) {
+        return pattern.getStations()[index];
+    }
+
+    public int stopCount() {
+        return pattern.stopCount();
+    }
+}
@@ -0,0 +1,34 @@
+package com.aljodomo.kontis.gtfs;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of the {@link RelevanceFilter}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties("prefilter")
+public class PrefilterProps {
+
+    /**
+     * Reject messages without any route, stop or head sign word before they are analysed.
+     */
+    private boolean enabled = false;
+
+    /**
+     * False positive rate of the bloom filters. Lower rates use more memory.
+     */
+    private double falsePositiveRate = 0.01;
+
+    /**
+     * Share of the trigrams of a word that must be known for the word to count as a misspelled hit.
+     */
+    private double trigramRatio = 0.6;
+
+    /**
+     * Analyse rejected messages anyway and count the ones that still became a report.
+     */
+    private boolean shadow = false;
+}
@@ -0,0 +1,48 @@
+package com.aljodomo.kontis.gtfs;
+
+import com.aljodomo.kontis.model.Report;
+import lombok.Getter;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Stop;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Result of the fast phase of an analysis. The report is ready to be shown and stored.
+ * A pending recognition still knows the routes, stops and direction to {@link ReportService#enrich resolve the stop time} later.
+ *
+ * @author Aljoscha Domonell
+ */
+public class Recognition {
+
+    @Getter
+    private final Report report;
+    @Getter
+    private final boolean pending;
+
+    final List<Route> routes;
+    final List<Stop> stops;
+    @Nullable
+    final String direction;
+
+    private Recognition(Report report, boolean pending, List<Route> routes, List<Stop> stops,
+                        @Nullable String direction) {
+        this.report = report;
+        this.pending = pending;
+        this.routes = routes;
+        this.stops = stops;
+        this.direction = direction;
+    }
+
+    /**
+     * Nothing left to resolve.
+     */
+    public static Recognition done(Report report) {
+        return new Recognition(report, false, List.of(), List.of(), null);
+    }
+
+    static Recognition pending(Report partialReport, List<Route> routes, List<Stop> stops, @Nullable String direction) {
+        return new Recognition(partialReport, true, routes, stops, direction);
+    }
+}
@@ -0,0 +1,124 @@
+package com.aljodomo.kontis.gtfs;
+
+import com.aljodomo.kontis.utils.BloomFilter;
+import lombok.Value;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cheap check whether a message mentions anything of the GTFS vocabulary.
+ * <p>
+ * A word is a hit if it is a known route, stop or head sign word, or if enough of its trigrams are known,
+ * so misspelled names still pass. Messages without any hit are no reports.
+ *
+ * @author Aljoscha Domonell
+ */
+public class RelevanceFilter {
+
+    private static final int GRAM = 3;
+
+    private final BloomFilter words;
+    private final BloomFilter trigrams;
+    private final double trigramRatio;
+    private final boolean shadow;
+
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong missed = new AtomicLong();
+
+    /**
+     * @param vocabulary Normalized names. Names with multiple words are split.
+     */
+    public RelevanceFilter(Collection<String> vocabulary, PrefilterProps props) {
+        Set<String> vocabularyWords = new HashSet<>();
+        Set<String> vocabularyTrigrams = new HashSet<>();
+        for (String name : vocabulary) {
+            for (String word : name.split(" ")) {
+                if (word.isEmpty()) {
+                    continue;
+                }
+                vocabularyWords.add(word);
+                for (int i = 0; i + GRAM <= word.length(); i++) {
+                    vocabularyTrigrams.add(word.substring(i, i + GRAM));
+                }
+            }
+        }
+
+        this.words = new BloomFilter(vocabularyWords.size(), props.getFalsePositiveRate());
+        vocabularyWords.forEach(words::add);
+        this.trigrams = new BloomFilter(vocabularyTrigrams.size(), props.getFalsePositiveRate());
+        vocabularyTrigrams.forEach(trigrams::add);
+
+        this.trigramRatio = props.getTrigramRatio();
+        this.shadow = props.isShadow();
+    }
+
+    /**
+     * @param normalizedMessage {@link com.aljodomo.kontis.nlp.MessageNormalizer#normalize(String) Normalized} message.
+     */
+    public boolean isRelevant(String normalizedMessage) {
+        checked.incrementAndGet();
+        int start = 0;
+        while (start < normalizedMessage.length()) {
+            int end = normalizedMessage.indexOf(' ', start);
+            if (end == -1) {
+                end = normalizedMessage.length();
+            }
+            if (end > start && isHit(normalizedMessage, start, end)) {
+                return true;
+            }
+            start = end + 1;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    private boolean isHit(String message, int start, int end) {
+        if (words.mightContain(message, start, end)) {
+            return true;
+        }
+        int total = end - start - GRAM + 1;
+        if (total <= 0) {
+            return false;
+        }
+        int hits = 0;
+        for (int i = start; i + GRAM <= end; i++) {
+            if (trigrams.mightContain(message, i, i + GRAM)) {
+                hits++;
+            }
+        }
+        return hits >= trigramRatio * total;
+    }
+
+    /**
+     * Rejected messages are still analysed.
+     */
+    public boolean isShadow() {
+        return shadow;
+    }
+
+    /**
+     * A rejected message became a report in {@link #isShadow() shadow} mode.
+     */
+    public void recordMiss() {
+        missed.incrementAndGet();
+    }
+
+    public Stats getStats() {
+        return new Stats(checked.get(), rejected.get(), missed.get());
+    }
+
+    @Value
+    public static class Stats {
+        long checked;
+        long rejected;
+
+        /**
+         * Rejected messages that were reports. Should stay {@code 0}.
+         */
+        long missed;
+    }
+}
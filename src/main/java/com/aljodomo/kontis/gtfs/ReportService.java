@@ -18,4 +18,31 @@ public interface ReportService {
      * @return
      */
     Optional<Report> analyse(String message, ZonedDateTime time);
+
+    /**
+     * Analyse the message within the deadline. Implementations that cannot degrade ignore the deadline.
+     *
+     * @return A {@link Report#isDegraded() degraded} report if stages were skipped because the deadline passed.
+     */
+    default Optional<Report> analyse(String message, ZonedDateTime time, Deadline deadline) {
+        return analyse(message, time);
+    }
+
+    /**
+     * Fast phase of a two phase analysis. Recognises route and stop without resolving the stop time,
+     * unless there is no partial report to show in the meantime.
+     * Implementations without two phases return the complete analysis.
+     */
+    default Optional<Recognition> recognise(String message, ZonedDateTime time) {
+        return analyse(message, time).map(Recognition::done);
+    }
+
+    /**
+     * Slow phase of a two phase analysis. Resolves the stop time of a {@link Recognition#isPending() pending} recognition.
+     *
+     * @return The complete report with the id of the partial report or empty if the stop time could not be resolved.
+     */
+    default Optional<Report> enrich(Recognition recognition) {
+        return Optional.empty();
+    }
 }
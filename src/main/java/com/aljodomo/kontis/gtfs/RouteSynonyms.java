@@ -0,0 +1,45 @@
+package com.aljodomo.kontis.gtfs;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Network specific names of routes that are not part of the GTFS data.
+ * Keys and values are {@link com.aljodomo.kontis.nlp.MessageNormalizer#normalize(String) normalized} route names.
+ *
+ * @author Aljoscha Domonell
+ */
+@Value
+public class RouteSynonyms {
+
+    public static final RouteSynonyms BERLIN = new RouteSynonyms(
+            Map.of(
+                    "41", "s41",
+                    "42", "s42"
+            ),
+            Map.of(
+                    "ring", List.of("s41", "s42"),
+                    "ringbahn", List.of("s41", "s42")
+            ),
+            Set.of("S41", "S42"));
+
+    public static final RouteSynonyms NONE = new RouteSynonyms(Map.of(), Map.of(), Set.of());
+
+    /**
+     * Synonym of exactly one route.
+     */
+    Map<String, String> routes;
+
+    /**
+     * Synonym of multiple routes.
+     */
+    Map<String, List<String>> ambiguousRoutes;
+
+    /**
+     * Short names of routes that have no direction.
+     */
+    Set<String> circleRoutes;
+}
@@ -2,10 +2,12 @@ package com.aljodomo.kontis.gtfs;
 
 import lombok.AllArgsConstructor;
 
-import java.util.Arrays;
-
+/**
+ * Transport mode of a route by its extended GTFS route type. The basic route types are mapped to the same modes.
+ */
 @AllArgsConstructor
 public enum RouteType {
+    SuburbanRailwayService(109, 110),
     RailwayService(100, 200),
     CoachService(200, 400),
     UrbanRailwayService(400, 700),
@@ -14,13 +16,49 @@ public enum RouteType {
     TramService(900, 1000),
     UNKNOWN(1000, -1);
 
+    private static final RouteType[] VALUES = values();
+
+    /**
+     * Mode of every route type below 1000. The first matching range wins.
+     */
+    private static final RouteType[] BY_TYPE = new RouteType[1000];
+
+    static {
+        for (int type = 0; type < BY_TYPE.length; type++) {
+            BY_TYPE[type] = UNKNOWN;
+            for (RouteType routeType : VALUES) {
+                if (routeType.lower <= type && routeType.upper > type) {
+                    BY_TYPE[type] = routeType;
+                    break;
+                }
+            }
+        }
+        BY_TYPE[0] = TramService;
+        BY_TYPE[1] = UrbanRailwayService;
+        BY_TYPE[2] = RailwayService;
+        BY_TYPE[3] = BusService;
+        BY_TYPE[11] = TrolleybusService;
+    }
+
     private int lower;
     private int upper;
 
     public static RouteType fromType(int type) {
-        return Arrays.stream(RouteType.values())
-                .filter(routeType -> routeType.lower <= type && routeType.upper > type)
-                .findFirst()
-                .orElse(RouteType.UNKNOWN);
+        return type >= 0 && type < BY_TYPE.length ? BY_TYPE[type] : UNKNOWN;
+    }
+
+    /**
+     * Compact representation for per route arrays.
+     */
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    public static RouteType fromCode(byte code) {
+        return VALUES[code];
+    }
+
+    public static int count() {
+        return VALUES.length;
     }
 }
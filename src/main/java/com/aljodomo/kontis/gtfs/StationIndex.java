@@ -0,0 +1,132 @@
+package com.aljodomo.kontis.gtfs;
+
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Stop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups platform level stops into stations by their {@code parent_station}.
+ * Stops without a parent station are a station of their own.
+ * <p>
+ * Stations have dense ids. Stop ids are the ones of the {@link GtfsDictionary}.
+ *
+ * @author Aljoscha Domonell
+ */
+public class StationIndex {
+
+    private final String[] stationIds;
+    private final int[] stationOfStop;
+    private final int[][] stopsOfStation;
+    private final int[] representativeStops;
+
+    public StationIndex(GtfsDictionary dictionary) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> stationIds = new ArrayList<>();
+        List<List<Integer>> stops = new ArrayList<>();
+
+        this.stationOfStop = new int[dictionary.stopCount()];
+        for (int stop = 0; stop < stationOfStop.length; stop++) {
+            String stationId = stationId(dictionary.stop(stop));
+            int station = ids.computeIfAbsent(stationId, id -> {
+                stationIds.add(id);
+                stops.add(new ArrayList<>());
+                return stationIds.size() - 1;
+            });
+            stationOfStop[stop] = station;
+            stops.get(station).add(stop);
+        }
+
+        this.stationIds = stationIds.toArray(new String[0]);
+        this.stopsOfStation = stops.stream()
+                .map(s -> s.stream().mapToInt(Integer::intValue).toArray())
+                .toArray(int[][]::new);
+
+        this.representativeStops = new int[this.stationIds.length];
+        for (int station = 0; station < representativeStops.length; station++) {
+            representativeStops[station] = representative(dictionary, this.stationIds[station], stopsOfStation[station]);
+        }
+    }
+
+    /**
+     * @param stop Dense stop id.
+     * @return Dense station id or {@link GtfsDictionary#NONE}.
+     */
+    public int stationOf(int stop) {
+        return stop == GtfsDictionary.NONE ? GtfsDictionary.NONE : stationOfStop[stop];
+    }
+
+    /**
+     * Dense stop ids of the platforms of the station.
+     */
+    public int[] stopsOf(int station) {
+        return stopsOfStation[station];
+    }
+
+    /**
+     * Dense stop id that represents the station in names and partial reports.
+     * The parent station itself if the feed has it, otherwise the platform closest to the center of the platforms.
+     */
+    public int representativeStop(int station) {
+        return representativeStops[station];
+    }
+
+    /**
+     * Stop id of the parent station, or of the stop itself if it has no parent.
+     */
+    public String stationId(int station) {
+        return stationIds[station];
+    }
+
+    public int stationCount() {
+        return stationIds.length;
+    }
+
+    /**
+     * Identifies the grouping. Changes whenever stations or their order change.
+     */
+    public long fingerprint() {
+        return Arrays.hashCode(stationIds) * 31L + stationIds.length;
+    }
+
+    /**
+     * {@code parent_station} is the raw id of the parent within the same feed, so it gets the agency of the stop.
+     */
+    private static String stationId(Stop stop) {
+        String parent = stop.getParentStation();
+        return parent == null || parent.isBlank()
+                ? stop.getId().toString()
+                : new AgencyAndId(stop.getId().getAgencyId(), parent).toString();
+    }
+
+    private static int representative(GtfsDictionary dictionary, String stationId, int[] stops) {
+        double lat = 0;
+        double lon = 0;
+        for (int stop : stops) {
+            if (dictionary.stop(stop).getId().toString().equals(stationId)) {
+                return stop;
+            }
+            lat += dictionary.stop(stop).getLat();
+            lon += dictionary.stop(stop).getLon();
+        }
+        lat /= stops.length;
+        lon /= stops.length;
+
+        int closest = stops[0];
+        double closestDistance = Double.MAX_VALUE;
+        for (int stop : stops) {
+            double dLat = dictionary.stop(stop).getLat() - lat;
+            double dLon = dictionary.stop(stop).getLon() - lon;
+            double distance = dLat * dLat + dLon * dLon;
+            if (distance < closestDistance) {
+                closest = stop;
+                closestDistance = distance;
+            }
+        }
+        return closest;
+    }
+}
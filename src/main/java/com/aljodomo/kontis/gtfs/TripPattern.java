@@ -0,0 +1,56 @@
+package com.aljodomo.kontis.gtfs;
+
+import lombok.Getter;
+import org.onebusaway.gtfs.model.Route;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Trips of a route that serve the same stops in the same order and direction.
+ * The stops are stored once for all of its trips.
+ *
+ * @author Aljoscha Domonell
+ */
+@Getter
+public class TripPattern {
+
+    private final Route route;
+    private final RouteType routeType;
+    private final String directionId;
+
+    /**
+     * Dense stop ids in the order they are served.
+     */
+    private final int[] stops;
+
+    /**
+     * Dense {@link StationIndex station} ids of the {@link #stops}.
+     */
+    private final int[] stations;
+    private final int[] stopSequences;
+
+    private final List<PatternTrip> trips = new ArrayList<>();
+
+    TripPattern(Route route, RouteType routeType, String directionId, int[] stops, int[] stations, int[] stopSequences) {
+        this.route = route;
+        this.routeType = routeType;
+        this.directionId = directionId;
+        this.stops = stops;
+        this.stations = stations;
+        this.stopSequences = stopSequences;
+    }
+
+    public int stopCount() {
+        return stops.length;
+    }
+
+    public List<PatternTrip> getTrips() {
+        return Collections.unmodifiableList(trips);
+    }
+
+    void add(PatternTrip trip) {
+        trips.add(trip);
+    }
+}
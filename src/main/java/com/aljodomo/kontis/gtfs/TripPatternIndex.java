@@ -0,0 +1,256 @@
+package com.aljodomo.kontis.gtfs;
+
+import lombok.Value;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Groups trips into {@link TripPattern patterns} of route, direction and stop sequence.
+ * <p>
+ * Replaces one {@link StopTime} entity per stop and trip. Stop times are only
+ * {@link #stopTime(PatternTrip, int) materialized} for results.
+ * Patterns are indexed by the {@link StationIndex station} of their stops, so all platforms of a station are found at once.
+ *
+ * @author Aljoscha Domonell
+ */
+public class TripPatternIndex {
+
+    private static final PatternStop[] NONE = new PatternStop[0];
+
+    private static final int OBJECT_BYTES = 32;
+    private static final int ARRAY_BYTES = 16;
+    private static final int MAP_ENTRY_BYTES = 48;
+
+    private final GtfsDictionary dictionary;
+
+    private final List<TripPattern> patterns;
+    private final Map<Trip, PatternTrip> trips = new HashMap<>();
+
+    /**
+     * Occurrences of every dense station id within the patterns.
+     */
+    private final PatternStop[][] patternsAtStation;
+
+    /**
+     * {@link #patternsAtStation} partitioned by the {@link RouteType#code() route type} of the pattern.
+     */
+    private final PatternStop[][][] patternsAtStationByType;
+
+    private final int stopTimeCount;
+
+    public TripPatternIndex(Collection<StopTime> stopTimes, GtfsDictionary dictionary, StationIndex stationIndex) {
+        this.dictionary = dictionary;
+        this.stopTimeCount = stopTimes.size();
+
+        Map<Trip, List<StopTime>> byTrip = new LinkedHashMap<>();
+        for (StopTime stopTime : stopTimes) {
+            byTrip.computeIfAbsent(stopTime.getTrip(), t -> new ArrayList<>()).add(stopTime);
+        }
+
+        Map<PatternKey, TripPattern> patterns = new LinkedHashMap<>();
+        Map<IntBuffer, int[]> offsets = new HashMap<>();
+        byTrip.forEach((trip, tripStopTimes) -> {
+            tripStopTimes.sort(Comparator.comparingInt(StopTime::getStopSequence));
+            int size = tripStopTimes.size();
+
+            int[] stops = new int[size];
+            int[] stations = new int[size];
+            int[] sequences = new int[size];
+            int[] ids = new int[size];
+            for (int i = 0; i < size; i++) {
+                StopTime stopTime = tripStopTimes.get(i);
+                stops[i] = dictionary.stopId(stopTime.getStop().getId().toString());
+                stations[i] = stationIndex.stationOf(stops[i]);
+                sequences[i] = stopTime.getStopSequence();
+                ids[i] = stopTime.getId();
+            }
+
+            TripPattern pattern = patterns.computeIfAbsent(
+                    new PatternKey(trip.getRoute().getId().toString(), trip.getDirectionId(), IntBuffer.wrap(stops), IntBuffer.wrap(sequences)),
+                    key -> new TripPattern(trip.getRoute(), dictionary.routeType(dictionary.routeId(key.getRouteId())),
+                            trip.getDirectionId(), stops, stations, sequences));
+
+            StopTime first = tripStopTimes.get(0);
+            int startTime = first.isDepartureTimeSet() ? first.getDepartureTime()
+                    : first.isArrivalTimeSet() ? first.getArrivalTime() : 0;
+            int[] arrivals = new int[size];
+            int[] departures = new int[size];
+            for (int i = 0; i < size; i++) {
+                arrivals[i] = tripStopTimes.get(i).getArrivalTime() - startTime;
+                departures[i] = tripStopTimes.get(i).getDepartureTime() - startTime;
+            }
+
+            PatternTrip patternTrip = new PatternTrip(trip, dictionary.tripId(trip.getId().toString()), pattern, startTime,
+                    intern(offsets, arrivals), intern(offsets, departures),
+                    isConsecutive(ids) ? null : ids, ids[0]);
+            pattern.add(patternTrip);
+            this.trips.put(trip, patternTrip);
+        });
+        this.patterns = List.copyOf(patterns.values());
+
+        List<List<PatternStop>> atStation = new ArrayList<>();
+        for (int station = 0; station < stationIndex.stationCount(); station++) {
+            atStation.add(new ArrayList<>());
+        }
+        for (TripPattern pattern : this.patterns) {
+            for (int i = 0; i < pattern.stopCount(); i++) {
+                int station = pattern.getStations()[i];
+                if (station != GtfsDictionary.NONE) {
+                    atStation.get(station).add(new PatternStop(pattern, i));
+                }
+            }
+        }
+        this.patternsAtStation = atStation.stream()
+                .map(occurrences -> occurrences.toArray(NONE))
+                .toArray(PatternStop[][]::new);
+
+        this.patternsAtStationByType = new PatternStop[patternsAtStation.length][][];
+        for (int station = 0; station < patternsAtStation.length; station++) {
+            patternsAtStationByType[station] = partitionByType(patternsAtStation[station]);
+        }
+    }
+
+    private static PatternStop[][] partitionByType(PatternStop[] occurrences) {
+        int[] counts = new int[RouteType.count()];
+        for (PatternStop occurrence : occurrences) {
+            counts[occurrence.getPattern().getRouteType().ordinal()]++;
+        }
+        PatternStop[][] byType = new PatternStop[counts.length][];
+        for (int type = 0; type < counts.length; type++) {
+            byType[type] = counts[type] == 0 ? NONE : new PatternStop[counts[type]];
+            counts[type] = 0;
+        }
+        for (PatternStop occurrence : occurrences) {
+            int type = occurrence.getPattern().getRouteType().ordinal();
+            byType[type][counts[type]++] = occurrence;
+        }
+        return byType;
+    }
+
+    public List<TripPattern> getPatterns() {
+        return patterns;
+    }
+
+    public PatternTrip patternTrip(Trip trip) {
+        return trips.get(trip);
+    }
+
+    public Collection<PatternTrip> getTrips() {
+        return Collections.unmodifiableCollection(trips.values());
+    }
+
+    /**
+     * Occurrences of the platforms of the station within the patterns.
+     *
+     * @param station Dense station id.
+     */
+    public PatternStop[] patternsAt(int station) {
+        return station == GtfsDictionary.NONE ? NONE : patternsAtStation[station];
+    }
+
+    /**
+     * Occurrences of the platforms of the station within patterns of the route type.
+     */
+    public PatternStop[] patternsAt(int station, RouteType routeType) {
+        return station == GtfsDictionary.NONE ? NONE : patternsAtStationByType[station][routeType.ordinal()];
+    }
+
+    /**
+     * Rough estimate of the heap used by the patterns and trips in bytes. Shared offset arrays are counted once.
+     */
+    public long estimatedBytes() {
+        Set<int[]> offsets = Collections.newSetFromMap(new IdentityHashMap<>());
+        long bytes = 0;
+        for (TripPattern pattern : patterns) {
+            bytes += OBJECT_BYTES + 3L * (ARRAY_BYTES + 4L * pattern.stopCount());
+            for (PatternTrip trip : pattern.getTrips()) {
+                bytes += OBJECT_BYTES + MAP_ENTRY_BYTES;
+                if (trip.getStopTimeIds() != null) {
+                    bytes += ARRAY_BYTES + 4L * trip.getStopTimeIds().length;
+                }
+                for (int[] offset : List.of(trip.getArrivalOffsets(), trip.getDepartureOffsets())) {
+                    if (offsets.add(offset)) {
+                        bytes += ARRAY_BYTES + 4L * offset.length;
+                    }
+                }
+            }
+        }
+        for (PatternStop[] occurrences : patternsAtStation) {
+            // The partitions by route type reference the same occurrences
+            bytes += 2L * ARRAY_BYTES + RouteType.count() * 8L + (long) occurrences.length * (OBJECT_BYTES + 16);
+        }
+        return bytes;
+    }
+
+    /**
+     * Number of stop times the index was built from.
+     */
+    public int stopTimeCount() {
+        return stopTimeCount;
+    }
+
+    /**
+     * Stop time entity of the position within the trip. A new instance on every call.
+     */
+    public StopTime stopTime(PatternTrip trip, int index) {
+        return stopTime(trip, index, 0);
+    }
+
+    /**
+     * Stop time entity with its times shifted by the given seconds, e.g. onto the next calendar day.
+     *
+     * @see ActiveTripDay.Trips#shift(int)
+     */
+    public StopTime stopTime(PatternTrip trip, int index, int shift) {
+        StopTime stopTime = new StopTime();
+        stopTime.setId(trip.stopTimeId(index));
+        stopTime.setTrip(trip.getTrip());
+        stopTime.setStop(dictionary.stop(trip.stop(index)));
+        stopTime.setStopSequence(trip.getPattern().getStopSequences()[index]);
+        stopTime.setArrivalTime(trip.arrival(index) + shift);
+        stopTime.setDepartureTime(trip.departure(index) + shift);
+        return stopTime;
+    }
+
+    private static int[] intern(Map<IntBuffer, int[]> offsets, int[] values) {
+        return offsets.computeIfAbsent(IntBuffer.wrap(values), key -> values);
+    }
+
+    private static boolean isConsecutive(int[] ids) {
+        for (int i = 1; i < ids.length; i++) {
+            if (ids[i] != ids[0] + i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Position of a stop within a pattern.
+     */
+    @Value
+    public static class PatternStop {
+        TripPattern pattern;
+        int index;
+    }
+
+    @Value
+    private static class PatternKey {
+        String routeId;
+        String directionId;
+        IntBuffer stops;
+        IntBuffer stopSequences;
+    }
+}
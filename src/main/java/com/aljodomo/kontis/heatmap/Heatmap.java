@@ -0,0 +1,100 @@
+package com.aljodomo.kontis.heatmap;
+
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Weights per {@link com.aljodomo.kontis.gtfs.GtfsDictionary dense stop id} for a ring of consecutive time buckets.
+ * <p>
+ * Written by a single thread. Additions become visible to readers with {@link #publish()},
+ * which replaces the snapshot of every touched bucket. Readers only copy a snapshot and never wait for the writer.
+ */
+public class Heatmap {
+
+    private final int stopCount;
+    private final long bucketSeconds;
+
+    private final double[][] working;
+    private final long[] workingBucket;
+    private final boolean[] dirty;
+
+    private final AtomicReferenceArray<Snapshot> published;
+
+    public Heatmap(int stopCount, Duration bucketSize, int bucketCount) {
+        if (bucketSize.getSeconds() < 1 || bucketCount < 1) {
+            throw new IllegalArgumentException("Bucket size and count must be positive");
+        }
+        this.stopCount = stopCount;
+        this.bucketSeconds = bucketSize.getSeconds();
+        this.working = new double[bucketCount][stopCount];
+        this.workingBucket = new long[bucketCount];
+        Arrays.fill(workingBucket, Long.MIN_VALUE);
+        this.dirty = new boolean[bucketCount];
+        this.published = new AtomicReferenceArray<>(bucketCount);
+    }
+
+    public long bucketOf(long epochSecond) {
+        return Math.floorDiv(epochSecond, bucketSeconds);
+    }
+
+    public long bucketStart(long bucket) {
+        return bucket * bucketSeconds;
+    }
+
+    /**
+     * Adds weight to the stop in the bucket of the time. Buckets that are older than the retained ones are ignored.
+     * Only called by the writer thread.
+     */
+    public void add(int stop, long epochSecond, double weight) {
+        long bucket = bucketOf(epochSecond);
+        int slot = slot(bucket);
+        if (workingBucket[slot] != bucket) {
+            if (bucket < workingBucket[slot]) {
+                return;
+            }
+            Arrays.fill(working[slot], 0);
+            workingBucket[slot] = bucket;
+        }
+        working[slot][stop] += weight;
+        dirty[slot] = true;
+    }
+
+    /**
+     * Makes all additions since the last call visible to readers.
+     * Only called by the writer thread.
+     */
+    public void publish() {
+        for (int slot = 0; slot < working.length; slot++) {
+            if (dirty[slot]) {
+                published.set(slot, new Snapshot(workingBucket[slot], working[slot].clone()));
+                dirty[slot] = false;
+            }
+        }
+    }
+
+    /**
+     * Copy of the published weights of the bucket of the time, indexed by dense stop id.
+     * All zero if nothing is known about the bucket.
+     */
+    public double[] weightsAt(long epochSecond) {
+        long bucket = bucketOf(epochSecond);
+        Snapshot snapshot = published.get(slot(bucket));
+        if (snapshot == null || snapshot.getBucket() != bucket) {
+            return new double[stopCount];
+        }
+        return snapshot.getWeights().clone();
+    }
+
+    private int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) working.length);
+    }
+
+    @Value
+    private static class Snapshot {
+        long bucket;
+        double[] weights;
+    }
+}
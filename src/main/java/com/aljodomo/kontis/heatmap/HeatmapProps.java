@@ -0,0 +1,48 @@
+package com.aljodomo.kontis.heatmap;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Settings of the {@link HeatmapService}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties("heatmap")
+public class HeatmapProps {
+
+    /**
+     * Predict inspector positions from new reports.
+     */
+    private boolean enabled = false;
+
+    /**
+     * How far a sighting is extrapolated into the future.
+     */
+    private Duration lookAhead = Duration.ofMinutes(30);
+
+    private Duration bucketSize = Duration.ofMinutes(5);
+
+    /**
+     * Number of retained time buckets. Must cover the look ahead plus the bucket of the sighting.
+     */
+    private int bucketCount = 36;
+
+    /**
+     * The weight of a predicted position halves with every half life after the sighting.
+     */
+    private Duration halfLife = Duration.ofMinutes(10);
+
+    /**
+     * Maximum number of cached reachability results.
+     */
+    private int reachabilityCacheSize = 1_000;
+
+    /**
+     * Reports waiting for the heatmap. Further reports are skipped.
+     */
+    private int queueCapacity = 1_000;
+}
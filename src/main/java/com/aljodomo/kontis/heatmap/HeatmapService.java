@@ -0,0 +1,237 @@
+package com.aljodomo.kontis.heatmap;
+
+import com.aljodomo.kontis.gtfs.GTFSService;
+import com.aljodomo.kontis.gtfs.GtfsDictionary;
+import com.aljodomo.kontis.model.Report;
+import com.aljodomo.kontis.telegram.ReportListener;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Predicts likely inspector positions from complete reports.
+ * <p>
+ * A background thread extrapolates every report along the {@link GTFSService#findReachable reachable stop times}
+ * and adds a weight that decays with the time since the sighting to the {@link Heatmap} bucket of each arrival.
+ * Reachability is cached per origin stop and time bucket, so reports at the same stop share one graph search.
+ * Reads copy a published snapshot and never search the graph.
+ *
+ * @author Aljoscha Domonell
+ */
+@Service
+@ConditionalOnProperty(prefix = "heatmap", name = "enabled", havingValue = "true")
+@Slf4j
+public class HeatmapService implements ReportListener {
+
+    private final GTFSService gtfsService;
+    private final GtfsDictionary dictionary;
+    private final HeatmapProps props;
+
+    private final Heatmap heatmap;
+    private final Map<Origin, Reachability> reachabilityCache;
+    private final BlockingQueue<Report> queue;
+    private final Thread worker;
+
+    @Autowired
+    public HeatmapService(HeatmapProps props, GTFSService gtfsService) {
+        long requiredBuckets = requiredBuckets(props);
+        if (props.getBucketCount() < requiredBuckets) {
+            throw new IllegalArgumentException("heatmap.bucket-count must be at least " + requiredBuckets
+                    + " to cover the look ahead of " + props.getLookAhead() + " with buckets of " + props.getBucketSize());
+        }
+        this.gtfsService = gtfsService;
+        this.dictionary = gtfsService.getDictionary();
+        this.props = props;
+        this.heatmap = new Heatmap(dictionary.stopCount(), props.getBucketSize(), props.getBucketCount());
+        this.reachabilityCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Origin, Reachability> eldest) {
+                return size() > props.getReachabilityCacheSize();
+            }
+        };
+        this.queue = new ArrayBlockingQueue<>(props.getQueueCapacity());
+
+        this.worker = new Thread(this::run, "heatmap");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Only complete reports are extrapolated. Partial ones lack the trip.
+     */
+    @Override
+    public void onReport(Report report) {
+        if (report.getStopTimeId() == null || report.getStopId() == null) {
+            return;
+        }
+        if (!queue.offer(report)) {
+            log.warn("Heatmap can not keep up. Skipping report: {}", report.getId());
+        }
+    }
+
+    @Override
+    public void onReportEnriched(Report report) {
+        onReport(report);
+    }
+
+    /**
+     * The heatmap is indexed by the stops of the default feed.
+     */
+    @Override
+    public boolean isDefaultFeedOnly() {
+        return true;
+    }
+
+    /**
+     * Weights of the likely inspector positions at the time, indexed by
+     * {@link GtfsDictionary#stopId(String) dense stop id}. The array is a copy.
+     */
+    public double[] likelyPositions(ZonedDateTime time) {
+        return heatmap.weightsAt(time.toEpochSecond());
+    }
+
+    @PreDestroy
+    public void close() {
+        worker.interrupt();
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A sighting adds weight from its own bucket up to the bucket of the end of the look ahead.
+     */
+    static long requiredBuckets(HeatmapProps props) {
+        long bucketSeconds = Math.max(1, props.getBucketSize().getSeconds());
+        return (props.getLookAhead().getSeconds() + bucketSeconds - 1) / bucketSeconds + 1;
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Report report = queue.take();
+                try {
+                    add(report);
+                } catch (RuntimeException e) {
+                    log.error("Report could not be added to the heatmap: {}", report, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void add(Report report) {
+        int stop = dictionary.stopId(report.getStopId());
+        if (stop == GtfsDictionary.NONE) {
+            return;
+        }
+
+        long sighting = report.getTime().toEpochSecond();
+        long until = sighting + props.getLookAhead().getSeconds();
+        double halfLife = props.getHalfLife().getSeconds();
+
+        Reachability reachable = reachabilityCache.computeIfAbsent(new Origin(stop, heatmap.bucketOf(sighting)),
+                origin -> findReachable(origin, report.getTime().getZone()));
+
+        int[] stops = reachable.getStops();
+        long[] arrivals = reachable.getArrivals();
+        for (int i = 0; i < stops.length; i++) {
+            long arrival = Math.max(arrivals[i], sighting);
+            if (arrival <= until) {
+                heatmap.add(stops[i], arrival, Math.pow(0.5, (arrival - sighting) / halfLife));
+            }
+        }
+        heatmap.publish();
+    }
+
+    /**
+     * Searches from the start of the bucket with a look ahead extended by one bucket,
+     * so the result serves every sighting within the bucket.
+     * <p>
+     * The calendar day of the start contains the trips of its service day and those of the previous service day that
+     * run past 24:00. If the search crosses midnight, the next calendar day is searched from midnight as well, so the
+     * first trips of the next service day are found. Trips found on both days are only counted once.
+     */
+    private Reachability findReachable(Origin origin, ZoneId zone) {
+        Stop stop = dictionary.stop(origin.getStop());
+        ZonedDateTime start = ZonedDateTime.ofInstant(Instant.ofEpochSecond(heatmap.bucketStart(origin.getBucket())), zone);
+        ZonedDateTime end = start.plus(props.getLookAhead()).plus(props.getBucketSize());
+
+        Set<Arrival> arrivals = new LinkedHashSet<>();
+        collect(gtfsService.findReachable(stop, start, Duration.between(start, end)), start, arrivals);
+        ZonedDateTime nextMidnight = start.toLocalDate().plusDays(1).atStartOfDay(zone);
+        if (end.isAfter(nextMidnight)) {
+            collect(gtfsService.findReachable(stop, nextMidnight, Duration.between(nextMidnight, end)), nextMidnight, arrivals);
+        }
+
+        int[] stops = new int[arrivals.size()];
+        long[] times = new long[arrivals.size()];
+        int count = 0;
+        for (Arrival arrival : arrivals) {
+            stops[count] = arrival.getStop();
+            times[count] = arrival.getEpochSecond();
+            count++;
+        }
+        return new Reachability(stops, times);
+    }
+
+    /**
+     * Stop times are in seconds of the calendar day of the search, read as wall clock time like the GTFS service does.
+     */
+    private void collect(List<StopTime> stopTimes, ZonedDateTime searchStart, Set<Arrival> arrivals) {
+        LocalDateTime midnight = searchStart.toLocalDate().atStartOfDay();
+        for (StopTime stopTime : stopTimes) {
+            int stop = dictionary.stopId(stopTime.getStop().getId().toString());
+            if (stop != GtfsDictionary.NONE) {
+                long arrival = midnight.plusSeconds(stopTime.getArrivalTime()).atZone(searchStart.getZone()).toEpochSecond();
+                arrivals.add(new Arrival(stopTime.getId(), stop, arrival));
+            }
+        }
+    }
+
+    @Value
+    private static class Origin {
+        int stop;
+        long bucket;
+    }
+
+    /**
+     * Arrival of one stop time of a trip on one service day.
+     */
+    @Value
+    private static class Arrival {
+        int stopTimeId;
+        int stop;
+        long epochSecond;
+    }
+
+    /**
+     * Reachable stops and their arrival times in epoch seconds.
+     */
+    @Value
+    private static class Reachability {
+        int[] stops;
+        long[] arrivals;
+    }
+}
@@ -0,0 +1,64 @@
+package com.aljodomo.kontis.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Circular area around a center.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Area {
+
+    private static final double EARTH_RADIUS = 6_371_000;
+
+    Coordinates center;
+
+    /**
+     * Radius in meters.
+     */
+    double radius;
+
+    public boolean contains(Coordinates coordinates) {
+        return coordinates != null && contains(coordinates.getLat(), coordinates.getLng());
+    }
+
+    public boolean contains(double lat, double lng) {
+        return distance(center.getLat(), center.getLng(), lat, lng) <= radius;
+    }
+
+    public double getMinLat() {
+        return center.getLat() - latDelta();
+    }
+
+    public double getMaxLat() {
+        return center.getLat() + latDelta();
+    }
+
+    public double getMinLng() {
+        return center.getLng() - lngDelta();
+    }
+
+    public double getMaxLng() {
+        return center.getLng() + lngDelta();
+    }
+
+    private double latDelta() {
+        return Math.toDegrees(radius / EARTH_RADIUS);
+    }
+
+    private double lngDelta() {
+        return Math.toDegrees(radius / (EARTH_RADIUS * Math.cos(Math.toRadians(center.getLat()))));
+    }
+
+    /**
+     * Equirectangular approximation. Precise enough for distances within a city.
+     */
+    private static double distance(double latA, double lngA, double latB, double lngB) {
+        double x = Math.toRadians(lngB - lngA) * Math.cos(Math.toRadians((latA + latB) / 2));
+        double y = Math.toRadians(latB - latA);
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS;
+    }
+}
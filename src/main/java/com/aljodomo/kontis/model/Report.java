@@ -1,6 +1,11 @@
 package com.aljodomo.kontis.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.onebusaway.gtfs.model.Stop;
 import org.onebusaway.gtfs.model.StopTime;
 
 import javax.annotation.Nullable;
@@ -14,7 +19,7 @@ import java.util.UUID;
 @Data
 public class Report {
 
-    final UUID id = UUID.randomUUID();
+    final UUID id;
 
     final String title;
     final String originalMessage;
@@ -32,7 +37,47 @@ public class Report {
     @Nullable
     final Integer stopTimeId;
 
+    /**
+     * The analysis ran out of time and skipped fallbacks. Not persisted.
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    boolean degraded;
+
+    @JsonCreator
+    public Report(@JsonProperty("id") UUID id,
+                  @JsonProperty("title") String title,
+                  @JsonProperty("originalMessage") String originalMessage,
+                  @JsonProperty("coordinates") Coordinates coordinates,
+                  @JsonProperty("time") ZonedDateTime time,
+                  @JsonProperty("routeId") String routeId,
+                  @JsonProperty("routeName") String routeName,
+                  @JsonProperty("stopId") String stopId,
+                  @JsonProperty("stopName") String stopName,
+                  @JsonProperty("tripId") String tripId,
+                  @JsonProperty("stopTimeId") Integer stopTimeId) {
+        this.id = id;
+        this.title = title;
+        this.originalMessage = originalMessage;
+        this.coordinates = coordinates;
+        this.time = time;
+        this.routeId = routeId;
+        this.routeName = routeName;
+        this.stopId = stopId;
+        this.stopName = stopName;
+        this.tripId = tripId;
+        this.stopTimeId = stopTimeId;
+    }
+
     public Report(String massage, ZonedDateTime time, StopTime stopTime) {
+        this(UUID.randomUUID(), massage, time, stopTime);
+    }
+
+    /**
+     * Complete report that replaces the stored report with the id.
+     */
+    public Report(UUID id, String massage, ZonedDateTime time, StopTime stopTime) {
+        this.id = id;
         this.title = stopTime.getTrip().getRoute().getShortName() + " " + stopTime.getStop().getName();
         this.originalMessage = massage;
         this.coordinates = new Coordinates(stopTime.getStop().getLat(), stopTime.getStop().getLon());
@@ -42,10 +87,21 @@ public class Report {
         this.routeName = stopTime.getTrip().getRoute().getShortName();
         this.stopId = stopTime.getStop().getId().toString();
         this.stopName = stopTime.getStop().getName();
-        this.tripId = stopTime.getTrip().getRoute().getId().toString();
+        this.tripId = stopTime.getTrip().getId().toString();
+    }
+
+    public Report(String message, ZonedDateTime time, Stop stop, String routeName) {
+        this(UUID.randomUUID(), routeName + " " + stop.getName(), message, new Coordinates(stop.getLat(), stop.getLon()),
+                time, null, routeName, stop.getId().toString(), stop.getName(), null, null);
+    }
+
+    public Report(String message, ZonedDateTime time, Stop stop) {
+        this(UUID.randomUUID(), stop.getName(), message, new Coordinates(stop.getLat(), stop.getLon()),
+                time, null, null, stop.getId().toString(), stop.getName(), null, null);
     }
 
     public Report(String message, ZonedDateTime time, Coordinates coordinates, String stopName, String routeName) {
+        this.id = UUID.randomUUID();
         this.title = routeName + " " + stopName;
         this.originalMessage = message;
         this.coordinates = coordinates;
@@ -59,6 +115,7 @@ public class Report {
     }
 
     public Report(String message, ZonedDateTime time, Coordinates coords, String stopName) {
+        this.id = UUID.randomUUID();
         this.title = stopName;
         this.originalMessage = message;
         this.coordinates = coords;
@@ -0,0 +1,128 @@
+package com.aljodomo.kontis.nlp;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ricecode.similarity.SimilarityScore;
+import net.ricecode.similarity.StringSimilarityService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scores large candidate lists on a dedicated work stealing pool. Smaller lists are scored on the calling thread.
+ * <p>
+ * Results equal {@link StringSimilarityService#scoreAll(List, String)} filtered by the minimum score.
+ *
+ * @author Aljoscha Domonell
+ */
+@Service
+@Slf4j
+public class ParallelScorer {
+
+    private final StringSimilarityService similarityService;
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+    private final int partitionSize;
+
+    @Autowired
+    public ParallelScorer(StringSimilarityService similarityService, ScoringProps props) {
+        this(similarityService, props.getParallelism() > 0 ? props.getParallelism() : Runtime.getRuntime().availableProcessors(),
+                props.getParallelThreshold(), props.getPartitionSize());
+    }
+
+    public ParallelScorer(StringSimilarityService similarityService, int parallelism, int parallelThreshold, int partitionSize) {
+        this.similarityService = similarityService;
+        this.parallelThreshold = parallelThreshold;
+        this.partitionSize = Math.max(1, partitionSize);
+        this.pool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("scorer-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Features with a score above {@code minScore}, highest score first. Equal scores keep the order of the features.
+     */
+    public List<SimilarityScore> scoreAbove(List<String> features, String target, double minScore) {
+        String[] candidates = features.toArray(new String[0]);
+        List<Scored> scored = candidates.length < parallelThreshold
+                ? new Partition(candidates, target, minScore, 0, candidates.length).score()
+                : pool.invoke(new Partition(candidates, target, minScore, 0, candidates.length));
+
+        scored.sort((a, b) -> a.score != b.score ? Double.compare(b.score, a.score) : Integer.compare(a.index, b.index));
+        List<SimilarityScore> scores = new ArrayList<>(scored.size());
+        for (Scored s : scored) {
+            scores.add(new SimilarityScore(candidates[s.index], s.score));
+        }
+        return scores;
+    }
+
+    @PreDestroy
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private static class Scored {
+        final int index;
+        final double score;
+
+        Scored(int index, double score) {
+            this.index = index;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Scores {@code from} inclusive to {@code to} exclusive and splits in halves until a partition is small enough.
+     */
+    private class Partition extends RecursiveTask<List<Scored>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] candidates;
+        private final String target;
+        private final double minScore;
+        private final int from;
+        private final int to;
+
+        Partition(String[] candidates, String target, double minScore, int from, int to) {
+            this.candidates = candidates;
+            this.target = target;
+            this.minScore = minScore;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Scored> compute() {
+            if (to - from <= partitionSize) {
+                return score();
+            }
+            int middle = (from + to) >>> 1;
+            Partition left = new Partition(candidates, target, minScore, from, middle);
+            left.fork();
+            List<Scored> right = new Partition(candidates, target, minScore, middle, to).compute();
+            List<Scored> merged = left.join();
+            merged.addAll(right);
+            return merged;
+        }
+
+        List<Scored> score() {
+            List<Scored> scored = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                double score = similarityService.score(candidates[i], target);
+                if (score > minScore) {
+                    scored.add(new Scored(i, score));
+                }
+            }
+            return scored;
+        }
+    }
+}
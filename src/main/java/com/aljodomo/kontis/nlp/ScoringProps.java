@@ -0,0 +1,29 @@
+package com.aljodomo.kontis.nlp;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of the {@link ParallelScorer}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties("scoring")
+public class ScoringProps {
+
+    /**
+     * Threads of the scoring pool. {@code 0} uses one per core.
+     */
+    private int parallelism = 0;
+
+    /**
+     * Candidate lists of at least this size are scored in parallel.
+     */
+    private int parallelThreshold = 512;
+
+    /**
+     * Candidates scored by one task without splitting further.
+     */
+    private int partitionSize = 64;
+}
@@ -1,6 +1,7 @@
 package com.aljodomo.kontis.nlp;
 
 import com.aljodomo.kontis.utils.StringUtils;
+import lombok.Value;
 import net.ricecode.similarity.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -9,7 +10,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Calculates similarity between feature and target string by comparing every whitespace devided
@@ -50,18 +50,34 @@ public class WordSimilarityService implements StringSimilarityService {
 
     @Override
     public double score(String feature, String target) {
-        int featureWordCount = feature.split(" ").length;
-        List<String> messageWords = Arrays.stream(target.split(" ")).collect(Collectors.toList());
+        return score(profile(feature), words(target));
+    }
+
+    /**
+     * Precomputes the properties of a feature that are needed to score it.
+     */
+    public Profile profile(String feature) {
+        return new Profile(feature, feature.split(" ").length);
+    }
+
+    /**
+     * Whitespace divided words of a target. Split once to score multiple features against it.
+     */
+    public List<String> words(String target) {
+        return Arrays.asList(target.split(" "));
+    }
+
+    public double score(Profile feature, List<String> messageWords) {
         double finalScore = 0;
         int currentCharCount = 0;
         // Count symbols from feature and to forward for at least this number in symbols
         for (int i = 0; i < messageWords.size(); i++) {
             for (int groupSize = 1; i + groupSize <= messageWords.size() &&
-                    (groupSize <= featureWordCount || currentCharCount < feature.length()); groupSize++) {
+                    (groupSize <= feature.getWordCount() || currentCharCount < feature.getFeature().length()); groupSize++) {
                 String subTarget = StringUtils.concat(messageWords.subList(i, i + groupSize));
                 // Count characters without whitespaces
                 currentCharCount = subTarget.replace(" ", "").length();
-                double tmpScore = strategy.score(feature, subTarget);
+                double tmpScore = strategy.score(feature.getFeature(), subTarget);
                 finalScore = Math.max(tmpScore, finalScore);
             }
         }
@@ -82,4 +98,10 @@ public class WordSimilarityService implements StringSimilarityService {
         scores.sort(comparator);
         return scores.get(0);
     }
+
+    @Value
+    public static class Profile {
+        String feature;
+        int wordCount;
+    }
 }
@@ -0,0 +1,31 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Report;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking access to stored reports. The returned futures complete once the backend answered,
+ * no thread is blocked while waiting for I/O.
+ */
+public interface AsyncReportRepository {
+
+    CompletableFuture<Void> createAsync(Report report);
+
+    /**
+     * Store all reports. Completes once every report was stored.
+     */
+    CompletableFuture<Void> createAllAsync(Collection<Report> reports);
+
+    /**
+     * @return Completes with {@code null} if no report with the given id exists.
+     */
+    CompletableFuture<Report> findByIdAsync(String id);
+
+    /**
+     * @return Completes with all existing reports of the given ids. Unknown ids are skipped.
+     */
+    CompletableFuture<List<Report>> findAllByIdAsync(Collection<String> ids);
+}
@@ -0,0 +1,81 @@
+package com.aljodomo.kontis.persistence;
+
+import lombok.Builder;
+import lombok.Value;
+
+import javax.annotation.Nullable;
+import java.util.UUID;
+
+/**
+ * Compact in memory representation of a {@link com.aljodomo.kontis.model.Report}.
+ * GTFS references are stored as {@link com.aljodomo.kontis.gtfs.GtfsDictionary dense ids},
+ * the time as epoch seconds and coordinates as fixed point integers of 1e-7 degrees. Display strings are resolved when the report is
+ * {@link CompactReportCodec#decode(CompactReport) decoded}.
+ * <p>
+ * Strings that can not be derived from the dictionary are kept as is in the nullable fields.
+ */
+@Value
+@Builder
+public class CompactReport {
+
+    public static final int NO_COORDINATE = Integer.MIN_VALUE;
+    public static final double E7 = 1e7;
+
+    long idMostSignificantBits;
+    long idLeastSignificantBits;
+
+    long epochSecond;
+    byte zone;
+
+    /**
+     * {@link #NO_COORDINATE} if the report has no coordinates.
+     */
+    int latE7;
+    int lngE7;
+
+    /**
+     * The coordinates are exactly the ones of the stop and are decoded from it.
+     */
+    boolean coordinatesOfStop;
+
+    int stop;
+    int route;
+    int trip;
+    int routeName;
+
+    /**
+     * {@link CompactReportCodec#NO_STOP_TIME} if the report has no stop time.
+     */
+    int stopTimeId;
+
+    String originalMessage;
+
+    @Nullable
+    String title;
+    @Nullable
+    String stopName;
+    @Nullable
+    String routeNameText;
+    @Nullable
+    String stopId;
+    @Nullable
+    String routeId;
+    @Nullable
+    String tripId;
+
+    public UUID getId() {
+        return new UUID(idMostSignificantBits, idLeastSignificantBits);
+    }
+
+    public boolean hasCoordinates() {
+        return latE7 != NO_COORDINATE;
+    }
+
+    public double getLat() {
+        return hasCoordinates() ? latE7 / E7 : Double.NaN;
+    }
+
+    public double getLng() {
+        return hasCoordinates() ? lngE7 / E7 : Double.NaN;
+    }
+}
@@ -0,0 +1,153 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.gtfs.GtfsDictionary;
+import com.aljodomo.kontis.model.Coordinates;
+import com.aljodomo.kontis.model.Report;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.Trip;
+
+import javax.annotation.Nullable;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Encodes {@link Report reports} to {@link CompactReport compact reports} and back.
+ * Sub second precision of the time and the precision of coordinates beyond 1e-7 degrees (about a centimeter)
+ * are lost unless the coordinates are the ones of the stop.
+ */
+public class CompactReportCodec {
+
+    public static final int NO_STOP_TIME = Integer.MIN_VALUE;
+
+    /**
+     * Interned time zones. Reports usually share the single zone of the service.
+     */
+    private static final List<ZoneId> ZONES = new CopyOnWriteArrayList<>();
+    private static final Map<ZoneId, Byte> ZONE_IDS = new ConcurrentHashMap<>();
+
+    private final GtfsDictionary dictionary;
+
+    public CompactReportCodec(GtfsDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public CompactReport encode(Report report) {
+        int stop = dictionary.stopId(report.getStopId());
+        int route = dictionary.routeId(report.getRouteId());
+        int trip = dictionary.tripId(report.getTripId());
+        int routeName = dictionary.routeNameId(report.getRouteName());
+
+        Stop stopEntity = dictionary.stop(stop);
+        String stopName = stopEntity != null && stopEntity.getName().equals(report.getStopName())
+                ? null
+                : report.getStopName();
+        Coordinates coordinates = report.getCoordinates();
+        boolean coordinatesOfStop = stopEntity != null && coordinates != null
+                && coordinates.getLat() == stopEntity.getLat()
+                && coordinates.getLng() == stopEntity.getLon();
+
+        return CompactReport.builder()
+                .idMostSignificantBits(report.getId().getMostSignificantBits())
+                .idLeastSignificantBits(report.getId().getLeastSignificantBits())
+                .epochSecond(report.getTime().toEpochSecond())
+                .zone(zoneId(report.getTime().getZone()))
+                .latE7(coordinates == null ? CompactReport.NO_COORDINATE : toE7(coordinates.getLat()))
+                .lngE7(coordinates == null ? CompactReport.NO_COORDINATE : toE7(coordinates.getLng()))
+                .coordinatesOfStop(coordinatesOfStop)
+                .stop(stop)
+                .route(route)
+                .trip(trip)
+                .routeName(routeName)
+                .stopTimeId(report.getStopTimeId() == null ? NO_STOP_TIME : report.getStopTimeId())
+                .originalMessage(report.getOriginalMessage())
+                .title(Objects.equals(report.getTitle(), title(report.getRouteName(), report.getStopName()))
+                        ? null
+                        : report.getTitle())
+                .stopName(stopName)
+                .routeNameText(routeName == GtfsDictionary.NONE ? report.getRouteName() : null)
+                .stopId(stop == GtfsDictionary.NONE ? report.getStopId() : null)
+                .routeId(route == GtfsDictionary.NONE ? report.getRouteId() : null)
+                .tripId(trip == GtfsDictionary.NONE ? report.getTripId() : null)
+                .build();
+    }
+
+    public Report decode(CompactReport compact) {
+        Stop stop = dictionary.stop(compact.getStop());
+        Route route = dictionary.route(compact.getRoute());
+        Trip trip = dictionary.trip(compact.getTrip());
+
+        String stopName = compact.getStopName() != null || stop == null ? compact.getStopName() : stop.getName();
+        String routeName = routeName(compact);
+
+        return new Report(
+                compact.getId(),
+                compact.getTitle() != null ? compact.getTitle() : title(routeName, stopName),
+                compact.getOriginalMessage(),
+                coordinates(compact, stop),
+                ZonedDateTime.ofInstant(Instant.ofEpochSecond(compact.getEpochSecond()), ZONES.get(compact.getZone())),
+                route != null ? route.getId().toString() : compact.getRouteId(),
+                routeName,
+                stop != null ? stop.getId().toString() : compact.getStopId(),
+                stopName,
+                trip != null ? trip.getId().toString() : compact.getTripId(),
+                compact.getStopTimeId() == NO_STOP_TIME ? null : compact.getStopTimeId());
+    }
+
+    /**
+     * GTFS stop id without decoding the whole report.
+     */
+    @Nullable
+    public String stopId(CompactReport compact) {
+        Stop stop = dictionary.stop(compact.getStop());
+        return stop != null ? stop.getId().toString() : compact.getStopId();
+    }
+
+    /**
+     * Route name without decoding the whole report.
+     */
+    @Nullable
+    public String routeName(CompactReport compact) {
+        return compact.getRouteName() == GtfsDictionary.NONE
+                ? compact.getRouteNameText()
+                : dictionary.routeName(compact.getRouteName());
+    }
+
+    @Nullable
+    private static Coordinates coordinates(CompactReport compact, @Nullable Stop stop) {
+        if (compact.isCoordinatesOfStop() && stop != null) {
+            return new Coordinates(stop.getLat(), stop.getLon());
+        }
+        return compact.hasCoordinates() ? new Coordinates(compact.getLat(), compact.getLng()) : null;
+    }
+
+    private static int toE7(double degrees) {
+        return (int) Math.round(degrees * CompactReport.E7);
+    }
+
+    /**
+     * Title as it is built for new reports.
+     */
+    @Nullable
+    private static String title(@Nullable String routeName, @Nullable String stopName) {
+        return routeName == null ? stopName : routeName + " " + stopName;
+    }
+
+    private static byte zoneId(ZoneId zone) {
+        return ZONE_IDS.computeIfAbsent(zone, z -> {
+            synchronized (ZONES) {
+                if (ZONES.size() > Byte.MAX_VALUE) {
+                    throw new IllegalStateException("Too many distinct time zones");
+                }
+                ZONES.add(z);
+                return (byte) (ZONES.size() - 1);
+            }
+        });
+    }
+}
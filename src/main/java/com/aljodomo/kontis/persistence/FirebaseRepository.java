@@ -1,10 +1,19 @@
 package com.aljodomo.kontis.persistence;
 
+import com.aljodomo.kontis.model.Area;
 import com.aljodomo.kontis.model.Report;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
 import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
 import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.WriteBatch;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 import com.google.firebase.cloud.FirestoreClient;
@@ -13,9 +22,24 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.util.Map;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Firebase Firestore client implementation via the Admin SDK.
@@ -23,15 +47,24 @@ import java.util.concurrent.ExecutionException;
  * @author Aljoscha Domonell
  */
 @Service
-@Profile({"!test & !dev"})
+@Profile({"!test & !dev & !replay"})
 @Slf4j
 public class FirebaseRepository implements ReportRepository {
 
+    private static final String COLLECTION = "reports";
+
+    /**
+     * Firestore allows at most 10 values in an {@code in} filter.
+     */
+    private static final int MAX_IN_VALUES = 10;
+    private static final int PAGE_SIZE = 100;
+
     private final Firestore db;
-    private final ObjectMapper mapper;
+    private final GroupCommitWriter writer;
+    private final ReportCache cache;
 
     @Autowired
-    public FirebaseRepository(ObjectMapper objectMapper) throws IOException {
+    public FirebaseRepository(FirestoreProps props) throws IOException {
 
         log.info("Using Firestore as report repository");
 
@@ -43,34 +76,227 @@ public class FirebaseRepository implements ReportRepository {
 
         this.db = FirestoreClient.getFirestore();
 
-        this.mapper = objectMapper;
+        this.writer = new GroupCommitWriter(new FirestoreBatchSink(db, COLLECTION),
+                props.getBatchMaxSize(),
+                props.getBatchMaxDelay(),
+                props.getBatchMaxAttempts(),
+                props.getBatchInitialBackoff());
+
+        this.cache = new ReportCache(props.getCacheMaxSize(), props.getCacheTtl());
+
+        if (props.isBackfillIndexFields()) {
+            Thread backfill = new Thread(() -> backfillIndexFields(props.getBatchMaxSize()), "firestore-backfill");
+            backfill.setDaemon(true);
+            backfill.start();
+        }
     }
 
     @Override
     public void create(Report report) {
-        db.runTransaction(transaction -> {
-            var d = db.collection("reports")
-                    .document(report.getId().toString())
-                    .set(mapper.convertValue(report, new TypeReference<Map<String, Object>>() {
-                    }));
-            var res = d.get();
-            log.info("Report created {}", res.getUpdateTime());
-            return true;
-        });
+        await(createAsync(report));
     }
 
     @Override
     public Report findById(String id) {
+        return await(findByIdAsync(id));
+    }
+
+    @Override
+    public CompletableFuture<Void> createAsync(Report report) {
+        String id = report.getId().toString();
+        cache.invalidate(id);
+        return writer.submit(report).whenComplete((unused, e) -> cache.invalidate(id));
+    }
+
+    @Override
+    public CompletableFuture<Void> createAllAsync(Collection<Report> reports) {
+        return CompletableFuture.allOf(reports.stream()
+                .map(this::createAsync)
+                .toArray(CompletableFuture[]::new));
+    }
+
+    @Override
+    public CompletableFuture<Report> findByIdAsync(String id) {
+        Report cached = cache.get(id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        long stamp = cache.stamp();
+        return toCompletable(db.collection(COLLECTION).document(id).get(), snapshot -> toReport(snapshot, stamp));
+    }
+
+    @Override
+    public CompletableFuture<List<Report>> findAllByIdAsync(Collection<String> ids) {
+        long stamp = cache.stamp();
+        List<Report> reports = new ArrayList<>(ids.size());
+        List<DocumentReference> missing = new ArrayList<>();
+        for (String id : ids) {
+            Report cached = cache.get(id);
+            if (cached != null) {
+                reports.add(cached);
+            } else {
+                missing.add(db.collection(COLLECTION).document(id));
+            }
+        }
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(reports);
+        }
+
+        return toCompletable(db.getAll(missing.toArray(new DocumentReference[0])), snapshots -> {
+            for (DocumentSnapshot snapshot : snapshots) {
+                Report report = toReport(snapshot, stamp);
+                if (report != null) {
+                    reports.add(report);
+                }
+            }
+            return reports;
+        });
+    }
+
+    /**
+     * Queries the {@link GeoGrid} cells covering the area in groups of {@link #MAX_IN_VALUES}.
+     * Pages are fetched only when the stream reaches them.
+     * Needs a composite index on {@code geoCell} and {@code epochSecond}.
+     */
+    @Override
+    public Stream<Report> findRecent(Area area, ZonedDateTime since) {
+        List<String> cells = GeoGrid.cellsCovering(area).stream()
+                .map(GeoGrid::key)
+                .collect(Collectors.toList());
+
+        return IntStream.range(0, (cells.size() + MAX_IN_VALUES - 1) / MAX_IN_VALUES)
+                .mapToObj(i -> cells.subList(i * MAX_IN_VALUES, Math.min(cells.size(), (i + 1) * MAX_IN_VALUES)))
+                .flatMap(group -> stream(db.collection(COLLECTION)
+                        .whereIn(ReportDocuments.GEO_CELL, new ArrayList<>(group))
+                        .whereGreaterThanOrEqualTo(ReportDocuments.EPOCH_SECOND, since.toEpochSecond())
+                        .orderBy(ReportDocuments.EPOCH_SECOND)))
+                .map(snapshot -> ReportDocuments.toReport(snapshot.getData()))
+                .filter(report -> !report.getTime().isBefore(since))
+                .filter(report -> area.contains(report.getCoordinates()));
+    }
+
+    /**
+     * Adds the {@link ReportDocuments#indexFields(Report) index fields} to all documents written before
+     * they existed, so {@link #findRecent} finds them. Documents that already have them are skipped.
+     */
+    private void backfillIndexFields(int batchSize) {
+        log.info("Backfilling index fields of report documents");
+        int updated = 0;
+        WriteBatch batch = db.batch();
+        int batched = 0;
         try {
-            return db.runTransaction(transaction -> {
-                var d = db.collection("reports").document(id);
-                var res = d.get();
-                var data = res.get().getData();
-                String json = mapper.writeValueAsString(data);
-                return mapper.readValue(json, Report.class);
-            }).get();
+            Iterator<QueryDocumentSnapshot> documents = new PageIterator(
+                    db.collection(COLLECTION).orderBy(FieldPath.documentId()));
+            while (documents.hasNext()) {
+                QueryDocumentSnapshot snapshot = documents.next();
+                if (snapshot.contains(ReportDocuments.EPOCH_SECOND)) {
+                    continue;
+                }
+                batch.update(snapshot.getReference(), ReportDocuments.indexFields(ReportDocuments.toReport(snapshot.getData())));
+                if (++batched == batchSize) {
+                    batch.commit().get();
+                    updated += batched;
+                    batch = db.batch();
+                    batched = 0;
+                }
+            }
+            if (batched > 0) {
+                batch.commit().get();
+                updated += batched;
+            }
+            log.info("Backfilled index fields of {} report documents", updated);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Backfill interrupted after {} report documents", updated);
+        } catch (Exception e) {
+            log.error("Backfill failed after {} report documents. Restart to resume", updated, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        writer.close();
+    }
+
+    /**
+     * @param stamp {@link ReportCache#stamp()} taken before the snapshot was read.
+     */
+    private Report toReport(DocumentSnapshot snapshot, long stamp) {
+        if (!snapshot.exists()) {
+            return null;
+        }
+        Report report = ReportDocuments.toReport(snapshot.getData());
+        cache.put(report, stamp);
+        return report;
+    }
+
+    /**
+     * Complete on the thread that completes the Firestore future instead of blocking one.
+     */
+    private static <T, R> CompletableFuture<R> toCompletable(ApiFuture<T> apiFuture, Function<T, R> mapping) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        ApiFutures.addCallback(apiFuture, new ApiFutureCallback<>() {
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
+            }
+
+            @Override
+            public void onSuccess(T result) {
+                try {
+                    future.complete(mapping.apply(result));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        }, Runnable::run);
+        return future;
+    }
+
+    private static Stream<QueryDocumentSnapshot> stream(Query query) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new PageIterator(query),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
         } catch (InterruptedException | ExecutionException e) {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Fetches the next page of the query once the current one is consumed.
+     */
+    private static class PageIterator implements Iterator<QueryDocumentSnapshot> {
+        private final Query query;
+        private Iterator<QueryDocumentSnapshot> page = Collections.emptyIterator();
+        private QueryDocumentSnapshot last = null;
+        private boolean exhausted = false;
+
+        PageIterator(Query query) {
+            this.query = query;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!page.hasNext() && !exhausted) {
+                Query next = last == null ? query.limit(PAGE_SIZE) : query.startAfter(last).limit(PAGE_SIZE);
+                List<QueryDocumentSnapshot> documents = await(toCompletable(next.get(), QuerySnapshot::getDocuments));
+                exhausted = documents.size() < PAGE_SIZE;
+                page = documents.iterator();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public QueryDocumentSnapshot next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = page.next();
+            return last;
+        }
+    }
 }
@@ -0,0 +1,34 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Report;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Writes reports as one Firestore {@link WriteBatch}. Every document is set as a whole, so an enriched report
+ * replaces its partial report with the same id. Both are written by the same writer in the order they were
+ * submitted, so no transaction is needed.
+ */
+public class FirestoreBatchSink implements ReportBatchSink {
+
+    private final Firestore db;
+    private final CollectionReference collection;
+
+    public FirestoreBatchSink(Firestore db, String collection) {
+        this.db = db;
+        this.collection = db.collection(collection);
+    }
+
+    @Override
+    public void write(List<Report> reports) throws ExecutionException, InterruptedException {
+        WriteBatch batch = db.batch();
+        for (Report report : reports) {
+            batch.set(collection.document(report.getId().toString()), ReportDocuments.toDocument(report));
+        }
+        batch.commit().get();
+    }
+}
@@ -0,0 +1,52 @@
+package com.aljodomo.kontis.persistence;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Settings of the {@link FirebaseRepository}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties("firestore")
+public class FirestoreProps {
+
+    /**
+     * Maximum number of reports committed in one write batch. Firestore allows up to 500.
+     */
+    private int batchMaxSize = 100;
+
+    /**
+     * Maximum time a report waits for other reports to join its batch.
+     */
+    private Duration batchMaxDelay = Duration.ofMillis(50);
+
+    /**
+     * How often a failed batch is tried before its reports are given up.
+     */
+    private int batchMaxAttempts = 5;
+
+    /**
+     * Wait time before the first retry. Doubles with every further attempt.
+     */
+    private Duration batchInitialBackoff = Duration.ofMillis(200);
+
+    /**
+     * Maximum number of reports kept in the read cache.
+     */
+    private int cacheMaxSize = 10_000;
+
+    /**
+     * How long a report is served from the read cache before it is fetched again.
+     */
+    private Duration cacheTtl = Duration.ofMinutes(15);
+
+    /**
+     * Add the index fields of {@link FirebaseRepository#findRecent area queries} to documents written before they
+     * existed. Runs once in the background on startup.
+     */
+    private boolean backfillIndexFields = false;
+}
@@ -0,0 +1,68 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Area;
+import com.aljodomo.kontis.model.Coordinates;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Divides the map into cells of {@link #CELL_SIZE} degrees. Reports are indexed by their cell,
+ * so an area query only looks at the few cells covering the area.
+ */
+public class GeoGrid {
+
+    /**
+     * About 1.1 km north to south and 0.7 km east to west in Berlin.
+     */
+    public static final double CELL_SIZE = 0.01;
+
+    private GeoGrid() {
+        // Enforce static usage
+    }
+
+    public static long cellOf(Coordinates coordinates) {
+        return cellOf(coordinates.getLat(), coordinates.getLng());
+    }
+
+    public static long cellOf(double lat, double lng) {
+        return cell(row(lat), column(lng));
+    }
+
+    /**
+     * All cells that intersect the bounding box of the area.
+     */
+    public static List<Long> cellsCovering(Area area) {
+        int minRow = row(area.getMinLat());
+        int maxRow = row(area.getMaxLat());
+        int minColumn = column(area.getMinLng());
+        int maxColumn = column(area.getMaxLng());
+
+        List<Long> cells = new ArrayList<>((maxRow - minRow + 1) * (maxColumn - minColumn + 1));
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                cells.add(cell(row, column));
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Readable cell id used as Firestore field value.
+     */
+    public static String key(long cell) {
+        return (int) (cell >> 32) + ":" + (int) cell;
+    }
+
+    private static int row(double lat) {
+        return (int) Math.floor(lat / CELL_SIZE);
+    }
+
+    private static int column(double lng) {
+        return (int) Math.floor(lng / CELL_SIZE);
+    }
+
+    private static long cell(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+}
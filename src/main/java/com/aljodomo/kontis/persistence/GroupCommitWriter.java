@@ -0,0 +1,170 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Report;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers reports for up to {@code maxDelay} or {@code maxSize} reports and writes them as one batch.
+ * While a batch is written new reports queue up and form the next batch.
+ * <p>
+ * Every submitted report gets its own future that completes once its batch was written
+ * or all attempts failed.
+ */
+@Slf4j
+public class GroupCommitWriter implements AutoCloseable {
+
+    private final ReportBatchSink sink;
+    private final int maxSize;
+    private final long maxDelayNanos;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+
+    private final BlockingQueue<PendingReport> queue = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    /**
+     * Set and checked under the lock of the writer, so no report is queued after {@link #close()} drained the queue.
+     */
+    private volatile boolean closed = false;
+
+    public GroupCommitWriter(ReportBatchSink sink, int maxSize, Duration maxDelay, int maxAttempts, Duration initialBackoff) {
+        if (maxSize < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("maxSize and maxAttempts must be at least 1");
+        }
+        this.sink = sink;
+        this.maxSize = maxSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+
+        this.worker = new Thread(this::run, "group-commit-writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Queue the report for the next batch.
+     *
+     * @return Completes when the report was written.
+     */
+    public CompletableFuture<Void> submit(Report report) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Writer is closed"));
+            }
+            queue.add(new PendingReport(report, future));
+        }
+        return future;
+    }
+
+    /**
+     * Write all queued reports and stop the writer. Reports submitted afterwards are rejected.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        worker.interrupt();
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while writing the queued reports. Failing the rest");
+        }
+
+        // Reports the worker did not write before it stopped
+        PendingReport pending;
+        while ((pending = queue.poll()) != null) {
+            pending.getFuture().completeExceptionally(new IllegalStateException("Writer is closed"));
+        }
+    }
+
+    private void run() {
+        while (!closed || !queue.isEmpty()) {
+            List<PendingReport> batch = collect();
+            if (!batch.isEmpty()) {
+                flush(batch);
+            }
+        }
+    }
+
+    private List<PendingReport> collect() {
+        List<PendingReport> batch = new ArrayList<>();
+        try {
+            PendingReport first = closed ? queue.poll() : queue.take();
+            if (first == null) {
+                return batch;
+            }
+            batch.add(first);
+
+            long deadline = System.nanoTime() + maxDelayNanos;
+            while (batch.size() < maxSize) {
+                long remaining = deadline - System.nanoTime();
+                PendingReport next = closed || remaining <= 0
+                        ? queue.poll()
+                        : queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+        } catch (InterruptedException e) {
+            // Closing. Flush what was collected so far, the rest follows in the next batches
+            queue.drainTo(batch, maxSize - batch.size());
+        }
+        return batch;
+    }
+
+    private void flush(List<PendingReport> batch) {
+        List<Report> reports = new ArrayList<>(batch.size());
+        batch.forEach(pending -> reports.add(pending.getReport()));
+
+        Exception lastError = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                sink.write(reports);
+                log.debug("Wrote batch of {} reports in attempt {}", reports.size(), attempt);
+                batch.forEach(pending -> pending.getFuture().complete(null));
+                return;
+            } catch (Exception e) {
+                lastError = e;
+                log.warn("Writing batch of {} reports failed in attempt {} of {}", reports.size(), attempt, maxAttempts, e);
+                if (attempt < maxAttempts && !backoff(attempt)) {
+                    break;
+                }
+            }
+        }
+
+        Exception error = lastError;
+        batch.forEach(pending -> pending.getFuture().completeExceptionally(error));
+    }
+
+    /**
+     * @return False if the wait was interrupted.
+     */
+    private boolean backoff(int attempt) {
+        try {
+            Thread.sleep(initialBackoff.toMillis() << (attempt - 1));
+            return true;
+        } catch (InterruptedException e) {
+            // Retry once more without waiting when closing
+            return closed;
+        }
+    }
+
+    @Value
+    private static class PendingReport {
+        Report report;
+        CompletableFuture<Void> future;
+    }
+}
@@ -0,0 +1,26 @@
+package com.aljodomo.kontis.persistence;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Retention of the {@link InMemoryRepository}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties("in-memory")
+public class InMemoryProps {
+
+    /**
+     * Maximum number of stored reports. The oldest report is dropped when it is exceeded.
+     */
+    private int maxReports = 100_000;
+
+    /**
+     * Reports older than this compared to the newest stored report are dropped. {@code 0} keeps them.
+     */
+    private Duration maxAge = Duration.ofHours(24);
+}
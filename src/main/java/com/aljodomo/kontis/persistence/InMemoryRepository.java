@@ -1,39 +1,322 @@
 package com.aljodomo.kontis.persistence;
 
+import com.aljodomo.kontis.gtfs.GTFSService;
+import com.aljodomo.kontis.gtfs.GtfsDictionary;
+import com.aljodomo.kontis.model.Area;
 import com.aljodomo.kontis.model.Report;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
-import java.util.ArrayList;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
+ * Thread safe in process store. Reports are kept in a ring buffer in order of creation
+ * and are dropped once the configured {@link InMemoryProps retention} is exceeded.
+ * <p>
+ * Reports are stored as {@link CompactReport compact reports} and decoded on read.
+ * Lookups by id are served from a hash index, lookups by stop and route from
+ * time ordered secondary indexes and area queries from a {@link SpatioTemporalIndex}.
+ * Readers never take the lock.
+ * <p>
+ * Creating a report with the id of a retained report replaces it in place, e.g. once its stop time was resolved.
+ *
  * @author Aljoscha Domonell
  */
 @Service
-@Profile({"test", "dev"})
+@Profile({"test", "dev", "replay"})
 @Slf4j
 public class InMemoryRepository implements ReportRepository {
-    public final List<Report> reports;
+
+    private static final UUID MIN_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+    private static final UUID MAX_ID = new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    private final CompactReportCodec codec;
+    private final long maxAgeSeconds;
+
+    private final CompactReport[] ring;
+    private int head = 0;
+    private int size = 0;
+    /**
+     * Newest report time seen so far. Reports can arrive out of order, e.g. during a replay or a late enrichment.
+     */
+    private volatile long newestEpochSecond = Long.MIN_VALUE;
+    private long nextSweepEpochSecond = Long.MIN_VALUE;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final Map<UUID, CompactReport> byId = new ConcurrentHashMap<>();
+    private final Map<String, ConcurrentNavigableMap<IndexKey, CompactReport>> byStopId = new ConcurrentHashMap<>();
+    private final Map<String, ConcurrentNavigableMap<IndexKey, CompactReport>> byRouteName = new ConcurrentHashMap<>();
+    private final SpatioTemporalIndex byArea = new SpatioTemporalIndex();
 
     @Autowired
-    public InMemoryRepository() {
+    public InMemoryRepository(InMemoryProps props, GTFSService gtfsService) {
+        this(props.getMaxReports(), props.getMaxAge(), gtfsService.getDictionary());
+    }
+
+    /**
+     * Store without GTFS dictionary. All strings are kept as they are.
+     */
+    public InMemoryRepository(int maxReports, Duration maxAge) {
+        this(maxReports, maxAge, GtfsDictionary.empty());
+    }
+
+    public InMemoryRepository(int maxReports, Duration maxAge, GtfsDictionary dictionary) {
         log.warn("Using non persistent in memory report repository");
 
-        this.reports = new ArrayList<>();
+        if (maxReports < 1) {
+            throw new IllegalArgumentException("At least one report must be retained");
+        }
+        this.codec = new CompactReportCodec(dictionary);
+        this.ring = new CompactReport[maxReports];
+        this.maxAgeSeconds = maxAge.isNegative() ? 0 : maxAge.toSeconds();
     }
 
     @Override
     public void create(Report report) {
-        this.reports.add(report);
+        CompactReport compact = codec.encode(report);
+        writeLock.lock();
+        try {
+            CompactReport previous = byId.get(compact.getId());
+            if (previous != null) {
+                replace(previous, compact, report);
+                return;
+            }
+            newestEpochSecond = Math.max(newestEpochSecond, compact.getEpochSecond());
+            if (isExpired(compact)) {
+                log.debug("Skipping report [{}] that is older than the max age", compact.getId());
+                return;
+            }
+            if (size == ring.length) {
+                evictOldest();
+            }
+            ring[(head + size) % ring.length] = compact;
+            size++;
+            index(compact, report.getStopId(), report.getRouteName());
+            evictExpired();
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     @Override
     public Report findById(String id) {
-        return this.reports.stream()
-                .filter(report -> report.getId().toString().equals(id))
-                .findFirst()
-                .orElse(null);
+        try {
+            CompactReport compact = byId.get(UUID.fromString(id));
+            return compact == null || isExpired(compact) ? null : codec.decode(compact);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * All reports of the stop within {@code [from, to]} ordered by time.
+     */
+    public List<Report> findByStopId(String stopId, ZonedDateTime from, ZonedDateTime to) {
+        return findInRange(byStopId, stopId, from, to);
+    }
+
+    /**
+     * All reports of the route within {@code [from, to]} ordered by time.
+     */
+    public List<Report> findByRouteName(String routeName, ZonedDateTime from, ZonedDateTime to) {
+        return findInRange(byRouteName, routeName, from, to);
+    }
+
+    @Override
+    public Stream<Report> findRecent(Area area, ZonedDateTime since) {
+        return byArea.find(area, since.toEpochSecond())
+                .filter(compact -> !isExpired(compact))
+                .map(codec::decode);
+    }
+
+    /**
+     * Number of currently retained reports.
+     */
+    public int size() {
+        return byId.size();
+    }
+
+    @Override
+    public CompletableFuture<Void> createAsync(Report report) {
+        create(report);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> createAllAsync(Collection<Report> reports) {
+        reports.forEach(this::create);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Report> findByIdAsync(String id) {
+        return CompletableFuture.completedFuture(findById(id));
+    }
+
+    @Override
+    public CompletableFuture<List<Report>> findAllByIdAsync(Collection<String> ids) {
+        return CompletableFuture.completedFuture(ids.stream()
+                .map(this::findById)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Age is measured against the newest report and not the wall clock, so replayed history is retained as well.
+     * Readers skip expired reports that are not evicted yet.
+     */
+    private boolean isExpired(CompactReport report) {
+        return maxAgeSeconds != 0 && report.getEpochSecond() < newestEpochSecond - maxAgeSeconds;
+    }
+
+    /**
+     * Evicts expired reports from the head of the ring. Reports inserted out of order can expire behind a newer
+     * head, so the whole ring is swept whenever the newest report advanced by a quarter of the max age.
+     */
+    private void evictExpired() {
+        if (maxAgeSeconds == 0) {
+            return;
+        }
+        while (size > 0 && isExpired(ring[head])) {
+            evictOldest();
+        }
+        if (newestEpochSecond >= nextSweepEpochSecond) {
+            sweepExpired();
+            nextSweepEpochSecond = newestEpochSecond + Math.max(1, maxAgeSeconds / 4);
+        }
+    }
+
+    /**
+     * Removes all expired reports and moves the retained ones together, keeping their order.
+     */
+    private void sweepExpired() {
+        int retained = 0;
+        for (int i = 0; i < size; i++) {
+            int slot = (head + i) % ring.length;
+            CompactReport report = ring[slot];
+            ring[slot] = null;
+            if (isExpired(report)) {
+                unindex(report);
+            } else {
+                ring[(head + retained++) % ring.length] = report;
+            }
+        }
+        size = retained;
+    }
+
+    /**
+     * Searches from the newest report, as replaced reports are usually recent.
+     * The new report is indexed before the previous one is removed, so readers always find one of them.
+     */
+    private void replace(CompactReport previous, CompactReport compact, Report report) {
+        if (previous.equals(compact)) {
+            return;
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            int slot = (head + i) % ring.length;
+            if (ring[slot] == previous) {
+                ring[slot] = compact;
+                index(compact, report.getStopId(), report.getRouteName());
+                unindex(previous);
+                return;
+            }
+        }
+    }
+
+    private void evictOldest() {
+        CompactReport oldest = ring[head];
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        size--;
+        unindex(oldest);
+    }
+
+    private void index(CompactReport report, String stopId, String routeName) {
+        byId.put(report.getId(), report);
+        IndexKey key = IndexKey.of(report);
+        if (stopId != null) {
+            byStopId.computeIfAbsent(stopId, s -> new ConcurrentSkipListMap<>()).put(key, report);
+        }
+        if (routeName != null) {
+            byRouteName.computeIfAbsent(routeName, s -> new ConcurrentSkipListMap<>()).put(key, report);
+        }
+        byArea.add(report);
+    }
+
+    /**
+     * Only removes index entries that still point to the report and not to a replacement with the same id.
+     */
+    private void unindex(CompactReport report) {
+        byId.remove(report.getId(), report);
+        IndexKey key = IndexKey.of(report);
+        remove(byStopId, codec.stopId(report), key, report);
+        remove(byRouteName, codec.routeName(report), key, report);
+        byArea.remove(report);
+    }
+
+    private static void remove(Map<String, ConcurrentNavigableMap<IndexKey, CompactReport>> index, String indexKey,
+                               IndexKey key, CompactReport report) {
+        if (indexKey == null) {
+            return;
+        }
+        ConcurrentNavigableMap<IndexKey, CompactReport> reports = index.get(indexKey);
+        if (reports != null) {
+            reports.remove(key, report);
+            if (reports.isEmpty()) {
+                index.remove(indexKey);
+            }
+        }
+    }
+
+    private List<Report> findInRange(Map<String, ConcurrentNavigableMap<IndexKey, CompactReport>> index,
+                                     String key, ZonedDateTime from, ZonedDateTime to) {
+        NavigableMap<IndexKey, CompactReport> reports = index.get(key);
+        if (reports == null) {
+            return List.of();
+        }
+        return reports.subMap(
+                        new IndexKey(from.toEpochSecond(), MIN_ID), true,
+                        new IndexKey(to.toEpochSecond(), MAX_ID), true)
+                .values()
+                .stream()
+                .filter(compact -> !isExpired(compact))
+                .map(codec::decode)
+                .collect(Collectors.toList());
+    }
+
+    @Value
+    private static class IndexKey implements Comparable<IndexKey> {
+        private static final Comparator<IndexKey> ORDER = Comparator.comparingLong(IndexKey::getEpochSecond)
+                .thenComparing(IndexKey::getId);
+
+        long epochSecond;
+        UUID id;
+
+        static IndexKey of(CompactReport report) {
+            return new IndexKey(report.getEpochSecond(), report.getId());
+        }
+
+        @Override
+        public int compareTo(IndexKey o) {
+            return ORDER.compare(this, o);
+        }
     }
 }
@@ -0,0 +1,46 @@
+package com.aljodomo.kontis.persistence;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Settings of the {@link ReportOutbox}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties("outbox")
+public class OutboxProps {
+
+    /**
+     * Write reports to the local outbox first and ship them to Firestore in the background.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Directory of the outbox segment files.
+     */
+    private String directory = "outbox";
+
+    /**
+     * A new segment is started once the current one exceeds this size.
+     */
+    private long segmentMaxBytes = 4 * 1024 * 1024;
+
+    /**
+     * Appended reports are synced to the disk at least this often.
+     */
+    private Duration fsyncInterval = Duration.ofMillis(50);
+
+    /**
+     * Maximum number of reports shipped to the backend at once.
+     */
+    private int drainBatchSize = 100;
+
+    /**
+     * Wait time before a failed shipment is tried again.
+     */
+    private Duration retryBackoff = Duration.ofSeconds(1);
+}
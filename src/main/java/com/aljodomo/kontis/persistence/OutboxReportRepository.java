@@ -0,0 +1,127 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Area;
+import com.aljodomo.kontis.model.Report;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Accepts reports into the local {@link ReportOutbox} and ships them to Firestore in the background.
+ * Ingestion latency no longer depends on Firestore and reports survive outages and restarts.
+ *
+ * @author Aljoscha Domonell
+ */
+@Service
+@Primary
+@Profile({"!test & !dev & !replay"})
+@ConditionalOnProperty(prefix = "outbox", name = "enabled", havingValue = "true")
+@Slf4j
+public class OutboxReportRepository implements ReportRepository {
+
+    private final FirebaseRepository remote;
+    private final ReportOutbox outbox;
+
+    @Autowired
+    public OutboxReportRepository(FirebaseRepository remote, OutboxProps props, ObjectMapper objectMapper) throws IOException {
+        log.info("Using local outbox [{}] in front of Firestore", props.getDirectory());
+
+        this.remote = remote;
+        this.outbox = new ReportOutbox(props, remote, objectMapper);
+    }
+
+    @Override
+    public void create(Report report) {
+        outbox.append(report);
+    }
+
+    @Override
+    public Report findById(String id) {
+        Report report = findPending(id);
+        return report != null ? report : remote.findById(id);
+    }
+
+    @Override
+    public CompletableFuture<Void> createAsync(Report report) {
+        try {
+            outbox.append(report);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> createAllAsync(Collection<Report> reports) {
+        try {
+            reports.forEach(outbox::append);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Report> findByIdAsync(String id) {
+        Report report = findPending(id);
+        return report != null ? CompletableFuture.completedFuture(report) : remote.findByIdAsync(id);
+    }
+
+    @Override
+    public CompletableFuture<List<Report>> findAllByIdAsync(Collection<String> ids) {
+        List<Report> found = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            Report report = findPending(id);
+            if (report != null) {
+                found.add(report);
+            } else {
+                missing.add(id);
+            }
+        }
+        return remote.findAllByIdAsync(missing).thenApply(reports -> {
+            found.addAll(reports);
+            return found;
+        });
+    }
+
+    /**
+     * Includes reports that were not yet shipped to Firestore.
+     */
+    @Override
+    public Stream<Report> findRecent(Area area, ZonedDateTime since) {
+        return Stream.concat(
+                outbox.pendingReports().stream()
+                        .filter(report -> !report.getTime().isBefore(since))
+                        .filter(report -> area.contains(report.getCoordinates())),
+                remote.findRecent(area, since));
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        log.info("Closing outbox with {} unshipped reports", outbox.pendingCount());
+        outbox.close();
+    }
+
+    private Report findPending(String id) {
+        try {
+            return outbox.findPending(UUID.fromString(id));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
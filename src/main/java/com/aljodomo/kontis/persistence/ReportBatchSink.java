@@ -0,0 +1,18 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Report;
+
+import java.util.List;
+
+/**
+ * Target of a {@link GroupCommitWriter}. Stores a batch of reports atomically.
+ */
+public interface ReportBatchSink {
+
+    /**
+     * Store all reports or none. Blocks until the batch was written.
+     *
+     * @throws Exception If the batch could not be written. The whole batch may be retried.
+     */
+    void write(List<Report> reports) throws Exception;
+}
@@ -0,0 +1,98 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Report;
+import lombok.Value;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of reports by id. Evicts the least recently used report once {@code maxSize} is exceeded
+ * and drops reports that were cached longer than {@code ttl}.
+ * <p>
+ * A read that started before the last invalidation of its report may return the previous version. Reads take a
+ * {@link #stamp()} before they start and their result is only cached if the report was not invalidated since.
+ */
+public class ReportCache {
+
+    private final long ttlNanos;
+    private final LinkedHashMap<String, CachedReport> entries;
+
+    /**
+     * Stamp of the last invalidation per id. Once one is evicted, reads started before it are not cached at all.
+     */
+    private final LinkedHashMap<String, Long> invalidations;
+    private long stamp = 0;
+    private long evictedInvalidation = 0;
+
+    public ReportCache(int maxSize, Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedReport> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.invalidations = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() <= maxSize) {
+                    return false;
+                }
+                evictedInvalidation = Math.max(evictedInvalidation, eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Take before reading a report from the store and pass to {@link #put(Report, long)}.
+     */
+    public synchronized long stamp() {
+        return stamp;
+    }
+
+    @Nullable
+    public synchronized Report get(String id) {
+        CachedReport entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.getCachedAt() > ttlNanos) {
+            entries.remove(id);
+            return null;
+        }
+        return entry.getReport();
+    }
+
+    /**
+     * @param readStamp {@link #stamp()} taken before the report was read. The report is not cached if it was
+     *                  invalidated since, as the read may have missed the newer version.
+     */
+    public synchronized void put(Report report, long readStamp) {
+        String id = report.getId().toString();
+        Long invalidated = invalidations.get(id);
+        if (readStamp < evictedInvalidation || (invalidated != null && invalidated > readStamp)) {
+            return;
+        }
+        entries.put(id, new CachedReport(report, System.nanoTime()));
+    }
+
+    public synchronized void invalidate(String id) {
+        entries.remove(id);
+        invalidations.remove(id);
+        invalidations.put(id, ++stamp);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Value
+    private static class CachedReport {
+        Report report;
+        long cachedAt;
+    }
+}
@@ -0,0 +1,92 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Coordinates;
+import com.aljodomo.kontis.model.Report;
+
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Maps {@link Report reports} to Firestore report documents and back without a detour over JSON.
+ * Documents have the fields of the {@link ReportEncoder}, so clients reading Firestore see the same fields as the JSON clients.
+ */
+public class ReportDocuments {
+
+    /**
+     * {@link GeoGrid#key(long) Cell} of the report coordinates. Only used to query by area.
+     */
+    public static final String GEO_CELL = "geoCell";
+
+    /**
+     * Report time in epoch seconds. Only used to query by time.
+     */
+    public static final String EPOCH_SECOND = "epochSecond";
+
+    private ReportDocuments() {
+        // Enforce static usage
+    }
+
+    /**
+     * Report document including the {@link #indexFields(Report) index fields}.
+     */
+    public static Map<String, Object> toDocument(Report report) {
+        Map<String, Object> document = ReportEncoder.toMap(report);
+        document.putAll(indexFields(report));
+        return document;
+    }
+
+    /**
+     * @param data Fields of a report document as written by {@link #toDocument(Report)}.
+     */
+    public static Report toReport(Map<String, Object> data) {
+        return new Report(
+                UUID.fromString((String) data.get("id")),
+                (String) data.get("title"),
+                (String) data.get("originalMessage"),
+                toCoordinates(data.get("coordinates")),
+                toTime(data.get("time")),
+                (String) data.get("routeId"),
+                (String) data.get("routeName"),
+                (String) data.get("stopId"),
+                (String) data.get("stopName"),
+                (String) data.get("tripId"),
+                toInteger(data.get("stopTimeId")));
+    }
+
+    /**
+     * Fields that are derived from the report to support {@link FirebaseRepository#findRecent area queries}.
+     */
+    public static Map<String, Object> indexFields(Report report) {
+        Map<String, Object> fields = new HashMap<>();
+        if (report.getCoordinates() != null) {
+            fields.put(GEO_CELL, GeoGrid.key(GeoGrid.cellOf(report.getCoordinates())));
+        }
+        fields.put(EPOCH_SECOND, report.getTime().toEpochSecond());
+        return fields;
+    }
+
+    private static Coordinates toCoordinates(Object value) {
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        Map<?, ?> coordinates = (Map<?, ?>) value;
+        return new Coordinates(toDouble(coordinates.get("lat")), toDouble(coordinates.get("lng")));
+    }
+
+    private static ZonedDateTime toTime(Object value) {
+        return value == null ? null : ZonedDateTime.parse(value.toString());
+    }
+
+    private static double toDouble(Object value) {
+        return value == null ? 0 : ((Number) value).doubleValue();
+    }
+
+    /**
+     * Firestore returns every integer as {@link Long}.
+     */
+    private static Integer toInteger(Object value) {
+        return value == null ? null : ((Number) value).intValue();
+    }
+}
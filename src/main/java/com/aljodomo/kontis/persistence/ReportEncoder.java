@@ -0,0 +1,284 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Coordinates;
+import com.aljodomo.kontis.model.Report;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes {@link Report reports} without reflection. Writes the fields in the order and format Jackson writes them
+ * with the {@link JavaTimeApiConfiguration object mapper}, either into a Firestore field map or as UTF-8 JSON.
+ * <p>
+ * The fields are listed once in {@link #encode(Report, Fields)}, so both outputs always have the same fields.
+ *
+ * @author Aljoscha Domonell
+ */
+public class ReportEncoder {
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private ReportEncoder() {
+        // Enforce static usage
+    }
+
+    /**
+     * Report fields as Firestore stores them. Times are ISO strings and coordinates a nested map.
+     */
+    public static Map<String, Object> toMap(Report report) {
+        MapFields fields = new MapFields();
+        encode(report, fields);
+        return fields.map;
+    }
+
+    /**
+     * Report as a UTF-8 encoded JSON object.
+     */
+    public static byte[] toJson(Report report) {
+        JsonBuffer json = new JsonBuffer(256);
+        writeJson(report, json);
+        return json.toByteArray();
+    }
+
+    /**
+     * Appends the report as a UTF-8 encoded JSON object.
+     */
+    public static void writeJson(Report report, JsonBuffer json) {
+        json.write('{');
+        encode(report, new JsonFields(json));
+        json.write('}');
+    }
+
+    private static void encode(Report report, Fields fields) {
+        fields.string("id", report.getId() == null ? null : report.getId().toString());
+        fields.string("title", report.getTitle());
+        fields.string("originalMessage", report.getOriginalMessage());
+        fields.coordinates("coordinates", report.getCoordinates());
+        fields.string("time", format(report.getTime()));
+        fields.string("routeId", report.getRouteId());
+        fields.string("routeName", report.getRouteName());
+        fields.string("stopId", report.getStopId());
+        fields.string("stopName", report.getStopName());
+        fields.string("tripId", report.getTripId());
+        fields.integer("stopTimeId", report.getStopTimeId());
+    }
+
+    @Nullable
+    private static String format(@Nullable ZonedDateTime time) {
+        return time == null ? null : DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(time);
+    }
+
+    private interface Fields {
+        void string(String name, @Nullable String value);
+
+        void integer(String name, @Nullable Integer value);
+
+        void coordinates(String name, @Nullable Coordinates value);
+    }
+
+    private static class MapFields implements Fields {
+        private final Map<String, Object> map = new HashMap<>(16);
+
+        @Override
+        public void string(String name, @Nullable String value) {
+            map.put(name, value);
+        }
+
+        @Override
+        public void integer(String name, @Nullable Integer value) {
+            map.put(name, value);
+        }
+
+        @Override
+        public void coordinates(String name, @Nullable Coordinates value) {
+            if (value == null) {
+                map.put(name, null);
+                return;
+            }
+            Map<String, Object> coordinates = new HashMap<>(4);
+            coordinates.put("lat", value.getLat());
+            coordinates.put("lng", value.getLng());
+            map.put(name, coordinates);
+        }
+    }
+
+    private static class JsonFields implements Fields {
+        private final JsonBuffer json;
+        private boolean first = true;
+
+        JsonFields(JsonBuffer json) {
+            this.json = json;
+        }
+
+        @Override
+        public void string(String name, @Nullable String value) {
+            name(name);
+            json.string(value);
+        }
+
+        @Override
+        public void integer(String name, @Nullable Integer value) {
+            name(name);
+            if (value == null) {
+                json.ascii("null");
+            } else {
+                json.ascii(Integer.toString(value));
+            }
+        }
+
+        @Override
+        public void coordinates(String name, @Nullable Coordinates value) {
+            name(name);
+            if (value == null) {
+                json.ascii("null");
+                return;
+            }
+            json.ascii("{\"lat\":");
+            json.number(value.getLat());
+            json.ascii(",\"lng\":");
+            json.number(value.getLng());
+            json.write('}');
+        }
+
+        private void name(String name) {
+            if (!first) {
+                json.write(',');
+            }
+            first = false;
+            json.write('"');
+            json.ascii(name);
+            json.ascii("\":");
+        }
+    }
+
+    /**
+     * Growable UTF-8 byte buffer with the JSON escaping of Jackson. Not thread safe.
+     */
+    public static class JsonBuffer {
+        private byte[] bytes;
+        private int size;
+
+        public JsonBuffer(int capacity) {
+            this.bytes = new byte[Math.max(16, capacity)];
+        }
+
+        public void write(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        public void write(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, bytes, size, b.length);
+            size += b.length;
+        }
+
+        /**
+         * Only for strings that are known to be ASCII without characters to escape.
+         */
+        public void ascii(String s) {
+            ensure(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                bytes[size++] = (byte) s.charAt(i);
+            }
+        }
+
+        /**
+         * Jackson writes non finite numbers as strings.
+         */
+        void number(double value) {
+            if (Double.isFinite(value)) {
+                ascii(Double.toString(value));
+            } else {
+                write('"');
+                ascii(Double.toString(value));
+                write('"');
+            }
+        }
+
+        void string(@Nullable String s) {
+            if (s == null) {
+                ascii("null");
+                return;
+            }
+            // Worst case of six bytes per char for escaped control characters
+            ensure(2 + 6 * s.length());
+            bytes[size++] = '"';
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                    bytes[size++] = (byte) c;
+                } else if (c < 0x80) {
+                    escape(c);
+                } else if (c < 0x800) {
+                    bytes[size++] = (byte) (0xc0 | (c >> 6));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                    bytes[size++] = (byte) (0xf0 | (codePoint >> 18));
+                    bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    bytes[size++] = (byte) (0x80 | (codePoint & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogates are replaced like String#getBytes does
+                    bytes[size++] = '?';
+                } else {
+                    bytes[size++] = (byte) (0xe0 | (c >> 12));
+                    bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            bytes[size++] = '"';
+        }
+
+        private void escape(char c) {
+            bytes[size++] = '\\';
+            switch (c) {
+                case '"':
+                case '\\':
+                    bytes[size++] = (byte) c;
+                    return;
+                case '\b':
+                    bytes[size++] = 'b';
+                    return;
+                case '\t':
+                    bytes[size++] = 't';
+                    return;
+                case '\n':
+                    bytes[size++] = 'n';
+                    return;
+                case '\f':
+                    bytes[size++] = 'f';
+                    return;
+                case '\r':
+                    bytes[size++] = 'r';
+                    return;
+                default:
+                    bytes[size++] = 'u';
+                    bytes[size++] = '0';
+                    bytes[size++] = '0';
+                    bytes[size++] = HEX[c >> 4];
+                    bytes[size++] = HEX[c & 0xf];
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensure(int additional) {
+            if (size + additional > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+            }
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Report;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Local write ahead log for reports. Appended reports are acknowledged as soon as they are
+ * written to the current segment file. The disk is synced in batches every {@link OutboxProps#getFsyncInterval()}.
+ * <p>
+ * A drainer ships the reports to the target repository and deletes segments once all their reports
+ * were confirmed. Segments left over from a previous run are replayed on startup.
+ * Reports are delivered at least once, so the target must treat a repeated create as an overwrite.
+ */
+@Slf4j
+public class ReportOutbox implements AutoCloseable {
+
+    private static final String SEGMENT_PREFIX = "outbox-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final OutboxProps props;
+    private final AsyncReportRepository target;
+    private final ObjectMapper mapper;
+
+    private final BlockingDeque<Entry> queue = new LinkedBlockingDeque<>();
+    private final Map<UUID, Report> pending = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> pendingPerSegment = new ConcurrentHashMap<>();
+    private final Set<Long> sealedSegments = ConcurrentHashMap.newKeySet();
+
+    private final Object appendLock = new Object();
+    private long activeSegment;
+    private FileChannel activeChannel;
+    private long activeBytes;
+    private boolean dirty;
+
+    private final ScheduledExecutorService syncer;
+    private final Thread drainer;
+    private volatile boolean closed = false;
+
+    public ReportOutbox(OutboxProps props, AsyncReportRepository target, ObjectMapper mapper) throws IOException {
+        this.directory = Path.of(props.getDirectory());
+        this.props = props;
+        this.target = target;
+        this.mapper = mapper;
+
+        Files.createDirectories(directory);
+        long lastSegment = recover();
+        openSegment(lastSegment + 1);
+
+        this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "outbox-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = props.getFsyncInterval().toMillis();
+        this.syncer.scheduleWithFixedDelay(this::sync, interval, interval, TimeUnit.MILLISECONDS);
+
+        this.drainer = new Thread(this::drain, "outbox-drainer");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * Append the report to the outbox. Returns as soon as the report was handed to the file system.
+     */
+    public void append(Report report) {
+        byte[] line = encode(report);
+        synchronized (appendLock) {
+            if (closed) {
+                throw new IllegalStateException("Outbox is closed");
+            }
+            try {
+                if (activeBytes > 0 && activeBytes + line.length > props.getSegmentMaxBytes()) {
+                    roll();
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(line);
+                while (buffer.hasRemaining()) {
+                    activeChannel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Report could not be appended to the outbox", e);
+            }
+            activeBytes += line.length;
+            dirty = true;
+            enqueue(activeSegment, report);
+        }
+    }
+
+    /**
+     * Report that was appended but not yet confirmed by the target.
+     */
+    @Nullable
+    public Report findPending(UUID id) {
+        return pending.get(id);
+    }
+
+    /**
+     * All reports not yet confirmed by the target.
+     */
+    public Collection<Report> pendingReports() {
+        return Collections.unmodifiableCollection(pending.values());
+    }
+
+    /**
+     * Number of reports not yet confirmed by the target.
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Stop shipping and sync the current segment. Unconfirmed reports are replayed by the next instance.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            closed = true;
+        }
+        syncer.shutdown();
+        drainer.interrupt();
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for the outbox drainer. Syncing the segment anyway");
+        }
+        synchronized (appendLock) {
+            activeChannel.force(false);
+            activeChannel.close();
+        }
+    }
+
+    /**
+     * Queue the reports of all existing segments.
+     *
+     * @return Number of the last existing segment.
+     */
+    private long recover() throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files
+                    .filter(file -> segmentNumber(file) >= 0)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        long last = 0;
+        for (Path segment : segments) {
+            long number = segmentNumber(segment);
+            last = Math.max(last, number);
+            sealedSegments.add(number);
+
+            int recovered = 0;
+            // Decoded leniently, the last line may have been torn by a crash
+            String content = new String(Files.readAllBytes(segment), StandardCharsets.UTF_8);
+            for (String line : content.split("\n")) {
+                Report report = decode(line);
+                if (report != null) {
+                    enqueue(number, report);
+                    recovered++;
+                }
+            }
+
+            log.info("Recovered {} reports from outbox segment [{}]", recovered, segment.getFileName());
+            if (recovered == 0) {
+                Files.delete(segment);
+                sealedSegments.remove(number);
+            }
+        }
+        return last;
+    }
+
+    private void enqueue(long segment, Report report) {
+        pendingPerSegment.computeIfAbsent(segment, s -> new AtomicInteger()).incrementAndGet();
+        pending.put(report.getId(), report);
+        queue.add(new Entry(segment, report));
+    }
+
+    private void drain() {
+        while (!closed) {
+            List<Entry> batch = new ArrayList<>();
+            try {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, props.getDrainBatchSize() - 1);
+
+                List<Report> reports = batch.stream().map(Entry::getReport).collect(Collectors.toList());
+                target.createAllAsync(reports).get();
+                confirm(batch);
+            } catch (ExecutionException e) {
+                log.warn("Shipping {} reports from the outbox failed. Retrying in {}", batch.size(), props.getRetryBackoff(), e);
+                requeue(batch);
+                try {
+                    Thread.sleep(props.getRetryBackoff().toMillis());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                requeue(batch);
+                return;
+            }
+        }
+    }
+
+    private void requeue(List<Entry> batch) {
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            queue.addFirst(batch.get(i));
+        }
+    }
+
+    private void confirm(List<Entry> batch) {
+        for (Entry entry : batch) {
+            // A replacement with the same id may still be queued
+            pending.remove(entry.getReport().getId(), entry.getReport());
+            if (pendingPerSegment.get(entry.getSegment()).decrementAndGet() == 0) {
+                deleteIfDone(entry.getSegment());
+            }
+        }
+    }
+
+    private void deleteIfDone(long segment) {
+        synchronized (appendLock) {
+            AtomicInteger count = pendingPerSegment.get(segment);
+            if (!sealedSegments.contains(segment) || count == null || count.get() > 0) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(segmentPath(segment));
+                sealedSegments.remove(segment);
+                pendingPerSegment.remove(segment);
+                log.debug("Deleted drained outbox segment [{}]", segment);
+            } catch (IOException e) {
+                log.warn("Drained outbox segment [{}] could not be deleted", segment, e);
+            }
+        }
+    }
+
+    private void sync() {
+        FileChannel channel;
+        synchronized (appendLock) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            channel = activeChannel;
+        }
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // Segment was rolled and synced in the meantime
+        } catch (IOException e) {
+            log.error("Outbox segment could not be synced", e);
+        }
+    }
+
+    private void roll() throws IOException {
+        activeChannel.force(false);
+        activeChannel.close();
+        long sealed = activeSegment;
+        sealedSegments.add(sealed);
+        openSegment(sealed + 1);
+        deleteIfDone(sealed);
+    }
+
+    private void openSegment(long number) throws IOException {
+        activeSegment = number;
+        activeChannel = FileChannel.open(segmentPath(number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeBytes = activeChannel.size();
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] encode(Report report) {
+        ReportEncoder.JsonBuffer line = new ReportEncoder.JsonBuffer(512);
+        ReportEncoder.writeJson(report, line);
+        line.write('\n');
+        return line.toByteArray();
+    }
+
+    /**
+     * @return {@code null} for lines that were torn by a crash.
+     */
+    @Nullable
+    private Report decode(String line) {
+        if (line.isBlank()) {
+            return null;
+        }
+        try {
+            return mapper.readValue(line, Report.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Skipping unreadable outbox record [{}]", line);
+            return null;
+        }
+    }
+
+    @Value
+    private static class Entry {
+        long segment;
+        Report report;
+    }
+}
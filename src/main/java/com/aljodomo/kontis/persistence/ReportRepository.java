@@ -1,14 +1,30 @@
 package com.aljodomo.kontis.persistence;
 
+import com.aljodomo.kontis.model.Area;
 import com.aljodomo.kontis.model.Report;
 
-import java.util.List;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.stream.Stream;
 
 /**
  * @author Aljoscha Domonell
  */
-public interface ReportRepository {
+public interface ReportRepository extends AsyncReportRepository {
     void create(Report report);
 
     Report findById(String id);
+
+    /**
+     * Lazily stream all reports within the area that are not older than {@code since}.
+     * The stream may hold backend resources and should be consumed or closed.
+     */
+    Stream<Report> findRecent(Area area, ZonedDateTime since);
+
+    /**
+     * Reports within the area of the last {@code timeWindow}.
+     */
+    default Stream<Report> findRecent(Area area, Duration timeWindow) {
+        return findRecent(area, ZonedDateTime.now().minus(timeWindow));
+    }
 }
@@ -0,0 +1,78 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Area;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Index of reports by time bucket and {@link GeoGrid} cell.
+ * Queries skip every bucket before the requested time and every cell outside the requested area.
+ */
+public class SpatioTemporalIndex {
+
+    private static final long BUCKET_SECONDS = Duration.ofMinutes(5).toSeconds();
+
+    private final ConcurrentNavigableMap<Long, Map<Long, Collection<CompactReport>>> buckets = new ConcurrentSkipListMap<>();
+
+    public void add(CompactReport report) {
+        if (!report.hasCoordinates()) {
+            return;
+        }
+        buckets.computeIfAbsent(bucketOf(report.getEpochSecond()), b -> new ConcurrentHashMap<>())
+                .computeIfAbsent(GeoGrid.cellOf(report.getLat(), report.getLng()), c -> new ConcurrentLinkedQueue<>())
+                .add(report);
+    }
+
+    public void remove(CompactReport report) {
+        if (!report.hasCoordinates()) {
+            return;
+        }
+        long bucket = bucketOf(report.getEpochSecond());
+        Map<Long, Collection<CompactReport>> cells = buckets.get(bucket);
+        if (cells == null) {
+            return;
+        }
+        long cell = GeoGrid.cellOf(report.getLat(), report.getLng());
+        Collection<CompactReport> reports = cells.get(cell);
+        if (reports != null) {
+            reports.remove(report);
+            if (reports.isEmpty()) {
+                cells.remove(cell);
+            }
+        }
+        if (cells.isEmpty()) {
+            buckets.remove(bucket);
+        }
+    }
+
+    /**
+     * Lazily stream all reports within the area that are not older than {@code since} epoch seconds.
+     * Newest buckets first.
+     */
+    public Stream<CompactReport> find(Area area, long since) {
+        List<Long> cells = GeoGrid.cellsCovering(area);
+        return buckets.tailMap(bucketOf(since), true)
+                .descendingMap()
+                .values()
+                .stream()
+                .flatMap(bucket -> cells.stream()
+                        .map(bucket::get)
+                        .filter(Objects::nonNull)
+                        .flatMap(Collection::stream))
+                .filter(report -> report.getEpochSecond() >= since)
+                .filter(report -> area.contains(report.getLat(), report.getLng()));
+    }
+
+    private static long bucketOf(long epochSecond) {
+        return Math.floorDiv(epochSecond, BUCKET_SECONDS);
+    }
+}
@@ -0,0 +1,31 @@
+package com.aljodomo.kontis.realtime;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Settings of the {@link RealtimeService}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties("realtime")
+public class RealtimeProps {
+
+    /**
+     * Apply GTFS-realtime trip delays to the scheduled times.
+     */
+    private boolean enabled = false;
+
+    /**
+     * URL of the GTFS-realtime feed. A {@code file:} URL or a local endpoint.
+     */
+    private String source = "file:trip-updates.pb";
+
+    /**
+     * How often the feed is read.
+     */
+    private Duration pollInterval = Duration.ofSeconds(30);
+}
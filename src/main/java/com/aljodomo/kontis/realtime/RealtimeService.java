@@ -0,0 +1,224 @@
+package com.aljodomo.kontis.realtime;
+
+import com.aljodomo.kontis.gtfs.DelayOverlay;
+import com.aljodomo.kontis.gtfs.GTFSService;
+import com.aljodomo.kontis.gtfs.GtfsDictionary;
+import com.aljodomo.kontis.gtfs.PatternTrip;
+import com.aljodomo.kontis.gtfs.TripPatternIndex;
+import com.aljodomo.kontis.realtime.TripUpdateParser.StopTimeEvent;
+import com.aljodomo.kontis.realtime.TripUpdateParser.StopTimeUpdate;
+import com.aljodomo.kontis.realtime.TripUpdateParser.TripUpdate;
+import lombok.extern.slf4j.Slf4j;
+import org.onebusaway.gtfs.model.Trip;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Polls a GTFS-realtime feed and writes its trip delays into the {@link DelayOverlay} of the {@link GTFSService}.
+ * Trips that are no longer part of the feed are back on schedule.
+ * <p>
+ * Every stop time update applies from its stop on. Predicted times are compared to the schedule of the service day
+ * of the trip. Stop time updates that match no stop of the trip are skipped.
+ *
+ * @author Aljoscha Domonell
+ */
+@Service
+@ConditionalOnProperty(prefix = "realtime", name = "enabled", havingValue = "true")
+@Slf4j
+public class RealtimeService {
+
+    private final URL source;
+    private final GtfsDictionary dictionary;
+    private final TripPatternIndex patternIndex;
+    private final DelayOverlay delays;
+
+    /**
+     * Dense trip ids by GTFS trip id without agency, as used by realtime feeds.
+     */
+    private final Map<String, Integer> tripIds = new HashMap<>();
+
+    private BitSet delayed = new BitSet();
+    private long lastModified = -1;
+
+    @Autowired
+    public RealtimeService(RealtimeProps props, GTFSService gtfsService) throws IOException {
+        this(new URL(props.getSource()), gtfsService.getDictionary(), gtfsService.getPatternIndex(), gtfsService.getDelays());
+    }
+
+    RealtimeService(URL source, GtfsDictionary dictionary, TripPatternIndex patternIndex, DelayOverlay delays) {
+        this.source = source;
+        this.dictionary = dictionary;
+        this.patternIndex = patternIndex;
+        this.delays = delays;
+
+        for (int id = 0; id < dictionary.tripCount(); id++) {
+            Trip trip = dictionary.trip(id);
+            tripIds.put(trip.getId().getId(), id);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${realtime.poll-interval:PT30S}")
+    public synchronized void poll() {
+        try {
+            long modified = lastModified();
+            if (modified != -1 && modified == lastModified) {
+                return;
+            }
+            try (InputStream in = source.openStream()) {
+                apply(in);
+            }
+            lastModified = modified;
+        } catch (IOException e) {
+            log.warn("Realtime feed [{}] could not be read", source, e);
+        }
+    }
+
+    /**
+     * Applies all trip delays of the feed message.
+     */
+    synchronized void apply(InputStream in) throws IOException {
+        BitSet updated = new BitSet();
+        long start = System.nanoTime();
+        int count = TripUpdateParser.parse(in, update -> {
+            Integer trip = tripIds.get(update.getTripId());
+            if (trip != null && apply(trip, update)) {
+                updated.set(trip);
+            }
+        });
+
+        BitSet onSchedule = (BitSet) delayed.clone();
+        onSchedule.andNot(updated);
+        onSchedule.stream().forEach(delays::clear);
+        delayed = updated;
+
+        log.debug("Applied {} trip delays of which {} are known trips in {} ms. {} trips are back on schedule",
+                count, updated.cardinality(), (System.nanoTime() - start) / 1_000_000, onSchedule.cardinality());
+    }
+
+    /**
+     * A delay of the whole trip applies up to the first stop time update.
+     *
+     * @return False if no delay could be resolved.
+     */
+    private boolean apply(int trip, TripUpdate update) {
+        PatternTrip patternTrip = patternIndex.patternTrip(dictionary.trip(trip));
+        if (patternTrip == null) {
+            if (update.getDelaySeconds() == TripUpdateParser.NONE) {
+                return false;
+            }
+            delays.update(trip, 0, update.getDelaySeconds());
+            return true;
+        }
+
+        int[] stopSequences = patternTrip.getPattern().getStopSequences();
+        List<StopTimeUpdate> stopTimeUpdates = update.getStopTimeUpdates();
+        int[] fromStopSequences = new int[stopTimeUpdates.size() + 1];
+        int[] delaySeconds = new int[stopTimeUpdates.size() + 1];
+        int count = 0;
+        if (update.getDelaySeconds() != TripUpdateParser.NONE) {
+            fromStopSequences[0] = stopSequences[0];
+            delaySeconds[0] = update.getDelaySeconds();
+            count++;
+        }
+
+        long serviceDay = serviceDayEpochSecond(update.getStartDate());
+        int index = -1;
+        for (StopTimeUpdate stopTimeUpdate : stopTimeUpdates) {
+            int next = indexOf(patternTrip, stopTimeUpdate, index + 1);
+            if (next == -1) {
+                log.debug("Stop time update {} does not match a stop of trip [{}]", stopTimeUpdate, update.getTripId());
+                continue;
+            }
+            int delay = delay(stopTimeUpdate.getArrival(), serviceDay + patternTrip.arrival(next));
+            if (delay == TripUpdateParser.NONE) {
+                delay = delay(stopTimeUpdate.getDeparture(), serviceDay + patternTrip.departure(next));
+            }
+            if (delay == TripUpdateParser.NONE) {
+                continue;
+            }
+            if (count > 0 && fromStopSequences[count - 1] == stopSequences[next]) {
+                // Replaces the delay of the whole trip at its first stop
+                count--;
+            }
+            fromStopSequences[count] = stopSequences[next];
+            delaySeconds[count++] = delay;
+            index = next;
+        }
+
+        if (count == 0) {
+            return false;
+        }
+        delays.update(trip, Arrays.copyOf(fromStopSequences, count), Arrays.copyOf(delaySeconds, count));
+        return true;
+    }
+
+    /**
+     * Position of the stop of the update within the pattern, searched from {@code from} on.
+     *
+     * @return {@code -1} if the trip does not serve the stop.
+     */
+    private int indexOf(PatternTrip patternTrip, StopTimeUpdate update, int from) {
+        int[] stopSequences = patternTrip.getPattern().getStopSequences();
+        for (int i = from; i < stopSequences.length; i++) {
+            if (update.getStopSequence() != TripUpdateParser.NONE
+                    ? stopSequences[i] == update.getStopSequence()
+                    : dictionary.stop(patternTrip.stop(i)).getId().getId().equals(update.getStopId())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int delay(StopTimeEvent event, long scheduledEpochSecond) {
+        if (event == null) {
+            return TripUpdateParser.NONE;
+        }
+        if (event.getDelaySeconds() != TripUpdateParser.NONE) {
+            return event.getDelaySeconds();
+        }
+        long delay = event.getTime() - scheduledEpochSecond;
+        return delay == (int) delay ? (int) delay : TripUpdateParser.NONE;
+    }
+
+    /**
+     * GTFS times are seconds since noon minus 12 hours of the service day. Today if the feed does not tell.
+     */
+    private static long serviceDayEpochSecond(String startDate) {
+        LocalDate day = LocalDate.now(GTFSService.ZONE);
+        if (startDate != null) {
+            try {
+                day = LocalDate.parse(startDate, DateTimeFormatter.BASIC_ISO_DATE);
+            } catch (DateTimeParseException e) {
+                log.debug("Invalid start date [{}]. Using today", startDate);
+            }
+        }
+        return day.atTime(LocalTime.NOON).atZone(GTFSService.ZONE).minusHours(12).toEpochSecond();
+    }
+
+    /**
+     * Modification time of a file source or {@code -1} for endpoints.
+     */
+    private long lastModified() throws IOException {
+        if (!"file".equals(source.getProtocol())) {
+            return -1;
+        }
+        return Files.getLastModifiedTime(Path.of(source.getPath())).toMillis();
+    }
+}
@@ -0,0 +1,254 @@
+package com.aljodomo.kontis.realtime;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+import lombok.Value;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the delays of a GTFS-realtime {@code FeedMessage} without generated classes.
+ * Only trip updates are read. Everything else is skipped on the wire.
+ * <p>
+ * Stop time updates are passed on as they are. Resolving their stops and scheduled times is up to the sink.
+ *
+ * @author Aljoscha Domonell
+ */
+public final class TripUpdateParser {
+
+    // FeedMessage
+    private static final int ENTITY = 2;
+    // FeedEntity
+    private static final int TRIP_UPDATE = 3;
+    // TripUpdate
+    private static final int TRIP = 1;
+    private static final int STOP_TIME_UPDATE = 2;
+    private static final int TRIP_DELAY = 5;
+    // TripDescriptor
+    private static final int TRIP_ID = 1;
+    private static final int START_DATE = 3;
+    // StopTimeUpdate
+    private static final int STOP_SEQUENCE = 1;
+    private static final int ARRIVAL = 2;
+    private static final int DEPARTURE = 3;
+    private static final int STOP_ID = 4;
+    // StopTimeEvent
+    private static final int EVENT_DELAY = 1;
+    private static final int EVENT_TIME = 2;
+
+    /**
+     * Value of fields missing in the message.
+     */
+    public static final int NONE = Integer.MIN_VALUE;
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final int TAG_TYPE_BITS = 3;
+
+    /**
+     * Receives every trip update with a delay.
+     */
+    @FunctionalInterface
+    public interface DelaySink {
+        void onTripUpdate(TripUpdate update);
+    }
+
+    @Value
+    public static class TripUpdate {
+
+        /**
+         * GTFS trip id without agency.
+         */
+        String tripId;
+
+        /**
+         * Service day as {@code YYYYMMDD}.
+         */
+        @Nullable
+        String startDate;
+
+        /**
+         * Delay of the whole trip in seconds, or {@link #NONE}.
+         */
+        int delaySeconds;
+
+        /**
+         * In the order of the feed, which is the order of the stop sequences.
+         */
+        List<StopTimeUpdate> stopTimeUpdates;
+    }
+
+    @Value
+    public static class StopTimeUpdate {
+
+        /**
+         * {@link #NONE} if the stop is only given by its id.
+         */
+        int stopSequence;
+
+        /**
+         * GTFS stop id without agency.
+         */
+        @Nullable
+        String stopId;
+
+        @Nullable
+        StopTimeEvent arrival;
+
+        @Nullable
+        StopTimeEvent departure;
+    }
+
+    @Value
+    public static class StopTimeEvent {
+
+        /**
+         * Seconds behind the scheduled time, or {@link #NONE}.
+         */
+        int delaySeconds;
+
+        /**
+         * Predicted time as epoch second, or {@link #NO_TIME}.
+         */
+        long time;
+    }
+
+    private TripUpdateParser() {
+    }
+
+    /**
+     * @return Number of trip updates with a delay.
+     */
+    public static int parse(InputStream in, DelaySink sink) throws IOException {
+        CodedInputStream input = CodedInputStream.newInstance(in);
+        input.setSizeLimit(Integer.MAX_VALUE);
+        int count = 0;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (tag == lengthDelimited(ENTITY)) {
+                int limit = input.pushLimit(input.readRawVarint32());
+                count += parseEntity(input, sink);
+                input.popLimit(limit);
+            } else {
+                input.skipField(tag);
+            }
+        }
+        return count;
+    }
+
+    private static int parseEntity(CodedInputStream input, DelaySink sink) throws IOException {
+        int count = 0;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (tag == lengthDelimited(TRIP_UPDATE)) {
+                int limit = input.pushLimit(input.readRawVarint32());
+                count += parseTripUpdate(input, sink);
+                input.popLimit(limit);
+            } else {
+                input.skipField(tag);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Stop time updates without any delay or time are dropped.
+     */
+    private static int parseTripUpdate(CodedInputStream input, DelaySink sink) throws IOException {
+        String tripId = null;
+        String startDate = null;
+        int tripDelay = NONE;
+        List<StopTimeUpdate> stopTimeUpdates = new ArrayList<>();
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (tag == lengthDelimited(TRIP)) {
+                int limit = input.pushLimit(input.readRawVarint32());
+                while ((tag = input.readTag()) != 0) {
+                    if (tag == lengthDelimited(TRIP_ID)) {
+                        tripId = input.readString();
+                    } else if (tag == lengthDelimited(START_DATE)) {
+                        startDate = input.readString();
+                    } else {
+                        input.skipField(tag);
+                    }
+                }
+                input.popLimit(limit);
+            } else if (tag == lengthDelimited(STOP_TIME_UPDATE)) {
+                int limit = input.pushLimit(input.readRawVarint32());
+                StopTimeUpdate update = parseStopTimeUpdate(input);
+                input.popLimit(limit);
+                if (update.getArrival() != null || update.getDeparture() != null) {
+                    stopTimeUpdates.add(update);
+                }
+            } else if (tag == varint(TRIP_DELAY)) {
+                tripDelay = input.readInt32();
+            } else {
+                input.skipField(tag);
+            }
+        }
+
+        if (tripId == null || (stopTimeUpdates.isEmpty() && tripDelay == NONE)) {
+            return 0;
+        }
+        sink.onTripUpdate(new TripUpdate(tripId, startDate, tripDelay, stopTimeUpdates));
+        return 1;
+    }
+
+    private static StopTimeUpdate parseStopTimeUpdate(CodedInputStream input) throws IOException {
+        int stopSequence = NONE;
+        String stopId = null;
+        StopTimeEvent arrival = null;
+        StopTimeEvent departure = null;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (tag == varint(STOP_SEQUENCE)) {
+                stopSequence = input.readUInt32();
+            } else if (tag == lengthDelimited(STOP_ID)) {
+                stopId = input.readString();
+            } else if (tag == lengthDelimited(ARRIVAL) || tag == lengthDelimited(DEPARTURE)) {
+                int limit = input.pushLimit(input.readRawVarint32());
+                StopTimeEvent event = parseEvent(input);
+                input.popLimit(limit);
+                if (tag == lengthDelimited(ARRIVAL)) {
+                    arrival = event;
+                } else {
+                    departure = event;
+                }
+            } else {
+                input.skipField(tag);
+            }
+        }
+        return new StopTimeUpdate(stopSequence, stopId, arrival, departure);
+    }
+
+    /**
+     * @return {@code null} if the event has neither delay nor time.
+     */
+    @Nullable
+    private static StopTimeEvent parseEvent(CodedInputStream input) throws IOException {
+        int delay = NONE;
+        long time = NO_TIME;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (tag == varint(EVENT_DELAY)) {
+                delay = input.readInt32();
+            } else if (tag == varint(EVENT_TIME)) {
+                time = input.readInt64();
+            } else {
+                input.skipField(tag);
+            }
+        }
+        return delay == NONE && time == NO_TIME ? null : new StopTimeEvent(delay, time);
+    }
+
+    private static int lengthDelimited(int field) {
+        return field << TAG_TYPE_BITS | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    }
+
+    private static int varint(int field) {
+        return field << TAG_TYPE_BITS | WireFormat.WIRETYPE_VARINT;
+    }
+}
@@ -0,0 +1,37 @@
+package com.aljodomo.kontis.replay;
+
+import java.util.Arrays;
+
+/**
+ * Collects latency samples of a single stage and calculates percentiles over them.
+ */
+public class LatencyRecorder {
+
+    private long[] samples = new long[1024];
+    private int size = 0;
+
+    public synchronized void record(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos;
+    }
+
+    public synchronized int count() {
+        return size;
+    }
+
+    /**
+     * @param percentile Value between 0 and 100.
+     * @return Latency in nanoseconds or 0 if nothing was recorded.
+     */
+    public synchronized long percentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int idx = (int) Math.ceil(percentile / 100 * size) - 1;
+        return sorted[Math.max(0, Math.min(idx, size - 1))];
+    }
+}
@@ -0,0 +1,160 @@
+package com.aljodomo.kontis.replay;
+
+import com.aljodomo.kontis.telegram.MessageHandler;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a recorded corpus of timestamped messages into the {@link MessageHandler}.
+ * Used to size hosts and to catch performance regressions before deploying.
+ * <p>
+ * The corpus contains one message per line in the format {@code <timestamp>\t<message>}.
+ * The timestamp is an ISO local or zoned date time. Line breaks inside a message are written as {@code \n}.
+ */
+@Slf4j
+@Profile("replay")
+@Service
+public class ReplayAdapter {
+
+    private final MessageHandler messageHandler;
+    private final ReplayProps props;
+    private final ReplayStats stats;
+    private final ApplicationContext context;
+
+    @Autowired
+    public ReplayAdapter(MessageHandler messageHandler, ReplayProps props, ReplayStats stats, ApplicationContext context) {
+        this.messageHandler = messageHandler;
+        this.props = props;
+        this.stats = stats;
+        this.context = context;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        new Thread(() -> {
+            try {
+                replay(readCorpus(Path.of(props.getFile())));
+            } catch (Exception e) {
+                log.error("Replay failed", e);
+            }
+            if (props.isExitWhenDone()) {
+                System.exit(SpringApplication.exit(context));
+            }
+        }, "replay").start();
+    }
+
+    private void replay(List<RecordedMessage> corpus) throws InterruptedException {
+        if (corpus.isEmpty()) {
+            log.warn("Corpus [{}] is empty", props.getFile());
+            return;
+        }
+
+        log.info("Replaying {} messages {} times with concurrency {}, rate {} and time scale {}",
+                corpus.size(), props.getRepeat(), props.getConcurrency(), props.getRate(), props.getTimeScale());
+
+        ExecutorService workers = Executors.newFixedThreadPool(props.getConcurrency());
+        ZonedDateTime corpusStart = corpus.get(0).getTime();
+        Duration corpusLength = Duration.between(corpusStart, corpus.get(corpus.size() - 1).getTime());
+
+        long start = System.nanoTime();
+        long sent = 0;
+        for (int round = 0; round < props.getRepeat(); round++) {
+            for (RecordedMessage message : corpus) {
+                long scheduled = start + offsetNanos(sent, corpusStart, corpusLength, round, message);
+                waitUntil(scheduled);
+                workers.execute(() -> handle(message, scheduled));
+                sent++;
+            }
+        }
+
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+        stats.log(sent, System.nanoTime() - start);
+    }
+
+    private void handle(RecordedMessage message, long scheduled) {
+        long begin = System.nanoTime();
+        stats.record(ReplayStats.STAGE_QUEUE, begin - scheduled);
+        try {
+            messageHandler.handleMessage(message.getText(), message.getTime());
+        } catch (Exception e) {
+            stats.recordFailure();
+            log.warn("Handling message [{}] failed", message.getText(), e);
+        }
+        stats.record(ReplayStats.STAGE_TOTAL, System.nanoTime() - scheduled);
+    }
+
+    /**
+     * Offset from the start of the replay at which the message should be handed to a worker.
+     */
+    private long offsetNanos(long sent, ZonedDateTime corpusStart, Duration corpusLength, int round, RecordedMessage message) {
+        if (props.getRate() > 0) {
+            return (long) (sent * 1e9 / props.getRate());
+        }
+        if (props.getTimeScale() > 0) {
+            Duration original = Duration.between(corpusStart, message.getTime())
+                    .plus(corpusLength.multipliedBy(round));
+            return (long) (original.toNanos() / props.getTimeScale());
+        }
+        return 0;
+    }
+
+    private static void waitUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static List<RecordedMessage> readCorpus(Path file) throws IOException {
+        List<RecordedMessage> messages = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            int separator = line.indexOf('\t');
+            if (line.isBlank() || line.startsWith("#") || separator < 0) {
+                continue;
+            }
+            ZonedDateTime time = parseTime(line.substring(0, separator).trim());
+            String text = line.substring(separator + 1).replace("\\n", "\n");
+            messages.add(new RecordedMessage(time, text));
+        }
+        return messages;
+    }
+
+    private static ZonedDateTime parseTime(String time) {
+        try {
+            return ZonedDateTime.parse(time);
+        } catch (DateTimeParseException e) {
+            return ZonedDateTime.of(LocalDateTime.parse(time), TimeZone.getDefault().toZoneId());
+        }
+    }
+
+    @Value
+    private static class RecordedMessage {
+        ZonedDateTime time;
+        String text;
+    }
+}
@@ -0,0 +1,128 @@
+package com.aljodomo.kontis.replay;
+
+import com.aljodomo.kontis.gtfs.DefaultReportService;
+import com.aljodomo.kontis.gtfs.Recognition;
+import com.aljodomo.kontis.gtfs.ReportService;
+import com.aljodomo.kontis.model.Area;
+import com.aljodomo.kontis.model.Report;
+import com.aljodomo.kontis.persistence.ReportRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Wraps the {@link ReportService} and {@link ReportRepository} beans to measure the stages of the
+ * {@link com.aljodomo.kontis.telegram.MessageHandler message handler} without touching its implementation.
+ */
+@Component
+@Profile("replay")
+public class ReplayInstrumentation implements BeanPostProcessor {
+
+    private final ReplayStats stats;
+
+    public ReplayInstrumentation(ReplayStats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DefaultReportService) {
+            stats.setRelevanceStats(((DefaultReportService) bean)::getRelevanceStats);
+        }
+        if (bean instanceof ReportService) {
+            return new TimedReportService((ReportService) bean, stats);
+        }
+        if (bean instanceof ReportRepository) {
+            return new TimedReportRepository((ReportRepository) bean, stats);
+        }
+        return bean;
+    }
+
+    @AllArgsConstructor
+    private static class TimedReportService implements ReportService {
+        private final ReportService delegate;
+        private final ReplayStats stats;
+
+        @Override
+        public Optional<Report> analyse(String message, ZonedDateTime time) {
+            long start = System.nanoTime();
+            Optional<Report> report = delegate.analyse(message, time);
+            stats.record(ReplayStats.STAGE_ANALYSE, System.nanoTime() - start);
+            stats.recordResult(report);
+            return report;
+        }
+
+        @Override
+        public Optional<Recognition> recognise(String message, ZonedDateTime time) {
+            long start = System.nanoTime();
+            Optional<Recognition> recognition = delegate.recognise(message, time);
+            stats.record(ReplayStats.STAGE_ANALYSE, System.nanoTime() - start);
+            stats.recordResult(recognition.map(Recognition::getReport));
+            return recognition;
+        }
+
+        @Override
+        public Optional<Report> enrich(Recognition recognition) {
+            long start = System.nanoTime();
+            Optional<Report> report = delegate.enrich(recognition);
+            stats.record(ReplayStats.STAGE_ENRICH, System.nanoTime() - start);
+            if (report.isPresent()) {
+                stats.recordEnriched();
+            }
+            return report;
+        }
+    }
+
+    @AllArgsConstructor
+    private static class TimedReportRepository implements ReportRepository {
+        private final ReportRepository delegate;
+        private final ReplayStats stats;
+
+        @Override
+        public void create(Report report) {
+            long start = System.nanoTime();
+            delegate.create(report);
+            stats.record(ReplayStats.STAGE_PERSIST, System.nanoTime() - start);
+        }
+
+        @Override
+        public Report findById(String id) {
+            return delegate.findById(id);
+        }
+
+        @Override
+        public Stream<Report> findRecent(Area area, ZonedDateTime since) {
+            return delegate.findRecent(area, since);
+        }
+
+        @Override
+        public CompletableFuture<Void> createAsync(Report report) {
+            long start = System.nanoTime();
+            return delegate.createAsync(report)
+                    .whenComplete((unused, e) -> stats.record(ReplayStats.STAGE_PERSIST, System.nanoTime() - start));
+        }
+
+        @Override
+        public CompletableFuture<Void> createAllAsync(Collection<Report> reports) {
+            return delegate.createAllAsync(reports);
+        }
+
+        @Override
+        public CompletableFuture<Report> findByIdAsync(String id) {
+            return delegate.findByIdAsync(id);
+        }
+
+        @Override
+        public CompletableFuture<List<Report>> findAllByIdAsync(Collection<String> ids) {
+            return delegate.findAllByIdAsync(ids);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.aljodomo.kontis.replay;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of the {@link ReplayAdapter}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties("replay")
+public class ReplayProps {
+
+    /**
+     * Corpus file. One message per line in the format {@code <timestamp>\t<message>}.
+     */
+    private String file;
+
+    /**
+     * Number of worker threads that feed the message handler.
+     */
+    private int concurrency = 1;
+
+    /**
+     * Fixed rate in messages per second. {@code 0} disables the rate limit.
+     */
+    private double rate = 0;
+
+    /**
+     * Follow the original timing of the corpus accelerated by this factor. {@code 0} replays as fast as possible.
+     * Ignored if a {@link #rate} is set.
+     */
+    private double timeScale = 0;
+
+    /**
+     * How often the whole corpus is replayed.
+     */
+    private int repeat = 1;
+
+    /**
+     * Shut down the application after the replay finished and the report was printed.
+     */
+    private boolean exitWhenDone = true;
+}
@@ -0,0 +1,114 @@
+package com.aljodomo.kontis.replay;
+
+import com.aljodomo.kontis.gtfs.DefaultReportService;
+import com.aljodomo.kontis.gtfs.RelevanceFilter;
+import com.aljodomo.kontis.model.Report;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Measurements of a replay run. Latencies are recorded per stage, results per completeness.
+ */
+@Slf4j
+@Component
+@Profile("replay")
+public class ReplayStats {
+
+    public static final String STAGE_QUEUE = "queue";
+    public static final String STAGE_ANALYSE = "analyse";
+    public static final String STAGE_ENRICH = "enrich";
+    public static final String STAGE_PERSIST = "persist";
+    public static final String STAGE_TOTAL = "total";
+
+    private final Map<String, LatencyRecorder> stages = new ConcurrentHashMap<>();
+
+    private final AtomicLong complete = new AtomicLong();
+    private final AtomicLong partial = new AtomicLong();
+    private final AtomicLong empty = new AtomicLong();
+    private final AtomicLong degraded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile Supplier<RelevanceFilter.Stats> relevanceStats = () -> null;
+
+    public void record(String stage, long nanos) {
+        stages.computeIfAbsent(stage, s -> new LatencyRecorder()).record(nanos);
+    }
+
+    public void recordResult(Optional<Report> report) {
+        if (report.isPresent() && report.get().isDegraded()) {
+            degraded.incrementAndGet();
+        }
+        if (report.isEmpty()) {
+            empty.incrementAndGet();
+        } else if (report.get().getStopTimeId() != null) {
+            complete.incrementAndGet();
+        } else {
+            partial.incrementAndGet();
+        }
+    }
+
+    /**
+     * A partial result gained its stop time in the enrichment phase.
+     */
+    public void recordEnriched() {
+        partial.decrementAndGet();
+        complete.incrementAndGet();
+    }
+
+    public void recordFailure() {
+        failed.incrementAndGet();
+    }
+
+    /**
+     * Counts of the relevance filter logged with the results.
+     */
+    public void setRelevanceStats(Supplier<RelevanceFilter.Stats> relevanceStats) {
+        this.relevanceStats = relevanceStats;
+    }
+
+    public void log(long messages, long wallNanos) {
+        double seconds = wallNanos / 1e9;
+        log.info("Replayed {} messages in {} s. Throughput {} msg/s",
+                messages, format(seconds), format(messages / seconds));
+
+        for (String stage : new String[]{STAGE_QUEUE, STAGE_ANALYSE, STAGE_ENRICH, STAGE_PERSIST, STAGE_TOTAL}) {
+            LatencyRecorder recorder = stages.get(stage);
+            if (recorder == null) {
+                continue;
+            }
+            log.info("Stage [{}] n={} p50={} ms p90={} ms p99={} ms max={} ms",
+                    stage,
+                    recorder.count(),
+                    millis(recorder.percentile(50)),
+                    millis(recorder.percentile(90)),
+                    millis(recorder.percentile(99)),
+                    millis(recorder.percentile(100)));
+        }
+
+        long results = complete.get() + partial.get() + empty.get();
+        log.info("Results complete={} ({}%) partial={} ({}%) empty={} ({}%) degraded={} failed={}",
+                complete.get(), percent(complete.get(), results),
+                partial.get(), percent(partial.get(), results),
+                empty.get(), percent(empty.get(), results),
+                degraded.get(), failed.get());
+        DefaultReportService.logRelevanceStats(relevanceStats.get(), null);
+    }
+
+    private static String millis(long nanos) {
+        return format(nanos / 1e6);
+    }
+
+    private static String percent(long part, long total) {
+        return total == 0 ? "0" : format(100.0 * part / total);
+    }
+
+    private static String format(double value) {
+        return String.format("%.2f", value);
+    }
+}
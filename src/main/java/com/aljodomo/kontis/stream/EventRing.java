@@ -0,0 +1,64 @@
+package com.aljodomo.kontis.stream;
+
+import java.util.List;
+
+/**
+ * Bounded buffer of encoded events of one subscriber.
+ * Offering never blocks: once the buffer is full the oldest event is dropped.
+ */
+class EventRing {
+
+    private final byte[][] events;
+    private int head = 0;
+    private int size = 0;
+    private long dropped = 0;
+
+    EventRing(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.events = new byte[capacity][];
+    }
+
+    /**
+     * @return {@code true} if the buffer was empty before.
+     */
+    synchronized boolean offer(byte[] event) {
+        boolean wasEmpty = size == 0;
+        if (size == events.length) {
+            events[head] = null;
+            head = (head + 1) % events.length;
+            size--;
+            dropped++;
+        }
+        events[(head + size) % events.length] = event;
+        size++;
+        return wasEmpty;
+    }
+
+    /**
+     * Moves all buffered events in order into {@code target}.
+     *
+     * @return Number of moved events.
+     */
+    synchronized int drainTo(List<byte[]> target) {
+        int drained = size;
+        for (; size > 0; size--) {
+            target.add(events[head]);
+            events[head] = null;
+            head = (head + 1) % events.length;
+        }
+        return drained;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Number of events that were dropped because the subscriber was too slow.
+     */
+    synchronized long dropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,20 @@
+package com.aljodomo.kontis.stream;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Connection to one subscriber. Events are already encoded and are written as they are.
+ */
+public interface EventSink {
+
+    /**
+     * Writes and flushes the events in order. May block while the subscriber is slow.
+     * The writing thread is interrupted once the write timeout is exceeded.
+     *
+     * @throws IOException If the subscriber is gone. The subscription is closed then.
+     */
+    void write(List<byte[]> events) throws IOException;
+
+    void close();
+}
@@ -0,0 +1,269 @@
+package com.aljodomo.kontis.stream;
+
+import com.aljodomo.kontis.model.Report;
+import com.aljodomo.kontis.persistence.ReportEncoder;
+import com.aljodomo.kontis.telegram.ReportListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans new reports out to the subscribers of the live stream.
+ * <p>
+ * Each report is encoded once as a server sent event and the same bytes are handed to every
+ * matching subscriber. Subscribers have their own bounded {@link EventRing} that drops the oldest
+ * event when full, and are written by a small pool of writer threads. Publishing never blocks,
+ * no matter how slow a subscriber is.
+ * <p>
+ * A write that takes longer than the write timeout is interrupted, which closes the connection of a
+ * stalled subscriber and gives its writer thread back to the others.
+ */
+@Component
+@ConditionalOnProperty(prefix = "stream", name = "enabled", havingValue = "true")
+@Slf4j
+public class ReportBroadcaster implements ReportListener {
+
+    static final byte[] HEARTBEAT = ": heartbeat\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final long writeTimeoutNanos;
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    /**
+     * Slots are reserved before a subscription is added, so concurrent subscribes never exceed the maximum.
+     */
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService writers;
+    private final ScheduledExecutorService heartbeat;
+
+    @Autowired
+    public ReportBroadcaster(StreamProps props) {
+        this.bufferSize = props.getBufferSize();
+        this.maxSubscribers = props.getMaxSubscribers();
+        this.writeTimeoutNanos = props.getWriteTimeout().toNanos();
+        this.writers = Executors.newFixedThreadPool(props.getWriterThreads(), daemon("report-stream-writer"));
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(daemon("report-stream-heartbeat"));
+
+        long interval = props.getHeartbeatInterval().toMillis();
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeat, interval, interval, TimeUnit.MILLISECONDS);
+        long checkInterval = Math.max(1, props.getWriteTimeout().toMillis() / 4);
+        heartbeat.scheduleAtFixedRate(this::abortStalledWrites, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @throws IllegalStateException If the maximum number of subscribers is reached.
+     */
+    public Subscription subscribe(ReportFilter filter, EventSink sink) {
+        int count;
+        do {
+            count = subscriberCount.get();
+            if (count >= maxSubscribers) {
+                throw new IllegalStateException("Too many subscribers");
+            }
+        } while (!subscriberCount.compareAndSet(count, count + 1));
+        Subscription subscription = new Subscription(filter, sink, new EventRing(bufferSize));
+        subscriptions.add(subscription);
+        log.debug("Subscribed with {}. Subscribers: {}", filter, count + 1);
+        return subscription;
+    }
+
+    @Override
+    public void onReport(Report report) {
+        byte[] event = null;
+        for (Subscription subscription : subscriptions) {
+            if (!subscription.filter.matches(report)) {
+                continue;
+            }
+            if (event == null) {
+                event = encode(report);
+            }
+            deliver(subscription, event);
+        }
+    }
+
+    /**
+     * Subscribers receive the enriched report as another event with the same id.
+     */
+    @Override
+    public void onReportEnriched(Report report) {
+        onReport(report);
+    }
+
+    public int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @PreDestroy
+    public void close() {
+        heartbeat.shutdownNow();
+        writers.shutdownNow();
+        subscriptions.forEach(Subscription::close);
+    }
+
+    /**
+     * Server sent event with the report as JSON data.
+     */
+    private static byte[] encode(Report report) {
+        ReportEncoder.JsonBuffer event = new ReportEncoder.JsonBuffer(512);
+        event.ascii("id: " + report.getId() + "\nevent: report\ndata: ");
+        ReportEncoder.writeJson(report, event);
+        event.ascii("\n\n");
+        return event.toByteArray();
+    }
+
+    private void deliver(Subscription subscription, byte[] event) {
+        subscription.ring.offer(event);
+        schedule(subscription);
+    }
+
+    private void schedule(Subscription subscription) {
+        if (subscription.scheduled.compareAndSet(false, true)) {
+            try {
+                writers.execute(() -> drain(subscription));
+            } catch (RuntimeException e) {
+                // Rejected after close
+                subscription.scheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Writes one batch and gives the thread back, so a subscriber with a steady stream
+     * of events can not starve the others.
+     */
+    private void drain(Subscription subscription) {
+        List<byte[]> batch = new ArrayList<>();
+        subscription.ring.drainTo(batch);
+        try {
+            if (!batch.isEmpty()) {
+                subscription.startWrite();
+                subscription.sink.write(batch);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Subscriber is gone", e);
+            subscription.close();
+            return;
+        } finally {
+            subscription.endWrite();
+            subscription.scheduled.set(false);
+        }
+        if (subscription.ring.size() > 0) {
+            schedule(subscription);
+        }
+    }
+
+    /**
+     * Only idle subscribers get a heartbeat. Others receive events anyway.
+     */
+    private void sendHeartbeat() {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.ring.size() == 0) {
+                deliver(subscription, HEARTBEAT);
+            }
+        }
+    }
+
+    /**
+     * Interrupting the writer closes the socket channel it is blocked on.
+     */
+    private void abortStalledWrites() {
+        long now = System.nanoTime();
+        for (Subscription subscription : subscriptions) {
+            if (subscription.abortWriteStartedBefore(now - writeTimeoutNanos)) {
+                log.debug("Write to subscriber exceeded the write timeout. Disconnecting");
+            }
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A subscriber of the live stream.
+     */
+    public class Subscription {
+        private final ReportFilter filter;
+        private final EventSink sink;
+        private final EventRing ring;
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+        /**
+         * Writer thread and start of the current write. Guarded by the subscription.
+         */
+        private Thread writer;
+        private long writeStartedNanos;
+        private boolean aborted;
+
+        private Subscription(ReportFilter filter, EventSink sink, EventRing ring) {
+            this.filter = filter;
+            this.sink = sink;
+            this.ring = ring;
+        }
+
+        /**
+         * Number of events that were dropped because the subscriber was too slow.
+         */
+        public long dropped() {
+            return ring.dropped();
+        }
+
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscriptions.remove(this);
+                int count = subscriberCount.decrementAndGet();
+                sink.close();
+                log.debug("Unsubscribed. Dropped events: {}. Subscribers: {}", ring.dropped(), count);
+            }
+        }
+
+        private synchronized void startWrite() {
+            writer = Thread.currentThread();
+            writeStartedNanos = System.nanoTime();
+            aborted = false;
+        }
+
+        /**
+         * Clears an interrupt of the watchdog, so the pooled writer thread is not left interrupted.
+         */
+        private synchronized void endWrite() {
+            if (writer == Thread.currentThread()) {
+                writer = null;
+                if (aborted) {
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        private synchronized boolean abortWriteStartedBefore(long deadlineNanos) {
+            if (writer == null || aborted || writeStartedNanos - deadlineNanos > 0) {
+                return false;
+            }
+            aborted = true;
+            writer.interrupt();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.aljodomo.kontis.stream;
+
+import com.aljodomo.kontis.model.Area;
+import com.aljodomo.kontis.model.Coordinates;
+import com.aljodomo.kontis.model.Report;
+import lombok.Value;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Selects the reports a subscriber is interested in. A report must match every given criterion.
+ */
+@Value
+public class ReportFilter {
+
+    public static final ReportFilter ALL = new ReportFilter(null, null);
+
+    @Nullable
+    Area area;
+
+    /**
+     * Route short names like {@code U8}.
+     */
+    @Nullable
+    Set<String> routeNames;
+
+    public boolean matches(Report report) {
+        if (area != null && !area.contains(report.getCoordinates())) {
+            return false;
+        }
+        return routeNames == null || routeNames.contains(report.getRouteName());
+    }
+
+    /**
+     * Filter from query parameters. {@code lat}, {@code lng} and {@code radius} in meters select an area,
+     * {@code routes} a comma separated list of route names.
+     *
+     * @throws IllegalArgumentException If the area is incomplete or not a number.
+     */
+    public static ReportFilter of(Map<String, String> query) {
+        Area area = null;
+        if (query.containsKey("lat") || query.containsKey("lng") || query.containsKey("radius")) {
+            if (!query.containsKey("lat") || !query.containsKey("lng") || !query.containsKey("radius")) {
+                throw new IllegalArgumentException("An area needs lat, lng and radius");
+            }
+            area = new Area(new Coordinates(Double.parseDouble(query.get("lat")), Double.parseDouble(query.get("lng"))),
+                    Double.parseDouble(query.get("radius")));
+        }
+
+        Set<String> routeNames = null;
+        String routes = query.get("routes");
+        if (routes != null && !routes.isBlank()) {
+            routeNames = Arrays.stream(routes.split(","))
+                    .map(String::trim)
+                    .filter(s -> !s.isEmpty())
+                    .collect(Collectors.toUnmodifiableSet());
+        }
+
+        return new ReportFilter(area, routeNames);
+    }
+}
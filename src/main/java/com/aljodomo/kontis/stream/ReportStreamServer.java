@@ -0,0 +1,134 @@
+package com.aljodomo.kontis.stream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves the live report stream as server sent events.
+ * <p>
+ * {@code GET <stream.path>?lat=52.52&lng=13.40&radius=2000&routes=U8,U9}
+ * <p>
+ * The request thread only registers the subscription. Events are written later by the
+ * writer threads of the {@link ReportBroadcaster}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "stream", name = "enabled", havingValue = "true")
+@Slf4j
+public class ReportStreamServer {
+
+    private final StreamProps props;
+    private final ReportBroadcaster broadcaster;
+
+    private HttpServer server;
+
+    @Autowired
+    public ReportStreamServer(StreamProps props, ReportBroadcaster broadcaster) {
+        this.props = props;
+        this.broadcaster = broadcaster;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(props.getPort()), 0);
+        server.createContext(props.getPath(), this::handle);
+        server.start();
+        log.info("Streaming reports on port {} at {}", props.getPort(), props.getPath());
+    }
+
+    @PreDestroy
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            reject(exchange, 405, "Only GET is supported");
+            return;
+        }
+
+        ReportFilter filter;
+        try {
+            filter = ReportFilter.of(query(exchange.getRequestURI().getRawQuery()));
+        } catch (IllegalArgumentException e) {
+            reject(exchange, 400, e.getMessage());
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        // Chunked response that stays open
+        exchange.sendResponseHeaders(200, 0);
+        exchange.getResponseBody().flush();
+
+        ExchangeSink sink = new ExchangeSink(exchange);
+        try {
+            broadcaster.subscribe(filter, sink);
+        } catch (IllegalStateException e) {
+            sink.write(List.of((": " + e.getMessage() + "\n\n").getBytes(StandardCharsets.UTF_8)));
+            sink.close();
+        }
+    }
+
+    private static void reject(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0) {
+                query.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Writes events into the open response body.
+     */
+    private static class ExchangeSink implements EventSink {
+        private final HttpExchange exchange;
+
+        ExchangeSink(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        @Override
+        public void write(List<byte[]> events) throws IOException {
+            OutputStream out = exchange.getResponseBody();
+            for (byte[] event : events) {
+                out.write(event);
+            }
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+            exchange.close();
+        }
+    }
+}
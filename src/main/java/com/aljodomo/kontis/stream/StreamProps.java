@@ -0,0 +1,47 @@
+package com.aljodomo.kontis.stream;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Settings of the live {@link ReportStreamServer report stream}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties("stream")
+public class StreamProps {
+
+    /**
+     * Push new reports to subscribed clients.
+     */
+    private boolean enabled = false;
+
+    private int port = 8081;
+
+    private String path = "/reports/stream";
+
+    /**
+     * Events buffered per subscriber. The oldest event is dropped once a slow subscriber exceeds it.
+     */
+    private int bufferSize = 256;
+
+    /**
+     * Threads that write buffered events to the subscribers.
+     */
+    private int writerThreads = 4;
+
+    /**
+     * Subscribers receive a comment at least this often so dead connections are noticed.
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(15);
+
+    private int maxSubscribers = 10_000;
+
+    /**
+     * A write to a subscriber that takes longer is aborted and the subscriber is disconnected.
+     */
+    private Duration writeTimeout = Duration.ofSeconds(10);
+}
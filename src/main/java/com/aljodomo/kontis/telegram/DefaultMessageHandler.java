@@ -1,16 +1,34 @@
 package com.aljodomo.kontis.telegram;
 
+import com.aljodomo.kontis.feed.FeedRouter;
+import com.aljodomo.kontis.feed.FeedShard;
+import com.aljodomo.kontis.gtfs.Recognition;
 import com.aljodomo.kontis.gtfs.ReportService;
 import com.aljodomo.kontis.model.Report;
 import com.aljodomo.kontis.persistence.ReportRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Nullable;
 import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
+ * Reports are persisted asynchronously. The next message is analysed while the
+ * previous report is still being written.
+ * <p>
+ * Every {@link ReportListener} is notified as soon as a report was analysed, without waiting for the write.
+ * <p>
+ * If multiple feeds are configured, the {@link FeedRouter} picks the report service by the chat of the message.
+ * Reports of other feeds than the default are not published to {@link ReportListener#isDefaultFeedOnly() default feed only} listeners.
+ * <p>
+ * With a {@link ReportEnricher} the partial report is persisted and published as soon as route and stop are recognised.
+ * Once its stop time is resolved, the stored report is replaced by the complete one.
+ *
  * @author Aljoscha Domonell
  */
 @Service
@@ -19,19 +37,95 @@ public class DefaultMessageHandler implements MessageHandler {
 
     private final ReportService reportService;
     private final ReportRepository db;
+    private final List<ReportListener> listeners;
+    private final List<ReportListener> otherFeedListeners;
+    @Nullable
+    private final FeedRouter feedRouter;
+    @Nullable
+    private final ReportEnricher enricher;
 
     @Autowired
-    public DefaultMessageHandler(ReportService reportService, ReportRepository db) {
+    public DefaultMessageHandler(ReportService reportService, ReportRepository db, ObjectProvider<ReportListener> listeners,
+                                 ObjectProvider<FeedRouter> feedRouter, ObjectProvider<ReportEnricher> enricher) {
         this.reportService = reportService;
         this.db = db;
+        this.listeners = listeners.orderedStream().collect(Collectors.toList());
+        this.otherFeedListeners = this.listeners.stream()
+                .filter(listener -> !listener.isDefaultFeedOnly())
+                .collect(Collectors.toList());
+        this.feedRouter = feedRouter.getIfAvailable();
+        this.enricher = enricher.getIfAvailable();
     }
 
     @Override
     public void handleMessage(String message, ZonedDateTime now) {
-        Optional<Report> report = reportService.analyse(message, now);
-        if (report.isPresent()) {
-            db.create(report.get());
-            log.info("Report created: {}", report.get());
+        handleMessage(message, now, null);
+    }
+
+    @Override
+    public void handleMessage(String message, ZonedDateTime now, @Nullable String channel) {
+        ReportService service = reportService;
+        boolean defaultFeed = true;
+        if (feedRouter != null) {
+            FeedShard shard = feedRouter.shardFor(channel);
+            service = shard.getReportService();
+            defaultFeed = feedRouter.isDefault(shard);
+        }
+        List<ReportListener> feedListeners = defaultFeed ? listeners : otherFeedListeners;
+
+        if (enricher == null) {
+            Optional<Report> report = service.analyse(message, now);
+            report.ifPresent(r -> {
+                persist(r);
+                publish(feedListeners, r);
+            });
+            return;
+        }
+
+        ReportService feedService = service;
+        Optional<Recognition> recognition = service.recognise(message, now);
+        recognition.ifPresent(r -> {
+            persist(r.getReport());
+            publish(feedListeners, r.getReport());
+            if (r.isPending()) {
+                enricher.submit(feedService, r, enriched -> {
+                    persist(enriched);
+                    publishEnriched(feedListeners, enriched);
+                });
+            }
+        });
+    }
+
+    private void publish(List<ReportListener> listeners, Report report) {
+        for (ReportListener listener : listeners) {
+            try {
+                listener.onReport(report);
+            } catch (RuntimeException e) {
+                log.error("Report listener {} failed", listener.getClass().getSimpleName(), e);
+            }
         }
     }
+
+    private void publishEnriched(List<ReportListener> listeners, Report report) {
+        for (ReportListener listener : listeners) {
+            try {
+                listener.onReportEnriched(report);
+            } catch (RuntimeException e) {
+                log.error("Report listener {} failed", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    /**
+     * Creating a report with an existing id replaces the stored report.
+     */
+    private void persist(Report report) {
+        db.createAsync(report).whenComplete((unused, e) -> {
+            if (e != null) {
+                log.error("Report could not be created: {}", report, e);
+            } else {
+                log.info("Report created: {}", report);
+            }
+        });
+    }
 }
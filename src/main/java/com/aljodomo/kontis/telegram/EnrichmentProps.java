@@ -0,0 +1,29 @@
+package com.aljodomo.kontis.telegram;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of the {@link ReportEnricher}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties("enrichment")
+public class EnrichmentProps {
+
+    /**
+     * Store and publish partial reports right away and resolve their stop time in the background.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Threads that resolve stop times.
+     */
+    private int threads = 2;
+
+    /**
+     * Partial reports waiting for their stop time. Further reports stay partial.
+     */
+    private int queueCapacity = 1_000;
+}
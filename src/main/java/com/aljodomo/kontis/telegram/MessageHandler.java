@@ -1,5 +1,6 @@
 package com.aljodomo.kontis.telegram;
 
+import javax.annotation.Nullable;
 import java.time.ZonedDateTime;
 
 /**
@@ -7,4 +8,11 @@ import java.time.ZonedDateTime;
  */
 public interface MessageHandler {
     void handleMessage(String update, ZonedDateTime now);
+
+    /**
+     * @param channel Chat or channel the message was received in. Selects the GTFS feed if multiple are configured.
+     */
+    default void handleMessage(String update, ZonedDateTime now, @Nullable String channel) {
+        handleMessage(update, now);
+    }
 }
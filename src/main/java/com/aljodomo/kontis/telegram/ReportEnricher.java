@@ -0,0 +1,97 @@
+package com.aljodomo.kontis.telegram;
+
+import com.aljodomo.kontis.gtfs.Recognition;
+import com.aljodomo.kontis.gtfs.ReportService;
+import com.aljodomo.kontis.model.Report;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Resolves the stop times of {@link Recognition#isPending() pending} recognitions on its own threads,
+ * so the ingestion thread only waits for route and stop recognition.
+ * <p>
+ * If the queue is full the report stays partial.
+ *
+ * @author Aljoscha Domonell
+ */
+@Service
+@ConditionalOnProperty(prefix = "enrichment", name = "enabled", havingValue = "true")
+@Slf4j
+public class ReportEnricher {
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong enrichedCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    @Autowired
+    public ReportEnricher(EnrichmentProps props) {
+        int threads = Math.max(1, props.getThreads());
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(props.getQueueCapacity()), runnable -> {
+            Thread thread = new Thread(runnable, "enrichment-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param onEnriched Called on an enrichment thread with the complete report. Not called if the stop time could not be resolved.
+     */
+    public void submit(ReportService reportService, Recognition recognition, Consumer<Report> onEnriched) {
+        try {
+            executor.execute(() -> enrich(reportService, recognition, onEnriched));
+        } catch (RejectedExecutionException e) {
+            skippedCount.incrementAndGet();
+            log.warn("Enrichment can not keep up. Report stays partial: {}", recognition.getReport().getId());
+        }
+    }
+
+    /**
+     * Number of reports that gained their stop time.
+     */
+    public long getEnrichedCount() {
+        return enrichedCount.get();
+    }
+
+    /**
+     * Number of reports that stayed partial because the queue was full.
+     */
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * Number of partial reports waiting for their stop time.
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void enrich(ReportService reportService, Recognition recognition, Consumer<Report> onEnriched) {
+        try {
+            reportService.enrich(recognition).ifPresent(report -> {
+                enrichedCount.incrementAndGet();
+                onEnriched.accept(report);
+            });
+        } catch (RuntimeException e) {
+            log.error("Report could not be enriched: {}", recognition.getReport(), e);
+        }
+    }
+}
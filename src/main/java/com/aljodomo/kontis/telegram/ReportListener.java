@@ -0,0 +1,28 @@
+package com.aljodomo.kontis.telegram;
+
+import com.aljodomo.kontis.model.Report;
+
+/**
+ * Notified by the {@link DefaultMessageHandler} about every new report.
+ * Called on the ingestion thread, so implementations must return quickly and never block.
+ *
+ * @author Aljoscha Domonell
+ */
+public interface ReportListener {
+    void onReport(Report report);
+
+    /**
+     * The stop time of a report was resolved after it had been {@link #onReport reported}.
+     * The enriched report has the same id and replaces the earlier one. Called on an enrichment thread.
+     */
+    default void onReportEnriched(Report report) {
+    }
+
+    /**
+     * Listeners that resolve ids with the dictionary of the {@link com.aljodomo.kontis.gtfs.GTFSService} bean
+     * are not notified about reports of the other {@link com.aljodomo.kontis.feed.FeedRouter feeds}.
+     */
+    default boolean isDefaultFeedOnly() {
+        return false;
+    }
+}
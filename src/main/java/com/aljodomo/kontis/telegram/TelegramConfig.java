@@ -12,7 +12,7 @@ import org.springframework.context.annotation.Profile;
 public class TelegramConfig {
 
     @Bean
-    @Profile("!test")
+    @Profile("!test & !replay")
     public TelegramBot telegramBot(TelegramProps telegramProps) {
         return new TelegramBot(telegramProps.getApiKey());
     }
@@ -1,28 +1,43 @@
 package com.aljodomo.kontis.telegram;
 
+import com.aljodomo.kontis.cluster.ChatUpdate;
+import com.aljodomo.kontis.cluster.ClusterNode;
+import com.aljodomo.kontis.cluster.ClusterProps;
 import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.UpdatesListener;
 import com.pengrad.telegrambot.model.Update;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import java.time.ZonedDateTime;
 
 /**
+ * In cluster mode updates are submitted to the {@link ClusterNode}, which hands them to the node owning the chat.
+ *
  * @author Aljoscha Domonell
  */
 @Component
-@Profile("!test")
+@Profile("!test & !replay")
 @Slf4j
 public class TelegramUpdateHandler {
 
     private final MessageHandler messageHandler;
+    @Nullable
+    private final ClusterNode clusterNode;
 
     @Autowired
-    public TelegramUpdateHandler(TelegramBot telegramBot, MessageHandler messageHandler) {
+    public TelegramUpdateHandler(TelegramBot telegramBot, MessageHandler messageHandler,
+                                 ObjectProvider<ClusterNode> clusterNode, ClusterProps clusterProps) {
         this.messageHandler = messageHandler;
+        this.clusterNode = clusterNode.getIfAvailable();
+        if (this.clusterNode != null && !clusterProps.isIngest()) {
+            log.info("Node [{}] does not poll Telegram and only handles forwarded updates", clusterProps.getNodeId());
+            return;
+        }
         addListeners(telegramBot);
     }
 
@@ -41,7 +56,12 @@ public class TelegramUpdateHandler {
             return;
         }
 
-        messageHandler.handleMessage(message, ZonedDateTime.now());
+        String chatId = String.valueOf(update.message().chat().id());
+        if (clusterNode != null) {
+            clusterNode.submit(new ChatUpdate(chatId, update.message().messageId(), System.currentTimeMillis(), message));
+            return;
+        }
+        messageHandler.handleMessage(message, ZonedDateTime.now(), chatId);
     }
 
 }
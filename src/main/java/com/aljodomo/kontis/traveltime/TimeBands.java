@@ -0,0 +1,46 @@
+package com.aljodomo.kontis.traveltime;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Representative time of day bands. Travel times are computed per band.
+ */
+public class TimeBands {
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private final int[] startSeconds;
+
+    /**
+     * @param startHours Ascending start hours. The first band must start at 0.
+     */
+    public TimeBands(List<Integer> startHours) {
+        if (startHours.isEmpty() || startHours.get(0) != 0) {
+            throw new IllegalArgumentException("The first band must start at 0");
+        }
+        this.startSeconds = startHours.stream().mapToInt(hour -> hour * 3600).toArray();
+        for (int i = 1; i < startSeconds.length; i++) {
+            if (startSeconds[i] <= startSeconds[i - 1] || startSeconds[i] >= SECONDS_PER_DAY) {
+                throw new IllegalArgumentException("Band start hours must be ascending and below 24: " + startHours);
+            }
+        }
+    }
+
+    /**
+     * @param secondOfDay Seconds since midnight. GTFS times after 24:00 are folded onto the day.
+     */
+    public int bandOf(int secondOfDay) {
+        int folded = Math.floorMod(secondOfDay, SECONDS_PER_DAY);
+        int band = Arrays.binarySearch(startSeconds, folded);
+        return band >= 0 ? band : -band - 2;
+    }
+
+    public int count() {
+        return startSeconds.length;
+    }
+
+    public long fingerprint() {
+        return Arrays.hashCode(startSeconds);
+    }
+}
@@ -0,0 +1,175 @@
+package com.aljodomo.kontis.traveltime;
+
+import com.aljodomo.kontis.gtfs.GtfsDictionary;
+import com.aljodomo.kontis.gtfs.PatternTrip;
+import com.aljodomo.kontis.gtfs.StationIndex;
+import com.aljodomo.kontis.gtfs.TripPattern;
+import com.aljodomo.kontis.gtfs.TripPatternIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Stations connected by the fastest ride between them per {@link TimeBands time band}.
+ * <p>
+ * Waiting times are ignored and changing trips within a station is free, so the
+ * {@link #shortestFrom(int, int) shortest travel times} are lower bounds. This is what
+ * "could an inspector seen at A be at B by now" needs.
+ */
+public class TravelTimeGraph implements TravelTimeMatrix.RowSource {
+
+    private final int stationCount;
+    private final int[][] offsets;
+    private final int[][] targets;
+    private final int[][] seconds;
+
+    private TravelTimeGraph(int stationCount, int[][] offsets, int[][] targets, int[][] seconds) {
+        this.stationCount = stationCount;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.seconds = seconds;
+    }
+
+    /**
+     * Graph of consecutive stops of every trip.
+     */
+    public static TravelTimeGraph of(TripPatternIndex patterns, StationIndex stations, TimeBands bands) {
+        Builder builder = new Builder(stations.stationCount(), bands);
+        for (TripPattern pattern : patterns.getPatterns()) {
+            for (PatternTrip trip : pattern.getTrips()) {
+                for (int i = 1; i < trip.stopCount(); i++) {
+                    int departure = trip.departure(i - 1);
+                    builder.addRide(
+                            trip.station(i - 1),
+                            trip.station(i),
+                            departure,
+                            trip.arrival(i) - departure);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Identifies the edges and their seconds. Changes whenever the timetable changes the fastest rides.
+     */
+    public long fingerprint() {
+        long hash = 0xcbf29ce484222325L;
+        for (int band = 0; band < offsets.length; band++) {
+            hash = mix(hash, band);
+            for (int station = 0; station < stationCount; station++) {
+                for (int edge = offsets[band][station]; edge < offsets[band][station + 1]; edge++) {
+                    hash = mix(hash, ((long) station << 32 | targets[band][edge]) * 31 + seconds[band][edge]);
+                }
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        hash ^= value;
+        hash *= 0x100000001b3L;
+        return hash ^ (hash >>> 29);
+    }
+
+    @Override
+    public int stationCount() {
+        return stationCount;
+    }
+
+    /**
+     * Dijkstra from the source.
+     *
+     * @return Seconds per target station. {@link Integer#MAX_VALUE} if unreachable.
+     */
+    @Override
+    public int[] shortestFrom(int band, int source) {
+        int[] distances = new int[stationCount];
+        Arrays.fill(distances, Integer.MAX_VALUE);
+        distances[source] = 0;
+
+        PriorityQueue<long[]> queue = new PriorityQueue<>(Comparator.comparingLong(entry -> entry[0]));
+        queue.add(new long[]{0, source});
+        while (!queue.isEmpty()) {
+            long[] entry = queue.poll();
+            int station = (int) entry[1];
+            if (entry[0] > distances[station]) {
+                continue;
+            }
+            for (int edge = offsets[band][station]; edge < offsets[band][station + 1]; edge++) {
+                int target = targets[band][edge];
+                int distance = distances[station] + seconds[band][edge];
+                if (distance < distances[target]) {
+                    distances[target] = distance;
+                    queue.add(new long[]{distance, target});
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Collects the fastest ride per station pair and band.
+     */
+    public static class Builder {
+        private final int stationCount;
+        private final TimeBands bands;
+        private final List<Map<Long, Integer>> rides;
+
+        public Builder(int stationCount, TimeBands bands) {
+            this.stationCount = stationCount;
+            this.bands = bands;
+            this.rides = new ArrayList<>();
+            for (int band = 0; band < bands.count(); band++) {
+                rides.add(new HashMap<>());
+            }
+        }
+
+        /**
+         * Rides within a station, with unknown stations or with a negative duration are ignored. Rides of zero seconds
+         * are kept, as GTFS times of consecutive stops often only differ by the minute.
+         *
+         * @param departure Departure in seconds of the service day. Selects the band.
+         */
+        public Builder addRide(int fromStation, int toStation, int departure, int seconds) {
+            if (fromStation == GtfsDictionary.NONE || toStation == GtfsDictionary.NONE
+                    || fromStation == toStation || seconds < 0) {
+                return this;
+            }
+            long key = (long) fromStation << 32 | toStation;
+            rides.get(bands.bandOf(departure)).merge(key, seconds, Math::min);
+            return this;
+        }
+
+        /**
+         * Adjacency arrays sorted by source station.
+         */
+        public TravelTimeGraph build() {
+            int[][] offsets = new int[bands.count()][];
+            int[][] targets = new int[bands.count()][];
+            int[][] seconds = new int[bands.count()][];
+            for (int band = 0; band < bands.count(); band++) {
+                Map<Long, Integer> edges = rides.get(band);
+                long[] keys = edges.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+
+                offsets[band] = new int[stationCount + 1];
+                targets[band] = new int[keys.length];
+                seconds[band] = new int[keys.length];
+                for (int i = 0; i < keys.length; i++) {
+                    offsets[band][(int) (keys[i] >>> 32) + 1]++;
+                    targets[band][i] = (int) keys[i];
+                    seconds[band][i] = edges.get(keys[i]);
+                }
+                for (int station = 0; station < stationCount; station++) {
+                    offsets[band][station + 1] += offsets[band][station];
+                }
+            }
+            return new TravelTimeGraph(stationCount, offsets, targets, seconds);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.aljodomo.kontis.traveltime;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Minimum travel seconds between all stations per time band, stored as shorts in a memory mapped file.
+ * <p>
+ * Rows are computed per band and source station on first use, or all at once with {@link #computeAll()},
+ * and stay in the file. A file of a different station grouping or band layout is discarded.
+ * <p>
+ * Layout: header, one computed flag byte per row, then {@code bands * stations * stations} shorts.
+ */
+@Slf4j
+public class TravelTimeMatrix implements Closeable {
+
+    /**
+     * Travel times at or above this are stored as unreachable.
+     */
+    public static final int UNREACHABLE = Short.MAX_VALUE;
+
+    private static final int MAGIC = 0x4B545454;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4;
+
+    private final RowSource source;
+    private final int stations;
+    private final int bands;
+    private final int matrixOffset;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final AtomicIntegerArray computed;
+
+    public TravelTimeMatrix(Path file, long fingerprint, int bands, RowSource source) throws IOException {
+        this.source = source;
+        this.stations = source.stationCount();
+        this.bands = bands;
+
+        int rows = bands * stations;
+        this.matrixOffset = HEADER_BYTES + rows + (rows % 2);
+        long size = matrixOffset + 2L * rows * stations;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many stations for one matrix file: " + stations);
+        }
+
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean reusable = channel.size() == size && matches(channel, fingerprint);
+        if (!reusable) {
+            log.info("Creating travel time matrix {} for {} stations and {} bands", file, stations, bands);
+            channel.truncate(0);
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        this.computed = new AtomicIntegerArray(rows);
+        if (reusable) {
+            int restored = 0;
+            for (int row = 0; row < rows; row++) {
+                if (buffer.get(HEADER_BYTES + row) != 0) {
+                    computed.set(row, 1);
+                    restored++;
+                }
+            }
+            log.info("Mapped travel time matrix {} with {} of {} rows computed", file, restored, rows);
+        } else {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, fingerprint);
+            buffer.putInt(16, stations);
+            buffer.putInt(20, bands);
+        }
+    }
+
+    /**
+     * @return Minimum travel seconds or {@link #UNREACHABLE}.
+     */
+    public int travelSeconds(int band, int from, int to) {
+        int row = band * stations + from;
+        if (computed.get(row) == 0) {
+            compute(row);
+        }
+        return buffer.getShort(matrixOffset + 2 * (row * stations + to));
+    }
+
+    /**
+     * Computes every missing row and syncs the file.
+     */
+    public void computeAll() {
+        for (int row = 0; row < bands * stations; row++) {
+            if (computed.get(row) == 0) {
+                compute(row);
+            }
+        }
+        buffer.force();
+    }
+
+    public int stationCount() {
+        return stations;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Rows are written under a lock and published by the computed flag.
+     */
+    private synchronized void compute(int row) {
+        if (computed.get(row) != 0) {
+            return;
+        }
+        int[] distances = source.shortestFrom(row / stations, row % stations);
+        int offset = matrixOffset + 2 * row * stations;
+        for (int to = 0; to < stations; to++) {
+            buffer.putShort(offset + 2 * to, (short) Math.min(distances[to], UNREACHABLE));
+        }
+        buffer.put(HEADER_BYTES + row, (byte) 1);
+        computed.set(row, 1);
+    }
+
+    private boolean matches(FileChannel channel, long fingerprint) throws IOException {
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        return header.getInt(0) == MAGIC
+                && header.getInt(4) == VERSION
+                && header.getLong(8) == fingerprint
+                && header.getInt(16) == stations
+                && header.getInt(20) == bands;
+    }
+
+    /**
+     * Computes the travel times of one source station.
+     */
+    public interface RowSource {
+        int stationCount();
+
+        /**
+         * @return Seconds per target station. {@link Integer#MAX_VALUE} if unreachable.
+         */
+        int[] shortestFrom(int band, int source);
+    }
+}
@@ -0,0 +1,36 @@
+package com.aljodomo.kontis.traveltime;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Settings of the {@link TravelTimeService}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties("travel-times")
+public class TravelTimeProps {
+
+    /**
+     * Answer travel time queries between stations.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Matrix file. Memory mapped and reused across restarts as long as the GTFS stations do not change.
+     */
+    private String file = "travel-times.bin";
+
+    /**
+     * Start hours of the time of day bands. The first band must start at 0.
+     */
+    private List<Integer> bandStartHours = List.of(0, 6, 10, 16, 20);
+
+    /**
+     * Compute all rows in the background on startup instead of on first use.
+     */
+    private boolean precompute = false;
+}
@@ -0,0 +1,80 @@
+package com.aljodomo.kontis.traveltime;
+
+import com.aljodomo.kontis.gtfs.GTFSService;
+import com.aljodomo.kontis.gtfs.GtfsDictionary;
+import com.aljodomo.kontis.gtfs.StationIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.OptionalInt;
+
+/**
+ * Constant time lookups of the minimum travel time between stations.
+ * Stops are resolved to their station, so every platform of a station has the same travel times.
+ *
+ * @author Aljoscha Domonell
+ */
+@Service
+@ConditionalOnProperty(prefix = "travel-times", name = "enabled", havingValue = "true")
+@Slf4j
+public class TravelTimeService {
+
+    private final GtfsDictionary dictionary;
+    private final StationIndex stations;
+    private final TimeBands bands;
+    private final TravelTimeMatrix matrix;
+
+    @Autowired
+    public TravelTimeService(TravelTimeProps props, GTFSService gtfsService) throws IOException {
+        this.dictionary = gtfsService.getDictionary();
+        this.stations = gtfsService.getStationIndex();
+        this.bands = new TimeBands(props.getBandStartHours());
+
+        TravelTimeGraph graph = TravelTimeGraph.of(gtfsService.getPatternIndex(), stations, bands);
+        // A new timetable with the same stations must not reuse the travel times of the old one
+        long fingerprint = (stations.fingerprint() * 31 + bands.fingerprint()) * 31 + graph.fingerprint();
+        this.matrix = new TravelTimeMatrix(Path.of(props.getFile()), fingerprint, bands.count(), graph);
+
+        if (props.isPrecompute()) {
+            Thread thread = new Thread(matrix::computeAll, "travel-times");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Lower bound of the travel time between the stations of the stops, ignoring waiting times.
+     *
+     * @param at Departure time. Selects the time band.
+     * @return Seconds or empty if a stop is unknown or the destination is unreachable.
+     */
+    public OptionalInt minTravelSeconds(String fromStopId, String toStopId, ZonedDateTime at) {
+        int from = stations.stationOf(dictionary.stopId(fromStopId));
+        int to = stations.stationOf(dictionary.stopId(toStopId));
+        if (from == GtfsDictionary.NONE || to == GtfsDictionary.NONE) {
+            return OptionalInt.empty();
+        }
+        int seconds = matrix.travelSeconds(bands.bandOf(at.toLocalTime().toSecondOfDay()), from, to);
+        return seconds == TravelTimeMatrix.UNREACHABLE ? OptionalInt.empty() : OptionalInt.of(seconds);
+    }
+
+    /**
+     * Could someone seen at the first stop be at the second one within the given time.
+     */
+    public boolean canReach(String fromStopId, String toStopId, ZonedDateTime at, Duration within) {
+        OptionalInt seconds = minTravelSeconds(fromStopId, toStopId, at);
+        return seconds.isPresent() && seconds.getAsInt() <= within.getSeconds();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        matrix.close();
+    }
+}
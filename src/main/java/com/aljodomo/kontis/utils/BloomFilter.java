@@ -0,0 +1,86 @@
+package com.aljodomo.kontis.utils;
+
+/**
+ * Set membership of strings with false positives but no false negatives.
+ * Substrings are hashed in place, so lookups do not allocate.
+ *
+ * @author Aljoscha Domonell
+ */
+public class BloomFilter {
+
+    private final long[] bits;
+    private final int bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedEntries   Number of entries the filter is sized for.
+     * @param falsePositiveRate Probability that an absent entry is reported as present once the filter is full.
+     */
+    public BloomFilter(int expectedEntries, double falsePositiveRate) {
+        int entries = Math.max(1, expectedEntries);
+        double ln2 = Math.log(2);
+        long size = (long) Math.ceil(-entries * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bitCount = (int) Math.max(64, Math.min(size, Integer.MAX_VALUE - 63));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / entries * ln2));
+        this.bits = new long[(bitCount + 63) / 64];
+    }
+
+    public void add(CharSequence value) {
+        add(value, 0, value.length());
+    }
+
+    public void add(CharSequence value, int from, int to) {
+        long hash = hash(value, from, to);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(CharSequence value) {
+        return mightContain(value, 0, value.length());
+    }
+
+    /**
+     * Tests the characters {@code from} inclusive to {@code to} exclusive.
+     */
+    public boolean mightContain(CharSequence value, int from, int to) {
+        long hash = hash(value, from, to);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits[bit >>> 6] & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int bitCount() {
+        return bitCount;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * FNV-1a followed by a 64 bit finalizer, so both halves can be used as independent hashes.
+     */
+    private static long hash(CharSequence value, int from, int to) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,100 @@
+package com.aljodomo.kontis.aggregation;
+
+import com.aljodomo.kontis.model.Coordinates;
+import com.aljodomo.kontis.model.Report;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+class ReportAggregatorTest {
+
+    private static final ZonedDateTime TIME = ZonedDateTime.of(LocalDateTime.parse("2022-02-21T17:39:00"),
+            ZoneId.of("Europe/Berlin"));
+
+    @TempDir
+    Path directory;
+
+    private AggregationProps props() {
+        AggregationProps props = new AggregationProps();
+        props.setHalfLife(Duration.ofHours(1));
+        props.setHours(24);
+        props.setSnapshotFile(directory.resolve("aggregates.bin").toString());
+        return props;
+    }
+
+    private static Report report(String stopId, String routeName, ZonedDateTime time) {
+        return new Report(UUID.randomUUID(), routeName + " Stop", "message", new Coordinates(52.5, 13.4), time,
+                null, routeName, stopId, "Stop", null, null);
+    }
+
+    @Test
+    void testRecentSightingsDecay() {
+        ReportAggregator aggregator = new ReportAggregator(props());
+        aggregator.onReport(report("stop", "U8", TIME));
+        aggregator.onReport(report("stop", "U8", TIME));
+
+        Assertions.assertEquals(2.0, aggregator.recentAtStop("stop", TIME), 1e-9);
+        Assertions.assertEquals(1.0, aggregator.recentAtStop("stop", TIME.plusHours(1)), 1e-9);
+        Assertions.assertEquals(0.5, aggregator.recentOnRoute("U8", TIME.plusHours(2)), 1e-9);
+        Assertions.assertEquals(0.0, aggregator.recentOnRoute("U9", TIME), 1e-9);
+    }
+
+    @Test
+    void testLateSightingIsDecayed() {
+        DecayedCounter counter = new DecayedCounter(3600);
+        counter.increment(TIME.toEpochSecond());
+        counter.increment(TIME.minusHours(1).toEpochSecond());
+
+        Assertions.assertEquals(1.5, counter.valueAt(TIME.toEpochSecond()), 1e-9);
+    }
+
+    @Test
+    void testHourlyCounts() {
+        ReportAggregator aggregator = new ReportAggregator(props());
+        aggregator.onReport(report("stop", "U8", TIME));
+        aggregator.onReport(report("stop", "U8", TIME.plusMinutes(10)));
+        aggregator.onReport(report("stop", "U9", TIME.plusHours(1)));
+
+        Assertions.assertEquals(2, aggregator.hourlyAtStop("stop", TIME));
+        Assertions.assertEquals(1, aggregator.hourlyAtStop("stop", TIME.plusHours(1)));
+        Assertions.assertEquals(2, aggregator.hourlyOnRoute("U8", TIME));
+        Assertions.assertEquals(0, aggregator.hourlyOnRoute("U9", TIME));
+    }
+
+    @Test
+    void testOldHoursAreReplaced() {
+        HourlyCounts counts = new HourlyCounts(24);
+        long hour = HourlyCounts.hourOf(TIME.toEpochSecond());
+        counts.increment(TIME.toEpochSecond());
+        counts.increment(TIME.plusDays(1).toEpochSecond());
+        counts.increment(TIME.toEpochSecond());
+
+        Assertions.assertEquals(0, counts.count(hour), "Replaced hour is gone and older events are ignored");
+        Assertions.assertEquals(1, counts.count(hour + 24));
+        Assertions.assertEquals(1, counts.sum(hour, hour + 24));
+    }
+
+    @Test
+    void testCountsSurviveRestart() {
+        ReportAggregator aggregator = new ReportAggregator(props());
+        aggregator.onReport(report("stop", "U8", TIME));
+        aggregator.onReport(report("other", null, TIME.plusMinutes(30)));
+        aggregator.snapshot();
+
+        ReportAggregator restarted = new ReportAggregator(props());
+
+        Assertions.assertEquals(aggregator.recentAtStop("stop", TIME.plusHours(1)),
+                restarted.recentAtStop("stop", TIME.plusHours(1)), 1e-9);
+        Assertions.assertEquals(aggregator.recentAtStop("other", TIME.plusHours(1)),
+                restarted.recentAtStop("other", TIME.plusHours(1)), 1e-9);
+        Assertions.assertEquals(1, restarted.hourlyOnRoute("U8", TIME));
+        Assertions.assertEquals(1, restarted.hourlyAtStop("other", TIME.plusMinutes(30)));
+    }
+}
@@ -0,0 +1,155 @@
+package com.aljodomo.kontis.cluster;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs several nodes on localhost. A stub Telegram sender spreads the updates over the nodes.
+ */
+class ClusterNodeTest {
+
+    private static final int CHATS = 20;
+    private static final int MESSAGES_PER_CHAT = 25;
+
+    private final Map<String, String> addresses = new LinkedHashMap<>();
+    private final List<ClusterNode> nodes = new ArrayList<>();
+    private final Map<String, String> handledBy = new ConcurrentHashMap<>();
+    private final Map<String, List<Long>> handledMessages = new ConcurrentHashMap<>();
+
+    @AfterEach
+    void close() {
+        nodes.forEach(ClusterNode::close);
+    }
+
+    private void startCluster(int size, CountDownLatch handled) throws IOException {
+        for (int i = 0; i < size; i++) {
+            addresses.put("node-" + i, "localhost:" + freePort());
+        }
+        for (String nodeId : addresses.keySet()) {
+            ClusterProps props = new ClusterProps();
+            props.setNodeId(nodeId);
+            props.setNodes(addresses);
+            props.setSecret("secret");
+            props.setLanes(2);
+            props.setRetryBackoff(Duration.ofMillis(50));
+            ClusterNode node = new ClusterNode(props, update -> {
+                String previous = handledBy.putIfAbsent(update.getChatId(), nodeId);
+                Assertions.assertTrue(previous == null || previous.equals(nodeId), "Chat handled by two nodes");
+                handledMessages.computeIfAbsent(update.getChatId(), c -> Collections.synchronizedList(new ArrayList<>()))
+                        .add(update.getMessageId());
+                handled.countDown();
+            });
+            node.start();
+            nodes.add(node);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Stands in for the Telegram updates listeners. The chats are received by the nodes in turn,
+     * like a cluster that polls one bot per node.
+     */
+    private void sendUpdates() {
+        for (long message = 0; message < MESSAGES_PER_CHAT; message++) {
+            for (int chat = 0; chat < CHATS; chat++) {
+                ChatUpdate update = new ChatUpdate(String.valueOf(-100 - chat), message, System.currentTimeMillis(), "U8 Hermannplatz");
+                nodes.get(chat % nodes.size()).submit(update);
+            }
+        }
+    }
+
+    @Test
+    void testEveryChatIsHandledInOrderByItsOwner() throws Exception {
+        CountDownLatch handled = new CountDownLatch(CHATS * MESSAGES_PER_CHAT);
+        startCluster(3, handled);
+
+        sendUpdates();
+
+        Assertions.assertTrue(handled.await(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(CHATS, handledMessages.size());
+        for (Map.Entry<String, List<Long>> chat : handledMessages.entrySet()) {
+            Assertions.assertEquals(nodes.get(0).ownerOf(chat.getKey()), handledBy.get(chat.getKey()));
+            List<Long> expected = new ArrayList<>();
+            for (long message = 0; message < MESSAGES_PER_CHAT; message++) {
+                expected.add(message);
+            }
+            Assertions.assertEquals(expected, chat.getValue());
+        }
+        long forwarded = nodes.stream().mapToLong(ClusterNode::getForwardedCount).sum();
+        Assertions.assertTrue(forwarded > 0);
+        Assertions.assertEquals(CHATS * MESSAGES_PER_CHAT, nodes.stream().mapToLong(ClusterNode::getHandledCount).sum());
+    }
+
+    @Test
+    void testDuplicateUpdateIsHandledOnce() throws Exception {
+        CountDownLatch handled = new CountDownLatch(2);
+        startCluster(2, handled);
+
+        ClusterNode ingress = nodes.get(0).ownerOf("-42").equals("node-0") ? nodes.get(1) : nodes.get(0);
+
+        // A forward that is retried after the owner already accepted it
+        ChatUpdate update = new ChatUpdate("-42", 7, System.currentTimeMillis(), "S41 Westkreuz");
+        ingress.submit(update);
+        ingress.submit(update);
+        ingress.submit(new ChatUpdate("-42", 8, System.currentTimeMillis(), "S41 Westkreuz"));
+
+        Assertions.assertTrue(handled.await(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of(7L, 8L), handledMessages.get("-42"));
+        Assertions.assertEquals(1, nodes.stream().mapToLong(ClusterNode::getDuplicateCount).sum());
+    }
+
+    @Test
+    void testClosingDeliversQueuedForwards() throws Exception {
+        CountDownLatch handled = new CountDownLatch(MESSAGES_PER_CHAT);
+        startCluster(2, handled);
+        ClusterNode ingress = nodes.get(0).ownerOf("-42").equals("node-0") ? nodes.get(1) : nodes.get(0);
+
+        for (long message = 0; message < MESSAGES_PER_CHAT; message++) {
+            ingress.submit(new ChatUpdate("-42", message, System.currentTimeMillis(), "S41 Westkreuz"));
+        }
+        ingress.close();
+        nodes.remove(ingress);
+
+        Assertions.assertTrue(handled.await(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(MESSAGES_PER_CHAT, handledMessages.get("-42").size());
+        Assertions.assertEquals(0, ingress.getDroppedCount());
+    }
+
+    @Test
+    void testUpdatesWithoutTheSecretAreRefused() throws Exception {
+        startCluster(1, new CountDownLatch(1));
+        byte[] batch = ClusterTransport.encode(List.of(new ChatUpdate("-42", 1, System.currentTimeMillis(), "U8 Hermannplatz")));
+
+        HttpResponse<Void> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://" + addresses.get("node-0") + ClusterTransport.PATH))
+                        .header(ClusterTransport.SECRET_HEADER, "guess")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(batch))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+
+        Assertions.assertEquals(401, response.statusCode());
+        Assertions.assertTrue(handledMessages.isEmpty());
+    }
+}
@@ -0,0 +1,54 @@
+package com.aljodomo.kontis.cluster;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class HashRingTest {
+
+    private static final int CHATS = 30_000;
+
+    @Test
+    void testChatsAreSpreadEvenly() {
+        HashRing ring = new HashRing(List.of("a", "b", "c"), 128);
+
+        Map<String, Integer> chats = new HashMap<>();
+        for (int chat = 0; chat < CHATS; chat++) {
+            chats.merge(ring.ownerOf(String.valueOf(-1001000000000L - chat)), 1, Integer::sum);
+        }
+
+        Assertions.assertEquals(3, chats.size());
+        for (int count : chats.values()) {
+            Assertions.assertTrue(Math.abs(count - CHATS / 3) < CHATS / 3 * 0.2, "Uneven share " + chats);
+        }
+    }
+
+    @Test
+    void testAddedNodeOnlyTakesOverChats() {
+        HashRing before = new HashRing(List.of("a", "b", "c"), 128);
+        HashRing after = new HashRing(List.of("a", "b", "c", "d"), 128);
+
+        int moved = 0;
+        for (int chat = 0; chat < CHATS; chat++) {
+            String owner = after.ownerOf(String.valueOf(chat));
+            if (!owner.equals(before.ownerOf(String.valueOf(chat)))) {
+                Assertions.assertEquals("d", owner);
+                moved++;
+            }
+        }
+        Assertions.assertTrue(moved > CHATS / 4 * 0.8 && moved < CHATS / 4 * 1.2, "Moved " + moved);
+    }
+
+    @Test
+    void testRingDoesNotDependOnNodeOrder() {
+        HashRing ring = new HashRing(List.of("a", "b", "c"), 16);
+        HashRing reversed = new HashRing(List.of("c", "b", "a"), 16);
+
+        for (int chat = 0; chat < 1_000; chat++) {
+            Assertions.assertEquals(ring.ownerOf(String.valueOf(chat)), reversed.ownerOf(String.valueOf(chat)));
+        }
+    }
+}
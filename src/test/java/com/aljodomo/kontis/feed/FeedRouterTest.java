@@ -0,0 +1,112 @@
+package com.aljodomo.kontis.feed;
+
+import com.aljodomo.kontis.gtfs.ReportService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class FeedRouterTest {
+
+    private final FeedShard berlin = shard("berlin");
+
+    private static FeedShard shard(String name) {
+        ReportService reportService = (message, time) -> Optional.empty();
+        return new FeedShard(name, null, reportService, 1024);
+    }
+
+    private static FeedProps.Feed feed(String name, String... channels) {
+        FeedProps.Feed feed = new FeedProps.Feed();
+        feed.setName(name);
+        feed.setLocation(name);
+        feed.setChannels(List.of(channels));
+        return feed;
+    }
+
+    private static FeedProps props(FeedProps.Feed... feeds) {
+        FeedProps props = new FeedProps();
+        props.setLoadThreads(2);
+        props.setShards(List.of(feeds));
+        return props;
+    }
+
+    @Test
+    void testMessagesAreRoutedByChannel() {
+        FeedRouter router = new FeedRouter(props(feed("hamburg", "1", "2"), feed("munich", "3")), berlin,
+                feed -> shard(feed.getName()));
+
+        Assertions.assertEquals("hamburg", router.shardFor("2").getName());
+        Assertions.assertEquals("munich", router.shardFor("3").getName());
+        Assertions.assertSame(berlin, router.shardFor("4"));
+        Assertions.assertSame(berlin, router.shardFor(null));
+        Assertions.assertEquals(3 * 1024, router.estimatedBytes());
+    }
+
+    @Test
+    void testFeedsAreLoadedInParallel() {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        FeedRouter router = new FeedRouter(props(feed("hamburg"), feed("munich")), berlin, feed -> {
+            bothStarted.countDown();
+            try {
+                Assertions.assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return shard(feed.getName());
+        });
+
+        Assertions.assertEquals(3, router.getShards().size());
+    }
+
+    @Test
+    void testFailedFeedFallsBackToTheDefaultFeed() {
+        FeedRouter router = new FeedRouter(props(feed("hamburg", "1"), feed("munich", "2")), berlin, feed -> {
+            if (feed.getName().equals("hamburg")) {
+                throw new IOException("missing");
+            }
+            return shard(feed.getName());
+        });
+
+        Assertions.assertSame(berlin, router.shardFor("1"));
+        Assertions.assertTrue(router.isDefault(router.shardFor("1")));
+        Assertions.assertEquals("munich", router.shardFor("2").getName());
+        Assertions.assertEquals(2, router.getShards().size());
+    }
+
+    @Test
+    void testReloadSwapsInNewShards() {
+        AtomicInteger loads = new AtomicInteger();
+        FeedRouter router = new FeedRouter(props(feed("hamburg", "1")), berlin, feed -> {
+            loads.incrementAndGet();
+            return shard(feed.getName());
+        });
+        FeedShard before = router.shardFor("1");
+
+        router.reload().join();
+
+        Assertions.assertEquals(2, loads.get());
+        Assertions.assertNotSame(before, router.shardFor("1"));
+    }
+
+    @Test
+    void testFailedReloadKeepsThePreviousShard() {
+        AtomicInteger loads = new AtomicInteger();
+        FeedRouter router = new FeedRouter(props(feed("hamburg", "1")), berlin, feed -> {
+            if (loads.incrementAndGet() > 1) {
+                throw new IOException("missing");
+            }
+            return shard(feed.getName());
+        });
+        FeedShard before = router.shardFor("1");
+
+        Assertions.assertThrows(CompletionException.class, () -> router.reload().join());
+
+        Assertions.assertSame(before, router.shardFor("1"));
+    }
+}
@@ -0,0 +1,113 @@
+package com.aljodomo.kontis.gtfs;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+class ActiveTripDayTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2022, 2, 21);
+
+    private final Route route = new Route();
+    private final List<Stop> stops = List.of(stop("A"), stop("B"));
+    private final GtfsDictionary dictionary;
+
+    ActiveTripDayTest() {
+        route.setId(new AgencyAndId("1", "U8"));
+        route.setShortName("U8");
+        dictionary = new GtfsDictionary(stops, List.of(route), List.of());
+    }
+
+    private static Stop stop(String id) {
+        Stop stop = new Stop();
+        stop.setId(new AgencyAndId("1", id));
+        stop.setName(id);
+        return stop;
+    }
+
+    private List<StopTime> trip(String id, String serviceId, int start) {
+        Trip trip = new Trip();
+        trip.setId(new AgencyAndId("1", id));
+        trip.setRoute(route);
+        trip.setDirectionId("0");
+        trip.setServiceId(new AgencyAndId("1", serviceId));
+
+        List<StopTime> stopTimes = new ArrayList<>();
+        for (int i = 0; i < stops.size(); i++) {
+            StopTime stopTime = new StopTime();
+            stopTime.setId(Integer.parseInt(id) * 10 + i);
+            stopTime.setTrip(trip);
+            stopTime.setStop(stops.get(i));
+            stopTime.setStopSequence(i + 1);
+            stopTime.setArrivalTime(start + i * 600);
+            stopTime.setDepartureTime(start + i * 600);
+            stopTimes.add(stopTime);
+        }
+        return stopTimes;
+    }
+
+    /**
+     * Service {@code weekday} runs Monday to Friday, {@code sunday} only on Sundays.
+     */
+    private static boolean isActiveAt(Trip trip, LocalDate date) {
+        boolean sunday = date.getDayOfWeek() == DayOfWeek.SUNDAY;
+        return trip.getServiceId().getId().equals("sunday") == sunday;
+    }
+
+    private TripPatternIndex index() {
+        List<StopTime> stopTimes = new ArrayList<>();
+        stopTimes.addAll(trip("1", "weekday", 8 * 3600));
+        stopTimes.addAll(trip("2", "sunday", 25 * 3600));
+        stopTimes.addAll(trip("3", "weekday", 24 * 3600 + 1800));
+        stopTimes.addAll(trip("4", "sunday", 10 * 3600));
+        return new TripPatternIndex(stopTimes, dictionary, new StationIndex(dictionary));
+    }
+
+    @Test
+    void testTripsAfterMidnightAreFoldedOntoTheNextDay() {
+        TripPatternIndex index = index();
+        TripPattern pattern = index.getPatterns().get(0);
+
+        ActiveTripDay.Trips trips = ActiveTripDay.of(MONDAY, index, ActiveTripDayTest::isActiveAt).tripsOf(pattern);
+
+        // Sunday 25:00 runs Monday 01:00, Monday 08:00 and Monday 24:30 run on Monday's service day
+        Assertions.assertEquals(3, trips.size());
+        Assertions.assertEquals("2", trips.trip(0).getTrip().getId().getId());
+        Assertions.assertEquals(3600, trips.firstArrival(0));
+        Assertions.assertEquals(-ActiveTripDay.DAY, trips.shift(0));
+        Assertions.assertEquals(8 * 3600, trips.firstArrival(1));
+        Assertions.assertEquals(24 * 3600 + 1800, trips.firstArrival(2));
+        Assertions.assertEquals(24 * 3600 + 2400, trips.lastArrival(2));
+    }
+
+    @Test
+    void testShiftedStopTimeHasCalendarDayTimes() {
+        TripPatternIndex index = index();
+        ActiveTripDay.Trips trips = ActiveTripDay.of(MONDAY, index, ActiveTripDayTest::isActiveAt)
+                .tripsOf(index.getPatterns().get(0));
+
+        StopTime stopTime = index.stopTime(trips.trip(0), 1, trips.shift(0));
+
+        Assertions.assertEquals(3600 + 600, stopTime.getArrivalTime());
+        Assertions.assertEquals(Integer.valueOf(21), stopTime.getId());
+    }
+
+    @Test
+    void testInactiveDayHasNoTrips() {
+        TripPatternIndex index = index();
+
+        ActiveTripDay day = ActiveTripDay.of(MONDAY.plusDays(1), index, (trip, date) -> false);
+
+        Assertions.assertEquals(0, day.getTripCount());
+        Assertions.assertEquals(0, day.tripsOf(index.getPatterns().get(0)).size());
+    }
+}
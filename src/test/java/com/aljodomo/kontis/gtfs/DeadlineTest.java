@@ -0,0 +1,25 @@
+package com.aljodomo.kontis.gtfs;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+class DeadlineTest {
+
+    @Test
+    void testZeroBudgetNeverExpires() {
+        Assertions.assertSame(Deadline.NONE, Deadline.in(Duration.ZERO));
+        Assertions.assertFalse(Deadline.NONE.isExpired());
+    }
+
+    @Test
+    void testDeadlineExpiresAfterItsBudget() throws InterruptedException {
+        Deadline deadline = Deadline.in(Duration.ofMillis(20));
+        Assertions.assertFalse(deadline.isExpired());
+
+        Thread.sleep(40);
+
+        Assertions.assertTrue(deadline.isExpired());
+    }
+}
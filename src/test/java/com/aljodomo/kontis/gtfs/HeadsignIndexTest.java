@@ -0,0 +1,52 @@
+package com.aljodomo.kontis.gtfs;
+
+import com.aljodomo.kontis.nlp.MessageNormalizer;
+import com.aljodomo.kontis.nlp.WordSimilarityService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Trip;
+
+import java.util.List;
+
+class HeadsignIndexTest {
+
+    private final MessageNormalizer normalizer = new MessageNormalizer();
+    private final WordSimilarityService similarityService = new WordSimilarityService();
+
+    private static Trip trip(String id, String headsign) {
+        Trip trip = new Trip();
+        trip.setId(new AgencyAndId("1", id));
+        trip.setTripHeadsign(headsign);
+        return trip;
+    }
+
+    @Test
+    void testTripsWithTheSameHeadsignShareOneId() {
+        Trip first = trip("1", "S+U Rathaus Steglitz");
+        Trip second = trip("2", "S+U Rathaus Steglitz");
+        Trip back = trip("3", "U Osloer Straße");
+        Trip none = trip("4", null);
+
+        HeadsignIndex index = new HeadsignIndex(List.of(first, second, back, none), normalizer::normalize,
+                similarityService::profile);
+
+        Assertions.assertEquals(2, index.headsignCount());
+        Assertions.assertEquals(index.headsignOf(first), index.headsignOf(second));
+        Assertions.assertNotEquals(index.headsignOf(first), index.headsignOf(back));
+        Assertions.assertEquals(GtfsDictionary.NONE, index.headsignOf(none));
+        Assertions.assertEquals(normalizer.normalize("S+U Rathaus Steglitz"), index.key(index.headsignOf(first)));
+    }
+
+    @Test
+    void testProfileScoresLikeTheFeature() {
+        HeadsignIndex index = new HeadsignIndex(List.of(trip("1", "Rathaus Steglitz")), normalizer::normalize,
+                similarityService::profile);
+        String message = normalizer.normalize("U9 richtung Rathaus Steglitz");
+
+        int headsign = index.headsignOf(trip("1", "Rathaus Steglitz"));
+
+        Assertions.assertEquals(similarityService.score(index.key(headsign), message),
+                similarityService.score(index.profile(headsign), similarityService.words(message)));
+    }
+}
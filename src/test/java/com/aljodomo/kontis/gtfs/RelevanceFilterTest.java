@@ -0,0 +1,55 @@
+package com.aljodomo.kontis.gtfs;
+
+import com.aljodomo.kontis.nlp.MessageNormalizer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class RelevanceFilterTest {
+
+    private final MessageNormalizer normalizer = new MessageNormalizer();
+    private final List<String> vocabulary = List.of("u9", "s41", "rathaus steglitz", "osloer strasse", "hansaplatz", "s", "u");
+
+    private RelevanceFilter filter(boolean shadow) {
+        PrefilterProps props = new PrefilterProps();
+        props.setEnabled(true);
+        props.setShadow(shadow);
+        return new RelevanceFilter(vocabulary, props);
+    }
+
+    private boolean isRelevant(RelevanceFilter filter, String message) {
+        return filter.isRelevant(normalizer.normalize(message));
+    }
+
+    @Test
+    void testReportsPass() {
+        RelevanceFilter filter = filter(false);
+
+        Assertions.assertTrue(isRelevant(filter, "U9 Hansaplatz richtung Osloer"));
+        Assertions.assertTrue(isRelevant(filter, "2 Kontrolleure Rathaus Steglitz"));
+        Assertions.assertTrue(isRelevant(filter, "Kontrolle in der S am Ring"));
+        // Misspelled
+        Assertions.assertTrue(isRelevant(filter, "kontrolle hansaplaz"));
+    }
+
+    @Test
+    void testChatterIsRejected() {
+        RelevanceFilter filter = filter(false);
+
+        Assertions.assertFalse(isRelevant(filter, "Danke euch allen"));
+        Assertions.assertFalse(isRelevant(filter, ""));
+        Assertions.assertEquals(new RelevanceFilter.Stats(2, 2, 0), filter.getStats());
+    }
+
+    @Test
+    void testMissesAreCounted() {
+        RelevanceFilter filter = filter(true);
+
+        Assertions.assertFalse(isRelevant(filter, "Danke euch allen"));
+        filter.recordMiss();
+
+        Assertions.assertTrue(filter.isShadow());
+        Assertions.assertEquals(1, filter.getStats().getMissed());
+    }
+}
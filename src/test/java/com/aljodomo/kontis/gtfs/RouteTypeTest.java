@@ -0,0 +1,33 @@
+package com.aljodomo.kontis.gtfs;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RouteTypeTest {
+
+    @Test
+    void testExtendedRouteTypes() {
+        Assertions.assertEquals(RouteType.SuburbanRailwayService, RouteType.fromType(109));
+        Assertions.assertEquals(RouteType.RailwayService, RouteType.fromType(106));
+        Assertions.assertEquals(RouteType.UrbanRailwayService, RouteType.fromType(400));
+        Assertions.assertEquals(RouteType.BusService, RouteType.fromType(700));
+        Assertions.assertEquals(RouteType.TramService, RouteType.fromType(900));
+        Assertions.assertEquals(RouteType.UNKNOWN, RouteType.fromType(1000));
+        Assertions.assertEquals(RouteType.UNKNOWN, RouteType.fromType(-1));
+    }
+
+    @Test
+    void testBasicRouteTypes() {
+        Assertions.assertEquals(RouteType.TramService, RouteType.fromType(0));
+        Assertions.assertEquals(RouteType.UrbanRailwayService, RouteType.fromType(1));
+        Assertions.assertEquals(RouteType.BusService, RouteType.fromType(3));
+        Assertions.assertEquals(RouteType.UNKNOWN, RouteType.fromType(4));
+    }
+
+    @Test
+    void testCodeRoundTrip() {
+        for (RouteType routeType : RouteType.values()) {
+            Assertions.assertEquals(routeType, RouteType.fromCode(routeType.code()));
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.aljodomo.kontis.gtfs;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class TripPatternIndexTest {
+
+    private final Route route = route("U8");
+    private final List<Stop> stops = List.of(stop("A"), stop("B"), stop("C"));
+    private final GtfsDictionary dictionary = new GtfsDictionary(stops, List.of(route), List.of());
+    private final StationIndex stations = new StationIndex(dictionary);
+
+    private int nextStopTimeId = 1;
+
+    private static Route route(String name) {
+        Route route = new Route();
+        route.setId(new AgencyAndId("1", name));
+        route.setShortName(name);
+        return route;
+    }
+
+    private static Stop stop(String id) {
+        return stop(id, null);
+    }
+
+    private static Stop stop(String id, String parentStation) {
+        Stop stop = new Stop();
+        stop.setId(new AgencyAndId("1", id));
+        stop.setName(id);
+        stop.setParentStation(parentStation);
+        return stop;
+    }
+
+    private Trip trip(String id, String direction) {
+        return trip(id, direction, route);
+    }
+
+    private static Trip trip(String id, String direction, Route route) {
+        Trip trip = new Trip();
+        trip.setId(new AgencyAndId("1", id));
+        trip.setRoute(route);
+        trip.setDirectionId(direction);
+        return trip;
+    }
+
+    /**
+     * Two minutes between stops.
+     */
+    private List<StopTime> stopTimes(Trip trip, int start, Stop... tripStops) {
+        List<StopTime> stopTimes = new ArrayList<>();
+        for (int i = 0; i < tripStops.length; i++) {
+            StopTime stopTime = new StopTime();
+            stopTime.setId(nextStopTimeId++);
+            stopTime.setTrip(trip);
+            stopTime.setStop(tripStops[i]);
+            stopTime.setStopSequence(i + 1);
+            stopTime.setArrivalTime(start + i * 120);
+            stopTime.setDepartureTime(start + i * 120 + 30);
+            stopTimes.add(stopTime);
+        }
+        return stopTimes;
+    }
+
+    @Test
+    void testTripsWithSameStopsShareOnePattern() {
+        Trip first = trip("1", "0");
+        Trip second = trip("2", "0");
+        Trip back = trip("3", "1");
+        List<StopTime> stopTimes = new ArrayList<>();
+        stopTimes.addAll(stopTimes(first, 8 * 3600, stops.get(0), stops.get(1), stops.get(2)));
+        stopTimes.addAll(stopTimes(second, 9 * 3600, stops.get(0), stops.get(1), stops.get(2)));
+        stopTimes.addAll(stopTimes(back, 8 * 3600, stops.get(2), stops.get(1), stops.get(0)));
+
+        TripPatternIndex index = new TripPatternIndex(stopTimes, dictionary, stations);
+
+        Assertions.assertEquals(2, index.getPatterns().size());
+        PatternTrip firstTrip = index.patternTrip(first);
+        PatternTrip secondTrip = index.patternTrip(second);
+        Assertions.assertSame(firstTrip.getPattern(), secondTrip.getPattern());
+        Assertions.assertSame(firstTrip.getArrivalOffsets(), secondTrip.getArrivalOffsets());
+        Assertions.assertEquals(9 * 3600 + 240, secondTrip.arrival(2));
+
+        int b = stations.stationOf(dictionary.stopId("1_B"));
+        Assertions.assertEquals(2, index.patternsAt(b).length);
+    }
+
+    @Test
+    void testMaterializedStopTimeMatchesOriginal() {
+        Trip trip = trip("1", "0");
+        List<StopTime> stopTimes = stopTimes(trip, 8 * 3600, stops.get(0), stops.get(1), stops.get(2));
+
+        TripPatternIndex index = new TripPatternIndex(stopTimes, dictionary, stations);
+        StopTime original = stopTimes.get(1);
+        StopTime materialized = index.stopTime(index.patternTrip(trip), 1);
+
+        Assertions.assertEquals(original.getId(), materialized.getId());
+        Assertions.assertEquals(original, materialized);
+        Assertions.assertSame(trip, materialized.getTrip());
+        Assertions.assertSame(original.getStop(), materialized.getStop());
+        Assertions.assertEquals(original.getStopSequence(), materialized.getStopSequence());
+        Assertions.assertEquals(original.getArrivalTime(), materialized.getArrivalTime());
+        Assertions.assertEquals(original.getDepartureTime(), materialized.getDepartureTime());
+    }
+
+    @Test
+    void testPlatformsOfAStationAreFoundTogether() {
+        Stop platform1 = stop("P1", "station");
+        Stop platform2 = stop("P2", "station");
+        GtfsDictionary dictionary = new GtfsDictionary(List.of(platform1, platform2, stops.get(0)), List.of(route), List.of());
+        StationIndex stations = new StationIndex(dictionary);
+        Trip trip = trip("1", "0");
+        Trip back = trip("2", "1");
+        List<StopTime> stopTimes = new ArrayList<>();
+        stopTimes.addAll(stopTimes(trip, 8 * 3600, stops.get(0), platform1));
+        stopTimes.addAll(stopTimes(back, 8 * 3600, platform2, stops.get(0)));
+
+        TripPatternIndex index = new TripPatternIndex(stopTimes, dictionary, stations);
+
+        int station = stations.stationOf(dictionary.stopId("1_P1"));
+        Assertions.assertEquals(station, stations.stationOf(dictionary.stopId("1_P2")));
+        Assertions.assertEquals(2, stations.stationCount());
+        Assertions.assertEquals(2, index.patternsAt(station).length);
+    }
+
+    @Test
+    void testParentStationGroupsAndRepresentsItsPlatforms() {
+        Stop parent = stop("station");
+        Stop platform1 = stop("P1", "station");
+        Stop platform2 = stop("P2", "station");
+        GtfsDictionary dictionary = new GtfsDictionary(List.of(platform1, platform2, parent), List.of(route), List.of());
+        StationIndex stations = new StationIndex(dictionary);
+
+        int station = stations.stationOf(dictionary.stopId("1_P1"));
+        Assertions.assertEquals(1, stations.stationCount());
+        Assertions.assertEquals(station, stations.stationOf(dictionary.stopId("1_station")));
+        Assertions.assertEquals("1_station", stations.stationId(station));
+        Assertions.assertEquals(dictionary.stopId("1_station"), stations.representativeStop(station));
+    }
+
+    @Test
+    void testPlatformClosestToTheCenterRepresentsAStationWithoutParentRow() {
+        Stop west = stop("W", "station");
+        west.setLon(13.0);
+        Stop center = stop("C", "station");
+        center.setLon(13.11);
+        Stop east = stop("E", "station");
+        east.setLon(13.2);
+        GtfsDictionary dictionary = new GtfsDictionary(List.of(west, east, center), List.of(route), List.of());
+        StationIndex stations = new StationIndex(dictionary);
+
+        Assertions.assertEquals(dictionary.stopId("1_C"), stations.representativeStop(stations.stationOf(0)));
+    }
+
+    @Test
+    void testPatternsAtStationArePartitionedByRouteType() {
+        Route u8 = route("U8");
+        u8.setType(400);
+        Route s41 = route("S41");
+        s41.setType(109);
+        GtfsDictionary dictionary = new GtfsDictionary(stops, List.of(u8, s41), List.of());
+        StationIndex stations = new StationIndex(dictionary);
+
+        List<StopTime> stopTimes = new ArrayList<>();
+        stopTimes.addAll(stopTimes(trip("1", "0", u8), 8 * 3600, stops.get(0), stops.get(1)));
+        stopTimes.addAll(stopTimes(trip("2", "0", s41), 8 * 3600, stops.get(1), stops.get(2)));
+
+        TripPatternIndex index = new TripPatternIndex(stopTimes, dictionary, stations);
+        int b = stations.stationOf(dictionary.stopId("1_B"));
+
+        Assertions.assertEquals(2, index.patternsAt(b).length);
+        TripPatternIndex.PatternStop[] urban = index.patternsAt(b, RouteType.UrbanRailwayService);
+        Assertions.assertEquals(1, urban.length);
+        Assertions.assertEquals(u8, urban[0].getPattern().getRoute());
+        Assertions.assertEquals(RouteType.SuburbanRailwayService, index.patternsAt(b, RouteType.SuburbanRailwayService)[0].getPattern().getRouteType());
+        Assertions.assertEquals(0, index.patternsAt(b, RouteType.TramService).length);
+        Assertions.assertEquals(0, index.patternsAt(stations.stationOf(dictionary.stopId("1_C")), RouteType.UrbanRailwayService).length);
+    }
+}
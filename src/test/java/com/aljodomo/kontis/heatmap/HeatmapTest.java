@@ -0,0 +1,69 @@
+package com.aljodomo.kontis.heatmap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+class HeatmapTest {
+
+    private static final long NOW = 1_645_461_540L;
+
+    private final Heatmap heatmap = new Heatmap(3, Duration.ofMinutes(5), 4);
+
+    @Test
+    void testAdditionsAreVisibleAfterPublish() {
+        heatmap.add(1, NOW, 1.0);
+        heatmap.add(1, NOW + 10, 0.5);
+        Assertions.assertArrayEquals(new double[3], heatmap.weightsAt(NOW));
+
+        heatmap.publish();
+        Assertions.assertArrayEquals(new double[]{0, 1.5, 0}, heatmap.weightsAt(NOW));
+    }
+
+    @Test
+    void testReadsAreCopies() {
+        heatmap.add(0, NOW, 1.0);
+        heatmap.publish();
+
+        heatmap.weightsAt(NOW)[0] = 42;
+        Assertions.assertEquals(1.0, heatmap.weightsAt(NOW)[0]);
+    }
+
+    @Test
+    void testBucketsAreSeparated() {
+        heatmap.add(0, NOW, 1.0);
+        heatmap.add(2, NOW + Duration.ofMinutes(5).getSeconds(), 1.0);
+        heatmap.publish();
+
+        Assertions.assertArrayEquals(new double[]{1, 0, 0}, heatmap.weightsAt(NOW));
+        Assertions.assertArrayEquals(new double[]{0, 0, 1}, heatmap.weightsAt(NOW + Duration.ofMinutes(5).getSeconds()));
+    }
+
+    @Test
+    void testRecycledBucketStartsEmpty() {
+        long later = NOW + Duration.ofMinutes(20).getSeconds();
+        heatmap.add(0, NOW, 1.0);
+        heatmap.publish();
+        heatmap.add(1, later, 1.0);
+        heatmap.publish();
+
+        Assertions.assertArrayEquals(new double[]{0, 1, 0}, heatmap.weightsAt(later));
+        Assertions.assertArrayEquals(new double[3], heatmap.weightsAt(NOW), "Bucket was recycled");
+
+        heatmap.add(0, NOW, 1.0);
+        heatmap.publish();
+        Assertions.assertArrayEquals(new double[]{0, 1, 0}, heatmap.weightsAt(later), "Older bucket must be ignored");
+    }
+
+    @Test
+    void testBucketCountMustCoverTheLookAhead() {
+        HeatmapProps props = new HeatmapProps();
+        props.setLookAhead(Duration.ofMinutes(30));
+        props.setBucketSize(Duration.ofMinutes(5));
+        props.setBucketCount(6);
+
+        Assertions.assertEquals(7, HeatmapService.requiredBuckets(props));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new HeatmapService(props, null));
+    }
+}
@@ -0,0 +1,71 @@
+package com.aljodomo.kontis.nlp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prints the median and 99th percentile latency of {@link ParallelScorer#scoreAbove(List, String, double)}
+ * per candidate count and pool size. Run the main method; it is not part of the test suite.
+ * <pre>
+ * candidates  threads     p50 ms     p99 ms
+ * </pre>
+ *
+ * @author Aljoscha Domonell
+ */
+public class ParallelScorerBenchmark {
+
+    private static final String MESSAGE = "2 maennlich gelesen richtung rathaus steglitz alex raus";
+    private static final int WARMUP = 20;
+    private static final int RUNS = 100;
+
+    public static void main(String[] args) {
+        WordSimilarityService similarityService = new WordSimilarityService();
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("%10s %8s %10s %10s%n", "candidates", "threads", "p50 ms", "p99 ms");
+        for (int candidates : new int[]{128, 512, 1024, 2048, 4096, 8192}) {
+            List<String> features = features(candidates);
+            for (int threads = 1; threads <= cores; threads *= 2) {
+                // A threshold above the candidate count scores on the calling thread
+                ParallelScorer scorer = new ParallelScorer(similarityService, threads,
+                        threads == 1 ? Integer.MAX_VALUE : 0, 64);
+                long[] nanos = measure(scorer, features);
+                scorer.close();
+                System.out.printf("%10d %8d %10.2f %10.2f%n", candidates, threads,
+                        nanos[RUNS / 2] / 1e6, nanos[RUNS * 99 / 100] / 1e6);
+            }
+        }
+    }
+
+    private static long[] measure(ParallelScorer scorer, List<String> features) {
+        for (int i = 0; i < WARMUP; i++) {
+            scorer.scoreAbove(features, MESSAGE, Precision.HIGH);
+        }
+        long[] nanos = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            scorer.scoreAbove(features, MESSAGE, Precision.HIGH);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    /**
+     * Stop name like keys of one to three words.
+     */
+    private static List<String> features(int count) {
+        String[] words = {"alexander", "platz", "rathaus", "steglitz", "osloer", "strasse", "hansa", "bahnhof", "zoo",
+                "friedrich", "damm", "weg", "allee", "kirche", "markt", "park"};
+        List<String> features = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder feature = new StringBuilder(words[i % words.length]);
+            for (int w = 1; w <= i % 3; w++) {
+                feature.append(' ').append(words[(i / (w * words.length) + w * 7) % words.length]);
+            }
+            features.add(feature.toString());
+        }
+        return features;
+    }
+}
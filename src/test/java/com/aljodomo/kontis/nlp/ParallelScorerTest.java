@@ -0,0 +1,69 @@
+package com.aljodomo.kontis.nlp;
+
+import net.ricecode.similarity.SimilarityScore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+class ParallelScorerTest {
+
+    private final WordSimilarityService similarityService = new WordSimilarityService();
+    private final String message = "2 maennlich gelesen u9 richtung rathaus steglitz alex raus";
+
+    private static List<String> candidates(int count) {
+        List<String> base = List.of("alexanderplatz", "schlossstrasse", "rathaus steglitz", "berliner strasse", "osloer strasse");
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            candidates.add(i % 7 == 0 ? base.get(i % base.size()) : base.get(i % base.size()) + " " + i);
+        }
+        return candidates;
+    }
+
+    private List<String> expected(List<String> candidates) {
+        return similarityService.scoreAll(candidates, message).stream()
+                .filter(score -> score.getScore() > Precision.HIGH)
+                .map(score -> score.getKey() + "=" + score.getScore())
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> keysAndScores(List<SimilarityScore> scores) {
+        return scores.stream().map(score -> score.getKey() + "=" + score.getScore()).collect(Collectors.toList());
+    }
+
+    @Test
+    void testParallelResultsEqualSequentialScoring() {
+        ParallelScorer scorer = new ParallelScorer(similarityService, 4, 100, 16);
+        List<String> candidates = candidates(2000);
+
+        List<SimilarityScore> scores = scorer.scoreAbove(candidates, message, Precision.HIGH);
+        scorer.close();
+
+        Assertions.assertFalse(scores.isEmpty());
+        Assertions.assertEquals(expected(candidates), keysAndScores(scores));
+    }
+
+    @Test
+    void testSmallListsAreScoredOnTheCallingThread() {
+        Set<Thread> scoringThreads = ConcurrentHashMap.newKeySet();
+        WordSimilarityService recording = new WordSimilarityService() {
+            @Override
+            public double score(String feature, String target) {
+                scoringThreads.add(Thread.currentThread());
+                return super.score(feature, target);
+            }
+        };
+        ParallelScorer scorer = new ParallelScorer(recording, 4, 100, 16);
+        List<String> candidates = candidates(50);
+
+        List<SimilarityScore> scores = scorer.scoreAbove(candidates, message, Precision.HIGH);
+        scorer.close();
+
+        Assertions.assertEquals(expected(candidates), keysAndScores(scores));
+        Assertions.assertEquals(Set.of(Thread.currentThread()), scoringThreads);
+    }
+}
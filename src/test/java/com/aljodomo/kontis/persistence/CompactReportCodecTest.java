@@ -0,0 +1,55 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.gtfs.GtfsDictionary;
+import com.aljodomo.kontis.model.Coordinates;
+import com.aljodomo.kontis.model.Report;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Stop;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+
+class CompactReportCodecTest {
+
+    private static final ZonedDateTime TIME = ZonedDateTime.of(LocalDateTime.parse("2022-02-21T17:39:00"),
+            ZoneId.of("Europe/Berlin"));
+
+    @Test
+    void testReportOfKnownStopIsStoredAsIds() {
+        Stop stop = new Stop();
+        stop.setId(new AgencyAndId("1", "070201083201"));
+        stop.setName("U Hansaplatz (Berlin)");
+        stop.setLat(52.518);
+        stop.setLon(13.342);
+        Route route = new Route();
+        route.setId(new AgencyAndId("1", "17463_400"));
+        route.setShortName("U9");
+        CompactReportCodec codec = new CompactReportCodec(new GtfsDictionary(List.of(stop), List.of(route), List.of()));
+
+        Report report = new Report("U9 Hansaplatz", TIME, stop, "U9");
+        CompactReport compact = codec.encode(report);
+
+        Assertions.assertTrue(compact.isCoordinatesOfStop());
+        Assertions.assertNull(compact.getTitle());
+        Assertions.assertNull(compact.getStopName());
+        Assertions.assertNull(compact.getStopId());
+        Assertions.assertNull(compact.getRouteNameText());
+        Assertions.assertEquals(report, codec.decode(compact));
+    }
+
+    @Test
+    void testUnknownValuesAreKept() {
+        CompactReportCodec codec = new CompactReportCodec(GtfsDictionary.empty());
+
+        Report report = new Report(UUID.randomUUID(), "Custom title", "message", new Coordinates(52.4875, 13.425),
+                TIME, "route", "M10", "stop", "Hermannplatz", "trip", 42);
+
+        Assertions.assertEquals(report, codec.decode(codec.encode(report)));
+    }
+}
@@ -0,0 +1,111 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Coordinates;
+import com.aljodomo.kontis.model.Report;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class GroupCommitWriterTest {
+
+    /**
+     * Local stand-in for Firestore that fails the first {@code failures} batches.
+     */
+    static class StandInSink implements ReportBatchSink {
+        final List<List<Report>> batches = new ArrayList<>();
+        int failures;
+
+        StandInSink(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public synchronized void write(List<Report> reports) throws Exception {
+            if (failures > 0) {
+                failures--;
+                throw new Exception("Firestore unavailable");
+            }
+            batches.add(new ArrayList<>(reports));
+        }
+    }
+
+    private static Report report(int i) {
+        return new Report("message " + i, ZonedDateTime.now(), new Coordinates(52.5, 13.4), "Stop " + i);
+    }
+
+    @Test
+    void testReportsAreGroupedIntoBatches() throws Exception {
+        StandInSink sink = new StandInSink(0);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (var writer = new GroupCommitWriter(sink, 10, Duration.ofSeconds(1), 1, Duration.ZERO)) {
+            for (int i = 0; i < 25; i++) {
+                futures.add(writer.submit(report(i)));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        }
+
+        Assertions.assertEquals(25, sink.batches.stream().mapToInt(List::size).sum());
+        Assertions.assertTrue(sink.batches.size() >= 3, "Batches must not exceed the max size");
+        sink.batches.forEach(batch -> Assertions.assertTrue(batch.size() <= 10));
+    }
+
+    @Test
+    void testBatchIsFlushedAfterMaxDelay() throws Exception {
+        StandInSink sink = new StandInSink(0);
+        try (var writer = new GroupCommitWriter(sink, 100, Duration.ofMillis(20), 1, Duration.ZERO)) {
+            writer.submit(report(0)).get(5, TimeUnit.SECONDS);
+        }
+
+        Assertions.assertEquals(1, sink.batches.size());
+    }
+
+    @Test
+    void testFailedBatchIsRetried() throws Exception {
+        StandInSink sink = new StandInSink(2);
+        try (var writer = new GroupCommitWriter(sink, 10, Duration.ofMillis(5), 3, Duration.ofMillis(1))) {
+            writer.submit(report(0)).get(5, TimeUnit.SECONDS);
+        }
+
+        Assertions.assertEquals(1, sink.batches.size());
+    }
+
+    @Test
+    void testFutureFailsAfterMaxAttempts() throws Exception {
+        StandInSink sink = new StandInSink(3);
+        try (var writer = new GroupCommitWriter(sink, 10, Duration.ofMillis(5), 3, Duration.ofMillis(1))) {
+            CompletableFuture<Void> future = writer.submit(report(0));
+            Assertions.assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        }
+
+        Assertions.assertTrue(sink.batches.isEmpty());
+    }
+
+    @Test
+    void testCloseFlushesQueuedReports() throws Exception {
+        StandInSink sink = new StandInSink(0);
+        CompletableFuture<Void> future;
+        try (var writer = new GroupCommitWriter(sink, 100, Duration.ofSeconds(10), 1, Duration.ZERO)) {
+            future = writer.submit(report(0));
+        }
+
+        Assertions.assertTrue(future.isDone());
+        Assertions.assertFalse(future.isCompletedExceptionally());
+    }
+
+    @Test
+    void testSubmitAfterCloseIsRejected() {
+        GroupCommitWriter writer = new GroupCommitWriter(new StandInSink(0), 100, Duration.ofSeconds(10), 1, Duration.ZERO);
+        writer.close();
+
+        CompletableFuture<Void> future = writer.submit(report(0));
+
+        Assertions.assertTrue(future.isCompletedExceptionally());
+    }
+}
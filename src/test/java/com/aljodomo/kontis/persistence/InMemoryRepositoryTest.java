@@ -0,0 +1,139 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Area;
+import com.aljodomo.kontis.model.Coordinates;
+import com.aljodomo.kontis.model.Report;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class InMemoryRepositoryTest {
+
+    private final ZonedDateTime start = ZonedDateTime.of(LocalDateTime.parse("2022-02-21T17:39:00"), ZoneId.of("Europe/Berlin"));
+
+    private Report report(int minutes, String stopName, String routeName) {
+        return new Report("message", start.plusMinutes(minutes), new Coordinates(52.5, 13.4), stopName, routeName);
+    }
+
+    @Test
+    void testFindById() {
+        var repository = new InMemoryRepository(10, Duration.ZERO);
+        Report report = report(0, "Hansaplatz", "U9");
+        repository.create(report);
+
+        Assertions.assertEquals(report, repository.findById(report.getId().toString()));
+        Assertions.assertNull(repository.findById("not-a-uuid"));
+    }
+
+    @Test
+    void testReportWithSameIdIsReplaced() {
+        var repository = new InMemoryRepository(2, Duration.ZERO);
+        Report partial = report(0, "Hansaplatz", null);
+        repository.create(partial);
+        Report other = report(1, "Hermannplatz", "U8");
+        repository.create(other);
+
+        Report complete = new Report(partial.getId(), "U9 Hansaplatz", "message", partial.getCoordinates(),
+                partial.getTime(), null, "U9", null, "Hansaplatz", null, null);
+        repository.create(complete);
+
+        Assertions.assertEquals(2, repository.size());
+        Assertions.assertEquals(complete, repository.findById(partial.getId().toString()));
+        Assertions.assertEquals(List.of(complete), repository.findByRouteName("U9", start, start.plusHours(1)));
+        Assertions.assertEquals(1, repository.findRecent(new Area(new Coordinates(52.5, 13.4), 1_000), start)
+                .filter(r -> r.getId().equals(partial.getId()))
+                .count());
+
+        // The replaced report keeps its position in the ring
+        repository.create(report(2, "Hansaplatz", "U9"));
+        Assertions.assertNull(repository.findById(partial.getId().toString()));
+        Assertions.assertEquals(other, repository.findById(other.getId().toString()));
+    }
+
+    @Test
+    void testOldestReportIsDroppedWhenFull() {
+        var repository = new InMemoryRepository(2, Duration.ZERO);
+        Report first = report(0, "Hansaplatz", "U9");
+        repository.create(first);
+        repository.create(report(1, "Hansaplatz", "U9"));
+        repository.create(report(2, "Hansaplatz", "U9"));
+
+        Assertions.assertEquals(2, repository.size());
+        Assertions.assertNull(repository.findById(first.getId().toString()));
+        Assertions.assertEquals(2, repository.findByRouteName("U9", start, start.plusHours(1)).size());
+    }
+
+    @Test
+    void testExpiredReportsAreDropped() {
+        var repository = new InMemoryRepository(10, Duration.ofMinutes(30));
+        Report old = report(0, "Hansaplatz", "U9");
+        repository.create(old);
+        repository.create(report(20, "Hansaplatz", "U9"));
+        repository.create(report(45, "Hansaplatz", "U9"));
+
+        Assertions.assertEquals(2, repository.size());
+        Assertions.assertNull(repository.findById(old.getId().toString()));
+    }
+
+    @Test
+    void testReportsExpireAgainstTheNewestReport() {
+        var repository = new InMemoryRepository(10, Duration.ofMinutes(30));
+        repository.create(report(50, "Hansaplatz", "U9"));
+        // Out of order and behind a newer head
+        Report late = report(25, "Hansaplatz", "U9");
+        repository.create(late);
+        Report older = report(0, "Hansaplatz", "U9");
+        repository.create(older);
+
+        Assertions.assertNull(repository.findById(older.getId().toString()), "An old insert must not lower the limit");
+        Assertions.assertNotNull(repository.findById(late.getId().toString()));
+
+        repository.create(report(60, "Hansaplatz", "U9"));
+
+        Assertions.assertNull(repository.findById(late.getId().toString()));
+        Assertions.assertTrue(repository.findByRouteName("U9", start, start.plusHours(2)).stream()
+                .noneMatch(report -> report.getId().equals(late.getId())));
+        Assertions.assertEquals(2, repository.size(), "Expired reports behind a newer head are evicted by the sweep");
+    }
+
+    @Test
+    void testFindByRouteNameInTimeRange() {
+        var repository = new InMemoryRepository(10, Duration.ZERO);
+        repository.create(report(20, "Hansaplatz", "U9"));
+        repository.create(report(0, "Hansaplatz", "U9"));
+        repository.create(report(10, "Hermannplatz", "U8"));
+        repository.create(report(40, "Zoologischer Garten", "U9"));
+
+        List<ZonedDateTime> times = repository.findByRouteName("U9", start, start.plusMinutes(30))
+                .stream()
+                .map(Report::getTime)
+                .collect(Collectors.toList());
+
+        Assertions.assertEquals(List.of(start, start.plusMinutes(20)), times);
+        Assertions.assertTrue(repository.findByRouteName("S1", start, start.plusHours(1)).isEmpty());
+    }
+
+    @Test
+    void testFindRecentInArea() {
+        var repository = new InMemoryRepository(10, Duration.ZERO);
+        Coordinates hermannplatz = new Coordinates(52.4868, 13.4247);
+        Coordinates zoo = new Coordinates(52.5067, 13.3325);
+        Report near = new Report("message", start.plusMinutes(25), new Coordinates(52.4875, 13.4250), "Hermannplatz", "U8");
+        Report tooOld = new Report("message", start, hermannplatz, "Hermannplatz", "U8");
+        Report tooFar = new Report("message", start.plusMinutes(25), zoo, "Zoologischer Garten", "U9");
+        repository.create(near);
+        repository.create(tooOld);
+        repository.create(tooFar);
+
+        List<Report> found = repository.findRecent(new Area(hermannplatz, 500), start.plusMinutes(30).minusMinutes(10))
+                .collect(Collectors.toList());
+
+        Assertions.assertEquals(List.of(near), found);
+    }
+}
@@ -0,0 +1,50 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Coordinates;
+import com.aljodomo.kontis.model.Report;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+
+class ReportCacheTest {
+
+    private static Report report(int i) {
+        return new Report("message " + i, ZonedDateTime.now(), new Coordinates(52.5, 13.4), "Stop " + i);
+    }
+
+    @Test
+    void testReadStartedBeforeAnInvalidationIsNotCached() {
+        ReportCache cache = new ReportCache(10, Duration.ofMinutes(15));
+        Report report = report(1);
+        String id = report.getId().toString();
+
+        long stamp = cache.stamp();
+        // A write of the report completes while the read is in flight
+        cache.invalidate(id);
+        cache.put(report, stamp);
+        Assertions.assertNull(cache.get(id));
+
+        cache.put(report, cache.stamp());
+        Assertions.assertSame(report, cache.get(id));
+    }
+
+    @Test
+    void testReadsStartedBeforeEvictedInvalidationsAreNotCached() {
+        ReportCache cache = new ReportCache(2, Duration.ofMinutes(15));
+        Report report = report(1);
+
+        long stamp = cache.stamp();
+        cache.invalidate(report.getId().toString());
+        for (int i = 2; i <= 4; i++) {
+            cache.invalidate(report(i).getId().toString());
+        }
+        cache.put(report, stamp);
+        Assertions.assertNull(cache.get(report.getId().toString()));
+
+        Report unrelated = report(5);
+        cache.put(unrelated, cache.stamp());
+        Assertions.assertSame(unrelated, cache.get(unrelated.getId().toString()));
+    }
+}
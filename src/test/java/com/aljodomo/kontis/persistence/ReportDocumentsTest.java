@@ -0,0 +1,55 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Coordinates;
+import com.aljodomo.kontis.model.Report;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+class ReportDocumentsTest {
+
+    private final ObjectMapper mapper = new JavaTimeApiConfiguration().objectMapper();
+
+    @Test
+    void testWrittenDocumentIsReadBack() {
+        ZonedDateTime time = ZonedDateTime.of(LocalDateTime.parse("2022-02-21T17:39:00"), ZoneId.of("Europe/Berlin"));
+        Report report = new Report(UUID.randomUUID(), "U9 U Hansaplatz (Berlin)", "U9 Hansaplatz richtung Osloer",
+                new Coordinates(52.518, 13.342), time, "17463_400", "U9", "070201083201", "U Hansaplatz (Berlin)",
+                "188924406", 1362073);
+
+        Map<String, Object> data = mapper.convertValue(report, new TypeReference<Map<String, Object>>() {
+        });
+        // Firestore returns integers as long
+        data = new HashMap<>(data);
+        data.put("stopTimeId", 1362073L);
+
+        Report read = ReportDocuments.toReport(data);
+
+        Assertions.assertTrue(time.isEqual(read.getTime()));
+        Assertions.assertEquals(report, new Report(read.getId(), read.getTitle(), read.getOriginalMessage(),
+                read.getCoordinates(), time, read.getRouteId(), read.getRouteName(), read.getStopId(),
+                read.getStopName(), read.getTripId(), read.getStopTimeId()));
+    }
+
+    @Test
+    void testDocumentHasTheFieldsJacksonWrites() {
+        ZonedDateTime time = ZonedDateTime.of(LocalDateTime.parse("2022-02-21T17:39:00"), ZoneId.of("Europe/Berlin"));
+        Report report = new Report(UUID.randomUUID(), "U9 U Hansaplatz (Berlin)", "U9 Hansaplatz richtung Osloer",
+                new Coordinates(52.518, 13.342), time, "17463_400", "U9", "070201083201", "U Hansaplatz (Berlin)",
+                null, null);
+
+        Map<String, Object> expected = new HashMap<>(mapper.convertValue(report, new TypeReference<Map<String, Object>>() {
+        }));
+        expected.putAll(ReportDocuments.indexFields(report));
+
+        Assertions.assertEquals(expected, ReportDocuments.toDocument(report));
+    }
+}
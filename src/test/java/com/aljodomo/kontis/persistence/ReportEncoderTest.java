@@ -0,0 +1,108 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Coordinates;
+import com.aljodomo.kontis.model.Report;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+class ReportEncoderTest {
+
+    private static final String GOLDEN_FILE = "/persistence/reports.golden.jsonl";
+
+    private final ObjectMapper mapper = new JavaTimeApiConfiguration().objectMapper();
+
+    @Test
+    void testJsonEqualsGoldenFile() throws IOException {
+        List<String> golden = golden();
+        List<Report> reports = reports();
+
+        Assertions.assertEquals(golden.size(), reports.size());
+        for (int i = 0; i < reports.size(); i++) {
+            Assertions.assertEquals(golden.get(i), new String(ReportEncoder.toJson(reports.get(i)), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testJsonEqualsJackson() throws IOException {
+        for (Report report : reports()) {
+            Assertions.assertArrayEquals(mapper.writeValueAsString(report).getBytes(StandardCharsets.UTF_8),
+                    ReportEncoder.toJson(report));
+        }
+    }
+
+    @Test
+    void testJsonIsReadBackByJackson() throws IOException {
+        for (Report report : reports()) {
+            Report read = mapper.readValue(ReportEncoder.toJson(report), Report.class);
+
+            Assertions.assertEquals(report.getId(), read.getId());
+            Assertions.assertEquals(report.getStopTimeId(), read.getStopTimeId());
+            Assertions.assertEquals(report.getCoordinates(), read.getCoordinates());
+        }
+    }
+
+    @Test
+    void testMapEqualsJackson() {
+        for (Report report : reports()) {
+            Map<String, Object> expected = mapper.convertValue(report, new TypeReference<Map<String, Object>>() {
+            });
+
+            Assertions.assertEquals(expected, ReportEncoder.toMap(report));
+        }
+    }
+
+    @Test
+    void testBufferGrows() {
+        Report report = new Report(UUID.randomUUID(), "S41", "ä\n".repeat(1_000), new Coordinates(52.5, 13.4),
+                ZonedDateTime.now(), null, "S41", null, "Westkreuz", null, null);
+        ReportEncoder.JsonBuffer buffer = new ReportEncoder.JsonBuffer(0);
+
+        ReportEncoder.writeJson(report, buffer);
+        ReportEncoder.writeJson(report, buffer);
+
+        Assertions.assertEquals(2 * ReportEncoder.toJson(report).length, buffer.size());
+    }
+
+    private static List<String> golden() throws IOException {
+        try (InputStream in = ReportEncoderTest.class.getResourceAsStream(GOLDEN_FILE)) {
+            Assertions.assertNotNull(in, GOLDEN_FILE);
+            return List.of(new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n"));
+        }
+    }
+
+    /**
+     * Appending reports invalidates the golden file.
+     */
+    private static List<Report> reports() {
+        ZonedDateTime berlin = ZonedDateTime.of(LocalDateTime.parse("2022-02-21T17:39:00"), ZoneId.of("Europe/Berlin"));
+        ZonedDateTime utc = ZonedDateTime.of(LocalDateTime.parse("2022-07-01T06:05:04.123456789"), ZoneOffset.UTC);
+        return List.of(
+                new Report(UUID.fromString("0f8fad5b-d9cb-469f-a165-70867728950e"), "U9 U Hansaplatz (Berlin)",
+                        "U9 Hansaplatz richtung Osloer", new Coordinates(52.518, 13.342), berlin, "17463_400", "U9",
+                        "070201083201", "U Hansaplatz (Berlin)", "188924406", 1362073),
+                new Report(UUID.fromString("7c9e6679-7425-40de-944b-e07fc1f90ae7"), "S41 Westkreuz",
+                        "S41 \"Westkreuz\" \\ 2 Kontrolleure\n\tblaue Westen\r\b\f\u0001\u001f", new Coordinates(-0.0, 1e-7),
+                        utc, null, "S41", null, "Westkreuz", null, null),
+                new Report(UUID.fromString("9b2c1e7a-3f1d-4c5e-8a6b-2d4f6e8a0c1b"), "M10 Straßmannstraße",
+                        "M10 Straßmannstraße → Warschauer 👮👮 ü   \uD83D", new Coordinates(1.0E10, 123456.789),
+                        berlin.withZoneSameInstant(ZoneId.of("America/New_York")), "19_900", "M10", "900000120004",
+                        "Straßmannstraße", "1", -1),
+                new Report(UUID.fromString("00000000-0000-0000-0000-000000000000"), null, "", null, null, null,
+                        null, null, null, null, 0),
+                new Report(UUID.fromString("ffffffff-ffff-ffff-ffff-ffffffffffff"), "Bus", "Bus",
+                        new Coordinates(Double.NaN, Double.NEGATIVE_INFINITY), berlin, null, null, null, null, null, null));
+    }
+}
@@ -0,0 +1,157 @@
+package com.aljodomo.kontis.persistence;
+
+import com.aljodomo.kontis.model.Coordinates;
+import com.aljodomo.kontis.model.Report;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class ReportOutboxTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper mapper = new JavaTimeApiConfiguration().objectMapper();
+
+    /**
+     * Remote store that can be switched off to simulate an outage.
+     */
+    static class StandInTarget implements AsyncReportRepository {
+        final Map<String, Report> reports = new ConcurrentHashMap<>();
+        volatile boolean available = true;
+
+        @Override
+        public CompletableFuture<Void> createAsync(Report report) {
+            return createAllAsync(List.of(report));
+        }
+
+        @Override
+        public CompletableFuture<Void> createAllAsync(Collection<Report> reports) {
+            if (!available) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Firestore unavailable"));
+            }
+            reports.forEach(report -> this.reports.put(report.getId().toString(), report));
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public CompletableFuture<Report> findByIdAsync(String id) {
+            return CompletableFuture.completedFuture(reports.get(id));
+        }
+
+        @Override
+        public CompletableFuture<List<Report>> findAllByIdAsync(Collection<String> ids) {
+            return CompletableFuture.completedFuture(ids.stream()
+                    .map(reports::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    private OutboxProps props() {
+        OutboxProps props = new OutboxProps();
+        props.setDirectory(directory.toString());
+        props.setSegmentMaxBytes(512);
+        props.setFsyncInterval(Duration.ofMillis(10));
+        props.setRetryBackoff(Duration.ofMillis(10));
+        return props;
+    }
+
+    private static Report report(int i) {
+        return new Report("message " + i, ZonedDateTime.now(), new Coordinates(52.5, 13.4), "Stop " + i, "U" + i);
+    }
+
+    private static void awaitShipped(StandInTarget target, int count) throws InterruptedException {
+        for (int i = 0; i < 500 && target.reports.size() < count; i++) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(count, target.reports.size(), "Not all reports were shipped");
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void testAppendedReportsAreShipped() throws Exception {
+        StandInTarget target = new StandInTarget();
+        try (var outbox = new ReportOutbox(props(), target, mapper)) {
+            for (int i = 0; i < 20; i++) {
+                outbox.append(report(i));
+            }
+            awaitShipped(target, 20);
+            // Shipped reports are released once the target acknowledged them
+            for (int i = 0; i < 500 && outbox.pendingCount() > 0; i++) {
+                Thread.sleep(10);
+            }
+            Assertions.assertEquals(0, outbox.pendingCount());
+        }
+
+        Assertions.assertEquals(1, segmentCount(), "Drained segments must be deleted");
+    }
+
+    @Test
+    void testReportsAreKeptDuringOutage() throws Exception {
+        StandInTarget target = new StandInTarget();
+        target.available = false;
+        try (var outbox = new ReportOutbox(props(), target, mapper)) {
+            Report report = report(0);
+            outbox.append(report);
+            Thread.sleep(50);
+
+            Assertions.assertEquals(report, outbox.findPending(report.getId()));
+
+            target.available = true;
+            awaitShipped(target, 1);
+            Assertions.assertNull(outbox.findPending(report.getId()));
+        }
+    }
+
+    @Test
+    void testUnshippedReportsAreReplayedOnStartup() throws Exception {
+        StandInTarget offline = new StandInTarget();
+        offline.available = false;
+        try (var outbox = new ReportOutbox(props(), offline, mapper)) {
+            for (int i = 0; i < 10; i++) {
+                outbox.append(report(i));
+            }
+        }
+        Assertions.assertTrue(segmentCount() > 1);
+
+        StandInTarget online = new StandInTarget();
+        try (var outbox = new ReportOutbox(props(), online, mapper)) {
+            awaitShipped(online, 10);
+        }
+        Assertions.assertEquals("message 3", online.reports.values().stream()
+                .filter(report -> report.getRouteName().equals("U3"))
+                .findFirst().orElseThrow().getOriginalMessage());
+    }
+
+    @Test
+    void testTornRecordIsSkipped() throws Exception {
+        Files.writeString(directory.resolve("outbox-00000000000000000001.log"),
+                mapper.writeValueAsString(report(0)) + "\n{\"id\":\"1234");
+
+        StandInTarget target = new StandInTarget();
+        try (var outbox = new ReportOutbox(props(), target, mapper)) {
+            awaitShipped(target, 1);
+        }
+    }
+}
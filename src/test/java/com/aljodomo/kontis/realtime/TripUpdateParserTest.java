@@ -0,0 +1,215 @@
+package com.aljodomo.kontis.realtime;
+
+import com.aljodomo.kontis.gtfs.DelayOverlay;
+import com.aljodomo.kontis.gtfs.GtfsDictionary;
+import com.aljodomo.kontis.gtfs.StationIndex;
+import com.aljodomo.kontis.gtfs.TripPatternIndex;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.onebusaway.gtfs.model.AgencyAndId;
+import org.onebusaway.gtfs.model.Route;
+import org.onebusaway.gtfs.model.Stop;
+import org.onebusaway.gtfs.model.StopTime;
+import org.onebusaway.gtfs.model.Trip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class TripUpdateParserTest {
+
+    /**
+     * Writes a message of the given fields. Values are either integers or nested messages.
+     */
+    private static byte[] message(Object... fieldsAndValues) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        for (int i = 0; i < fieldsAndValues.length; i += 2) {
+            int field = (int) fieldsAndValues[i];
+            Object value = fieldsAndValues[i + 1];
+            if (value instanceof Integer) {
+                out.writeInt32(field, (int) value);
+            } else if (value instanceof String) {
+                out.writeString(field, (String) value);
+            } else {
+                out.writeBytes(field, ByteString.copyFrom((byte[]) value));
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] tripUpdate(String tripId, Object... stopTimeUpdatesAndDelay) throws IOException {
+        List<Object> fields = new ArrayList<>(List.of(1, message(1, tripId, 3, "20220221")));
+        fields.addAll(List.of(stopTimeUpdatesAndDelay));
+        return message(1, "entity-" + tripId, 3, message(fields.toArray()));
+    }
+
+    private static byte[] stopTimeUpdate(int stopSequence, int arrivalDelay) throws IOException {
+        return message(1, stopSequence, 4, "stop", 2, message(1, arrivalDelay, 2, 1645461540));
+    }
+
+    /**
+     * Stop time update without stop sequence and with a predicted departure time only.
+     */
+    private static byte[] stopTimeUpdate(String stopId, int departureTime) throws IOException {
+        return message(4, stopId, 3, message(2, departureTime));
+    }
+
+    private static Stop stop(String id) {
+        Stop stop = new Stop();
+        stop.setId(new AgencyAndId("1", id));
+        stop.setName(id);
+        return stop;
+    }
+
+    /**
+     * Trip {@code 100} serving the stops A to D from 08:00 on the 21st of February 2022,
+     * two minutes between stops with a stop sequence of 10 times the position.
+     */
+    private static class Timetable {
+        final List<Stop> stops = List.of(stop("A"), stop("B"), stop("C"), stop("D"));
+        final Trip trip = new Trip();
+        final GtfsDictionary dictionary;
+        final TripPatternIndex patternIndex;
+        final DelayOverlay delays;
+        final RealtimeService service;
+        final int tripId;
+
+        Timetable() throws IOException {
+            Route route = new Route();
+            route.setId(new AgencyAndId("1", "U8"));
+            route.setShortName("U8");
+            trip.setId(new AgencyAndId("1", "100"));
+            trip.setRoute(route);
+            trip.setDirectionId("0");
+
+            List<StopTime> stopTimes = new ArrayList<>();
+            for (int i = 0; i < stops.size(); i++) {
+                StopTime stopTime = new StopTime();
+                stopTime.setId(i + 1);
+                stopTime.setTrip(trip);
+                stopTime.setStop(stops.get(i));
+                stopTime.setStopSequence(10 * (i + 1));
+                stopTime.setArrivalTime(8 * 3600 + i * 120);
+                stopTime.setDepartureTime(8 * 3600 + i * 120 + 30);
+                stopTimes.add(stopTime);
+            }
+            dictionary = new GtfsDictionary(stops, List.of(route), List.of(trip));
+            patternIndex = new TripPatternIndex(stopTimes, dictionary, new StationIndex(dictionary));
+            delays = new DelayOverlay(dictionary.tripCount());
+            service = new RealtimeService(new URL("file:/dev/null"), dictionary, patternIndex, delays);
+            tripId = dictionary.tripId(trip.getId().toString());
+        }
+
+        /**
+         * Delays at the stops A to D.
+         */
+        List<Integer> delays() {
+            return List.of(10, 20, 30, 40).stream()
+                    .map(sequence -> delays.delayAt(tripId, sequence))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static byte[] feed(byte[]... entities) throws IOException {
+        List<Object> fields = new ArrayList<>(List.of(1, message(1, "2.0", 3, 1645461540)));
+        for (byte[] entity : entities) {
+            fields.add(2);
+            fields.add(entity);
+        }
+        return message(fields.toArray());
+    }
+
+    @Test
+    void testDelaysAreReadFromTheFeedFile() throws IOException {
+        Path file = Files.createTempFile("trip-updates", ".pb");
+        Files.write(file, feed(
+                tripUpdate("100", 2, stopTimeUpdate(3, 120), 2, stopTimeUpdate(4, 300)),
+                tripUpdate("200", 5, -60),
+                tripUpdate("300")));
+
+        List<String> delays = new ArrayList<>();
+        int count;
+        try (InputStream in = Files.newInputStream(file)) {
+            count = TripUpdateParser.parse(in, update -> {
+                delays.add(update.getTripId() + "=" + update.getDelaySeconds());
+                update.getStopTimeUpdates().forEach(stopTimeUpdate -> delays.add(update.getTripId() + "@"
+                        + stopTimeUpdate.getStopSequence() + "=" + stopTimeUpdate.getArrival().getDelaySeconds()));
+            });
+        } finally {
+            Files.delete(file);
+        }
+
+        Assertions.assertEquals(2, count);
+        Assertions.assertEquals(List.of("100=" + TripUpdateParser.NONE, "100@3=120", "100@4=300", "200=-60"), delays);
+    }
+
+    @Test
+    void testEveryStopTimeUpdateAppliesFromItsStop() throws IOException {
+        Timetable timetable = new Timetable();
+
+        timetable.service.apply(new ByteArrayInputStream(feed(
+                tripUpdate("100", 2, stopTimeUpdate(20, 60), 2, stopTimeUpdate(40, 180)))));
+
+        Assertions.assertEquals(List.of(0, 60, 60, 180), timetable.delays());
+    }
+
+    @Test
+    void testStopIdAndTimeAreResolvedAgainstTheSchedule() throws IOException {
+        Timetable timetable = new Timetable();
+        // Departure at C is scheduled for 08:04:30
+        int departureAtC = (int) LocalDate.of(2022, 2, 21).atTime(8, 4, 30)
+                .atZone(ZoneId.of("Europe/Berlin")).toEpochSecond();
+
+        timetable.service.apply(new ByteArrayInputStream(feed(
+                tripUpdate("100", 5, 30, 2, stopTimeUpdate("C", departureAtC + 240), 2, stopTimeUpdate("X", departureAtC)))));
+
+        Assertions.assertEquals(List.of(30, 30, 240, 240), timetable.delays());
+    }
+
+    @Test
+    void testTripsMissingFromTheFeedAreBackOnSchedule() throws IOException {
+        Timetable timetable = new Timetable();
+        timetable.service.apply(new ByteArrayInputStream(feed(tripUpdate("100", 5, 120))));
+        Assertions.assertEquals(List.of(120, 120, 120, 120), timetable.delays());
+
+        timetable.service.apply(new ByteArrayInputStream(feed(tripUpdate("200", 5, 60))));
+
+        Assertions.assertEquals(List.of(0, 0, 0, 0), timetable.delays());
+    }
+
+    @Test
+    void testOverlayAppliesFromTheStopSequence() {
+        DelayOverlay overlay = new DelayOverlay(3);
+
+        overlay.update(1, 3, 120);
+        overlay.update(2, 0, -60);
+
+        Assertions.assertEquals(0, overlay.delayAt(0, 5));
+        Assertions.assertEquals(0, overlay.delayAt(1, 2));
+        Assertions.assertEquals(120, overlay.delayAt(1, 3));
+        Assertions.assertEquals(-60, overlay.delayAt(2, 1));
+        Assertions.assertEquals(60, overlay.maxEarliness());
+
+        overlay.clear(1);
+        Assertions.assertEquals(0, overlay.delayAt(1, 3));
+
+        overlay.update(0, new int[]{2, 5}, new int[]{60, -30});
+        Assertions.assertEquals(0, overlay.delayAt(0, 1));
+        Assertions.assertEquals(60, overlay.delayAt(0, 4));
+        Assertions.assertEquals(-30, overlay.delayAt(0, 5));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> overlay.update(0, new int[]{5, 2}, new int[]{1, 2}));
+    }
+}
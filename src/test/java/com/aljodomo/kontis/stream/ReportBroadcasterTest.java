@@ -0,0 +1,225 @@
+package com.aljodomo.kontis.stream;
+
+import com.aljodomo.kontis.model.Area;
+import com.aljodomo.kontis.model.Coordinates;
+import com.aljodomo.kontis.model.Report;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class ReportBroadcasterTest {
+
+    private final ReportBroadcaster broadcaster = new ReportBroadcaster(props());
+
+    @AfterEach
+    void close() {
+        broadcaster.close();
+    }
+
+    private static StreamProps props() {
+        StreamProps props = new StreamProps();
+        props.setBufferSize(4);
+        props.setWriterThreads(2);
+        return props;
+    }
+
+    private static Report report(String routeName, double lat, double lng) {
+        return new Report("message", ZonedDateTime.now(), new Coordinates(lat, lng), "Stop", routeName);
+    }
+
+    private static void await(RecordingSink sink, int count) throws InterruptedException {
+        for (int i = 0; i < 500 && sink.events.size() < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void testSubscribersShareTheEncodedEvent() throws InterruptedException {
+        RecordingSink first = new RecordingSink();
+        RecordingSink second = new RecordingSink();
+        broadcaster.subscribe(ReportFilter.ALL, first);
+        broadcaster.subscribe(ReportFilter.ALL, second);
+
+        Report report = report("U8", 52.4875, 13.425);
+        broadcaster.onReport(report);
+        await(first, 1);
+        await(second, 1);
+
+        Assertions.assertEquals(1, first.events.size());
+        Assertions.assertSame(first.events.get(0), second.events.get(0));
+        String event = new String(first.events.get(0), StandardCharsets.UTF_8);
+        Assertions.assertTrue(event.startsWith("id: " + report.getId() + "\nevent: report\ndata: {"));
+        Assertions.assertTrue(event.endsWith("}\n\n"));
+    }
+
+    @Test
+    void testFilterSelectsReports() throws InterruptedException {
+        RecordingSink byRoute = new RecordingSink();
+        RecordingSink byArea = new RecordingSink();
+        broadcaster.subscribe(new ReportFilter(null, Set.of("U9")), byRoute);
+        broadcaster.subscribe(new ReportFilter(new Area(new Coordinates(52.4875, 13.425), 500), null), byArea);
+
+        broadcaster.onReport(report("U8", 52.4875, 13.425));
+        broadcaster.onReport(report("U9", 52.518, 13.342));
+        await(byRoute, 1);
+        await(byArea, 1);
+        Thread.sleep(50);
+
+        Assertions.assertEquals(1, byRoute.events.size());
+        Assertions.assertTrue(new String(byRoute.events.get(0), StandardCharsets.UTF_8).contains("\"routeName\":\"U9\""));
+        Assertions.assertEquals(1, byArea.events.size());
+        Assertions.assertTrue(new String(byArea.events.get(0), StandardCharsets.UTF_8).contains("\"routeName\":\"U8\""));
+    }
+
+    @Test
+    void testSlowSubscriberDropsOldestEventsWithoutBlockingOthers() throws InterruptedException {
+        RecordingSink slow = new RecordingSink();
+        slow.blocked = new CountDownLatch(1);
+        RecordingSink fast = new RecordingSink();
+        ReportBroadcaster.Subscription slowSubscription = broadcaster.subscribe(ReportFilter.ALL, slow);
+        broadcaster.subscribe(ReportFilter.ALL, fast);
+
+        // The first event blocks the slow writer, the following ones pile up in its buffer
+        broadcaster.onReport(report("U1", 52.5, 13.4));
+        Assertions.assertTrue(slow.writing.await(5, TimeUnit.SECONDS));
+        // One at a time, as the fast subscriber has the same small buffer
+        for (int i = 2; i <= 10; i++) {
+            broadcaster.onReport(report("U" + i, 52.5, 13.4));
+            await(fast, i);
+        }
+        Assertions.assertEquals(10, fast.events.size());
+        Assertions.assertEquals(0, slow.events.size());
+
+        slow.blocked.countDown();
+        await(slow, 5);
+        Thread.sleep(50);
+
+        Assertions.assertEquals(5, slow.events.size());
+        Assertions.assertEquals(5, slowSubscription.dropped());
+        String last = new String(slow.events.get(4), StandardCharsets.UTF_8);
+        Assertions.assertTrue(last.contains("\"routeName\":\"U10\""));
+        String firstBuffered = new String(slow.events.get(1), StandardCharsets.UTF_8);
+        Assertions.assertTrue(firstBuffered.contains("\"routeName\":\"U7\""));
+    }
+
+    @Test
+    void testGoneSubscriberIsRemoved() throws InterruptedException {
+        RecordingSink gone = new RecordingSink();
+        gone.fail = true;
+        broadcaster.subscribe(ReportFilter.ALL, gone);
+
+        broadcaster.onReport(report("U8", 52.4875, 13.425));
+        for (int i = 0; i < 500 && !gone.closed; i++) {
+            Thread.sleep(10);
+        }
+
+        Assertions.assertTrue(gone.closed);
+        Assertions.assertEquals(0, broadcaster.subscriberCount());
+    }
+
+    @Test
+    void testStalledSubscriberIsDisconnectedAfterWriteTimeout() throws InterruptedException {
+        StreamProps props = props();
+        props.setWriterThreads(1);
+        props.setWriteTimeout(Duration.ofMillis(100));
+        ReportBroadcaster broadcaster = new ReportBroadcaster(props);
+        try {
+            RecordingSink stalled = new RecordingSink();
+            stalled.blocked = new CountDownLatch(1);
+            RecordingSink other = new RecordingSink();
+            broadcaster.subscribe(ReportFilter.ALL, stalled);
+            broadcaster.subscribe(ReportFilter.ALL, other);
+
+            broadcaster.onReport(report("U1", 52.5, 13.4));
+            // Drains run in any order, so wait for the watchdog instead of the other subscriber
+            for (int i = 0; i < 500 && (!stalled.closed || broadcaster.subscriberCount() != 1); i++) {
+                Thread.sleep(10);
+            }
+            await(other, 1);
+
+            // The only writer thread was stuck on the stalled subscriber until its write was aborted
+            Assertions.assertEquals(1, other.events.size());
+            Assertions.assertTrue(stalled.closed);
+            Assertions.assertEquals(1, broadcaster.subscriberCount());
+        } finally {
+            broadcaster.close();
+        }
+    }
+
+    @Test
+    void testConcurrentSubscribesDoNotExceedTheMaximum() throws Exception {
+        StreamProps props = props();
+        props.setMaxSubscribers(10);
+        ReportBroadcaster broadcaster = new ReportBroadcaster(props);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        broadcaster.subscribe(ReportFilter.ALL, new RecordingSink());
+                        return true;
+                    } catch (IllegalStateException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            int subscribed = 0;
+            for (Future<Boolean> result : results) {
+                subscribed += result.get(5, TimeUnit.SECONDS) ? 1 : 0;
+            }
+
+            Assertions.assertEquals(10, subscribed);
+            Assertions.assertEquals(10, broadcaster.subscriberCount());
+        } finally {
+            executor.shutdownNow();
+            broadcaster.close();
+        }
+    }
+
+    private static class RecordingSink implements EventSink {
+        final List<byte[]> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch writing = new CountDownLatch(1);
+        volatile CountDownLatch blocked = new CountDownLatch(0);
+        volatile boolean fail = false;
+        volatile boolean closed = false;
+
+        @Override
+        public void write(List<byte[]> batch) throws IOException {
+            if (fail) {
+                throw new IOException("Connection reset");
+            }
+            writing.countDown();
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                // Like a socket channel that is closed by the interrupt
+                throw new InterruptedIOException("Write aborted");
+            }
+            events.addAll(batch);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.aljodomo.kontis.telegram;
+
+import com.aljodomo.kontis.gtfs.Recognition;
+import com.aljodomo.kontis.gtfs.ReportService;
+import com.aljodomo.kontis.model.Coordinates;
+import com.aljodomo.kontis.model.Report;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class ReportEnricherTest {
+
+    private final ZonedDateTime time = ZonedDateTime.of(LocalDateTime.parse("2022-02-21T17:39:00"), ZoneId.of("Europe/Berlin"));
+    private final Report partial = new Report("U8 Hermannplatz", time, new Coordinates(52.4868, 13.4247), "Hermannplatz", "U8");
+    private final Report complete = new Report(partial.getId(), "U8 U Hermannplatz (Berlin)", partial.getOriginalMessage(),
+            partial.getCoordinates(), time, "17526_400", "U8", "070201053801", "U Hermannplatz (Berlin)", "188924406", 1362073);
+
+    private ReportService enrichingWith(Optional<Report> report, CountDownLatch started, CountDownLatch release) {
+        return new ReportService() {
+            @Override
+            public Optional<Report> analyse(String message, ZonedDateTime time) {
+                return Optional.of(partial);
+            }
+
+            @Override
+            public Optional<Report> enrich(Recognition recognition) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return report;
+            }
+        };
+    }
+
+    @Test
+    void testEnrichedReportIsHandedOver() throws Exception {
+        EnrichmentProps props = new EnrichmentProps();
+        ReportEnricher enricher = new ReportEnricher(props);
+        ReportService service = enrichingWith(Optional.of(complete), new CountDownLatch(1), new CountDownLatch(0));
+
+        CompletableFuture<Report> enriched = new CompletableFuture<>();
+        enricher.submit(service, Recognition.done(partial), enriched::complete);
+
+        Assertions.assertEquals(complete, enriched.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(partial.getId(), enriched.get().getId());
+        Assertions.assertEquals(1, enricher.getEnrichedCount());
+        enricher.close();
+    }
+
+    @Test
+    void testReportStaysPartialWhenQueueIsFull() throws Exception {
+        EnrichmentProps props = new EnrichmentProps();
+        props.setThreads(1);
+        props.setQueueCapacity(1);
+        ReportEnricher enricher = new ReportEnricher(props);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ReportService service = enrichingWith(Optional.empty(), started, release);
+
+        enricher.submit(service, Recognition.done(partial), report -> Assertions.fail("Nothing was enriched"));
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        enricher.submit(service, Recognition.done(partial), report -> Assertions.fail("Nothing was enriched"));
+        enricher.submit(service, Recognition.done(partial), report -> Assertions.fail("Nothing was enriched"));
+
+        Assertions.assertEquals(1, enricher.getSkippedCount());
+        Assertions.assertEquals(1, enricher.getQueueSize());
+        release.countDown();
+        enricher.close();
+    }
+}
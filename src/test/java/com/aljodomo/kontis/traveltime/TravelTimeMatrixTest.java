@@ -0,0 +1,104 @@
+package com.aljodomo.kontis.traveltime;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TravelTimeMatrixTest {
+
+    private static final TimeBands BANDS = new TimeBands(List.of(0, 6, 20));
+    private static final int MORNING = 7 * 3600;
+    private static final int NIGHT = 23 * 3600;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * 0 -> 1 -> 2 during the day. At night only a slow direct ride 0 -> 2.
+     */
+    private static TravelTimeGraph graph() {
+        return new TravelTimeGraph.Builder(4, BANDS)
+                .addRide(0, 1, MORNING, 300)
+                .addRide(0, 1, MORNING + 600, 240)
+                .addRide(1, 2, MORNING, 180)
+                .addRide(0, 2, NIGHT, 1200)
+                .build();
+    }
+
+    @Test
+    void testShortestTravelTimesPerBand() throws Exception {
+        try (TravelTimeMatrix matrix = new TravelTimeMatrix(directory.resolve("matrix.bin"), 1, BANDS.count(), graph())) {
+            int day = BANDS.bandOf(MORNING);
+            int night = BANDS.bandOf(NIGHT);
+
+            Assertions.assertEquals(0, matrix.travelSeconds(day, 0, 0));
+            Assertions.assertEquals(240, matrix.travelSeconds(day, 0, 1));
+            Assertions.assertEquals(420, matrix.travelSeconds(day, 0, 2));
+            Assertions.assertEquals(1200, matrix.travelSeconds(night, 0, 2));
+            Assertions.assertEquals(TravelTimeMatrix.UNREACHABLE, matrix.travelSeconds(day, 2, 0));
+            Assertions.assertEquals(TravelTimeMatrix.UNREACHABLE, matrix.travelSeconds(day, 0, 3));
+        }
+    }
+
+    @Test
+    void testComputedRowsAreReusedAfterRestart() throws Exception {
+        Path file = directory.resolve("matrix.bin");
+        try (TravelTimeMatrix matrix = new TravelTimeMatrix(file, 1, BANDS.count(), graph())) {
+            matrix.computeAll();
+        }
+
+        CountingSource counting = new CountingSource(graph());
+        try (TravelTimeMatrix matrix = new TravelTimeMatrix(file, 1, BANDS.count(), counting)) {
+            Assertions.assertEquals(420, matrix.travelSeconds(BANDS.bandOf(MORNING), 0, 2));
+        }
+        Assertions.assertEquals(0, counting.rows.get());
+
+        try (TravelTimeMatrix matrix = new TravelTimeMatrix(file, 2, BANDS.count(), counting)) {
+            Assertions.assertEquals(420, matrix.travelSeconds(BANDS.bandOf(MORNING), 0, 2));
+        }
+        Assertions.assertEquals(1, counting.rows.get(), "Matrix of another fingerprint must be recomputed");
+    }
+
+    @Test
+    void testTimesAfterMidnightAreFolded() {
+        Assertions.assertEquals(BANDS.bandOf(3600), BANDS.bandOf(25 * 3600));
+        Assertions.assertEquals(2, BANDS.bandOf(NIGHT));
+    }
+
+    @Test
+    void testFingerprintChangesWithTheTimetable() {
+        TravelTimeGraph slower = new TravelTimeGraph.Builder(4, BANDS)
+                .addRide(0, 1, MORNING, 300)
+                .addRide(0, 1, MORNING + 600, 270)
+                .addRide(1, 2, MORNING, 180)
+                .addRide(0, 2, NIGHT, 1200)
+                .build();
+
+        Assertions.assertEquals(graph().fingerprint(), graph().fingerprint());
+        Assertions.assertNotEquals(graph().fingerprint(), slower.fingerprint());
+    }
+
+    private static class CountingSource implements TravelTimeMatrix.RowSource {
+        private final TravelTimeGraph graph;
+        private final AtomicInteger rows = new AtomicInteger();
+
+        CountingSource(TravelTimeGraph graph) {
+            this.graph = graph;
+        }
+
+        @Override
+        public int stationCount() {
+            return graph.stationCount();
+        }
+
+        @Override
+        public int[] shortestFrom(int band, int source) {
+            rows.incrementAndGet();
+            return graph.shortestFrom(band, source);
+        }
+    }
+}
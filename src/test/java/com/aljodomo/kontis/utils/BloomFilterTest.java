@@ -0,0 +1,44 @@
+package com.aljodomo.kontis.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+    @Test
+    void testAddedValuesAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("stop" + i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertTrue(filter.mightContain("stop" + i));
+        }
+    }
+
+    @Test
+    void testFalsePositiveRateIsNearTheConfiguredOne() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("stop" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("chat" + i)) {
+                falsePositives++;
+            }
+        }
+        Assertions.assertTrue(falsePositives < 300, "False positives: " + falsePositives);
+    }
+
+    @Test
+    void testSubstringsAreHashedLikeStrings() {
+        BloomFilter filter = new BloomFilter(10, 0.01);
+        filter.add("osloer");
+
+        Assertions.assertTrue(filter.mightContain("u9 osloer strasse", 3, 9));
+        Assertions.assertFalse(filter.mightContain("u9 osloer strasse", 3, 8));
+    }
+}